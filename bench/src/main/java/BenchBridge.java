@@ -0,0 +1,135 @@
+import bench.AppBridge;
+
+import javax.swing.*;
+import java.awt.Component;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Vector;
+import java.util.function.Consumer;
+
+/**
+ * Default-package side of AppBridge: forwards benchmark calls to
+ * DatabaseManager, PagedTableModel and FileHandler.
+ */
+public class BenchBridge implements AppBridge {
+    private static final Consumer<String> NO_LOG = message -> { };
+
+    @Override
+    public Database connect(File file) {
+        DatabaseManager dbManager = new DatabaseManager();
+        if (!dbManager.connect(file)) {
+            throw new IllegalStateException("Cannot open " + file);
+        }
+        return new DatabaseBridge(dbManager);
+    }
+
+    @Override
+    public Object openTextFile(File file) {
+        return awaitLoaded(FileHandler.openTextFile(file, new JTabbedPane(), NO_LOG));
+    }
+
+    @Override
+    public Document openDocument(File file) {
+        JTabbedPane contentPane = new JTabbedPane();
+        if (awaitLoaded(FileHandler.openTextFile(file, contentPane, NO_LOG)) == null) {
+            throw new IllegalStateException("Cannot open " + file);
+        }
+        return target -> FileHandler.saveDocument(target, contentPane, NO_LOG);
+    }
+
+    /** Text files load on a FileLoadWorker; waits until its last chunk is in the document. */
+    private static Component awaitLoaded(Component tab) {
+        if (!(tab instanceof JComponent)) {
+            return tab;
+        }
+        Object worker = ((JComponent) tab).getClientProperty(FileLoadWorker.CLIENT_PROPERTY);
+        try {
+            if (worker instanceof FileLoadWorker) {
+                ((FileLoadWorker) worker).get();
+            }
+            SwingUtilities.invokeAndWait(() -> { });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            throw new IllegalStateException("Loading failed", e);
+        }
+        return tab;
+    }
+
+    private static class DatabaseBridge implements Database {
+        private final DatabaseManager dbManager;
+
+        DatabaseBridge(DatabaseManager dbManager) {
+            this.dbManager = dbManager;
+        }
+
+        @Override
+        public boolean execute(String sql) {
+            return dbManager.executeUpdate(sql);
+        }
+
+        @Override
+        public boolean importSql(File script) {
+            return dbManager.importSql(script);
+        }
+
+        @Override
+        public boolean exportSql(File target) {
+            return dbManager.exportSql(target);
+        }
+
+        @Override
+        public boolean insertRow(String table, List<String> columns, List<?> values) {
+            return dbManager.insertRow(table, columns, values);
+        }
+
+        @Override
+        public List<String> getTables() {
+            return dbManager.getTables();
+        }
+
+        @Override
+        public int loadTable(String table) throws SQLException {
+            Connection reader = dbManager.borrowReadConnection();
+            try (Statement stmt = reader.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT * FROM " + DatabaseManager.quoteIdentifier(table))) {
+                int columnCount = rs.getMetaData().getColumnCount();
+                Vector<Vector<Object>> rows = new Vector<>();
+                while (rs.next()) {
+                    Vector<Object> row = new Vector<>(columnCount);
+                    for (int i = 1; i <= columnCount; i++) {
+                        row.add(rs.getObject(i));
+                    }
+                    rows.add(row);
+                }
+                return rows.size();
+            } finally {
+                dbManager.releaseReadConnection(reader);
+            }
+        }
+
+        @Override
+        public int scanTable(String table) throws SQLException {
+            PagedTableModel model = new PagedTableModel(dbManager, table);
+            try {
+                return model.scanAllPages();
+            } finally {
+                model.close();
+            }
+        }
+
+        @Override
+        public String statementCacheStats() {
+            return dbManager.getStatementCacheStats();
+        }
+
+        @Override
+        public void close() {
+            dbManager.close();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package bench;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * The application classes live in the default package, which named packages
+ * cannot import and JMH will not generate benchmarks for. The benchmarks talk
+ * to them through this interface, implemented by the default-package
+ * BenchBridge class and looked up once by name.
+ */
+public interface AppBridge {
+
+    static AppBridge load() {
+        try {
+            return (AppBridge) Class.forName("BenchBridge").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("BenchBridge is missing from the classpath", e);
+        }
+    }
+
+    Database connect(File file);
+
+    /** Opens a text file the way the File menu does and returns its tab. */
+    Object openTextFile(File file);
+
+    /** Opens a text file into a tab and returns a handle that saves it with FileHandler.saveDocument. */
+    Document openDocument(File file);
+
+    interface Database extends AutoCloseable {
+        boolean execute(String sql);
+
+        boolean importSql(File script);
+
+        boolean exportSql(File target);
+
+        boolean insertRow(String table, List<String> columns, List<?> values);
+
+        List<String> getTables();
+
+        /** Reads the whole table into row vectors, as query results are loaded. */
+        int loadTable(String table) throws Exception;
+
+        /** Reads the whole table page by page, as the table viewer's model does. */
+        int scanTable(String table) throws Exception;
+
+        /** Statement cache hits and misses since the database was opened. */
+        String statementCacheStats();
+
+        @Override
+        void close();
+    }
+
+    interface Document {
+        void saveTo(File file);
+    }
+}
@@ -0,0 +1,89 @@
+package bench;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Generates the SQL scripts, databases and text files the benchmarks run
+ * against. Output is deterministic for a given size so runs are comparable.
+ */
+public final class BenchData {
+    public static final String TABLE = "items";
+
+    private static final String[] WORDS = {
+        "alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel",
+        "india", "juliet", "kilo", "lima", "mike", "november", "oscar", "papa"
+    };
+
+    private BenchData() {
+    }
+
+    public static File tempDirectory() throws IOException {
+        return Files.createTempDirectory("file-manager-bench").toFile();
+    }
+
+    public static void deleteRecursively(File directory) throws IOException {
+        if (directory == null || !directory.exists()) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    /**
+     * Writes a script that recreates the items table and fills it with the
+     * given number of single-row INSERTs, as a typical dump would. Importing
+     * it twice leaves the same database, so it can be replayed every call.
+     */
+    public static File writeSqlScript(File file, int rows) throws IOException {
+        Random random = new Random(rows);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            writer.write("DROP TABLE IF EXISTS " + TABLE + ";\n");
+            writer.write("CREATE TABLE " + TABLE
+                + " (id INTEGER PRIMARY KEY, name TEXT, quantity INTEGER, price REAL, note TEXT);\n");
+            for (int i = 1; i <= rows; i++) {
+                writer.write("INSERT INTO " + TABLE + " (id, name, quantity, price, note) VALUES ("
+                    + i + ", '" + word(random) + "-" + i + "', " + random.nextInt(1000) + ", "
+                    + (random.nextInt(100000) / 100.0) + ", '" + sentence(random, 8).replace("'", "''") + "');\n");
+            }
+        }
+        return file;
+    }
+
+    /** Writes roughly the given number of bytes of line-oriented ASCII text. */
+    public static File writeTextFile(File file, long bytes) throws IOException {
+        Random random = new Random(bytes);
+        long written = 0;
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            while (written < bytes) {
+                String line = sentence(random, 4 + random.nextInt(12)) + "\n";
+                writer.write(line);
+                written += line.length();
+            }
+        }
+        return file;
+    }
+
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(word(random));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,103 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DatabaseManager hot paths against a generated local database of
+ * {@code rows} rows: script import and export, single-row inserts, table
+ * listing and the two ways a whole table gets read into the UI.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class DatabaseBenchmarks {
+    private static final String SCRATCH = "scratch";
+    private static final List<String> SCRATCH_COLUMNS = Arrays.asList("name", "quantity", "price");
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    private File directory;
+    private File script;
+    private File dump;
+    private AppBridge.Database database;
+    private AppBridge.Database importTarget;
+    private long inserted;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        AppBridge bridge = AppBridge.load();
+        directory = BenchData.tempDirectory();
+        script = BenchData.writeSqlScript(new File(directory, "items.sql"), rows);
+        dump = new File(directory, "dump.sql");
+
+        database = bridge.connect(new File(directory, "data.db"));
+        check(database.importSql(script), "seed import");
+        check(database.execute("CREATE TABLE " + SCRATCH
+            + " (id INTEGER PRIMARY KEY, name TEXT, quantity INTEGER, price REAL)"), "create scratch table");
+
+        importTarget = bridge.connect(new File(directory, "import.db"));
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearScratch() {
+        database.execute("DELETE FROM " + SCRATCH);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.out.println("Statement cache: " + database.statementCacheStats()
+            + "; import target: " + importTarget.statementCacheStats());
+        database.close();
+        importTarget.close();
+        BenchData.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public boolean importSql() {
+        return check(importTarget.importSql(script), "importSql");
+    }
+
+    @Benchmark
+    public boolean exportSql() {
+        return check(database.exportSql(dump), "exportSql");
+    }
+
+    @Benchmark
+    public boolean insertRow() {
+        long n = ++inserted;
+        return check(database.insertRow(SCRATCH, SCRATCH_COLUMNS,
+            Arrays.asList("row-" + n, n % 1000, n / 100.0)), "insertRow");
+    }
+
+    @Benchmark
+    public List<String> getTables() {
+        return database.getTables();
+    }
+
+    @Benchmark
+    public int loadTable() throws Exception {
+        return database.loadTable(BenchData.TABLE);
+    }
+
+    @Benchmark
+    public int scanTablePages() throws Exception {
+        return database.scanTable(BenchData.TABLE);
+    }
+
+    private static boolean check(boolean ok, String operation) {
+        if (!ok) {
+            throw new IllegalStateException(operation + " failed");
+        }
+        return ok;
+    }
+}
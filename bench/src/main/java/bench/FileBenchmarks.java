@@ -0,0 +1,57 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FileHandler text paths against a generated file of {@code sizeMb}
+ * megabytes. Swing components are created headless, off the EDT.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class FileBenchmarks {
+
+    @Param({"1", "16"})
+    public int sizeMb;
+
+    private File directory;
+    private File source;
+    private File target;
+    private AppBridge bridge;
+    private AppBridge.Document document;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        bridge = AppBridge.load();
+        directory = BenchData.tempDirectory();
+        source = BenchData.writeTextFile(new File(directory, "source.txt"), sizeMb * 1024L * 1024L);
+        target = new File(directory, "target.txt");
+        document = bridge.openDocument(source);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchData.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public Object openTextFile() {
+        Object tab = bridge.openTextFile(source);
+        if (tab == null) {
+            throw new IllegalStateException("openTextFile failed");
+        }
+        return tab;
+    }
+
+    @Benchmark
+    public void saveDocument() {
+        document.saveTo(target);
+    }
+}
@@ -0,0 +1,26 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Where the application keeps its own files: ~/.file-manager, or the
+ * directory named by the file-manager.home system property.
+ */
+public class AppPaths {
+    private static final String HOME_PROPERTY = "file-manager.home";
+
+    public static Path getDataDirectory() throws IOException {
+        String override = System.getProperty(HOME_PROPERTY);
+        Path directory = override != null
+            ? Paths.get(override)
+            : Paths.get(System.getProperty("user.home"), ".file-manager");
+        Files.createDirectories(directory);
+        return directory;
+    }
+
+    public static File resolve(String name) throws IOException {
+        return getDataDirectory().resolve(name).toFile();
+    }
+}
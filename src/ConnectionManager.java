@@ -0,0 +1,72 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps one DatabaseManager per database file so several databases can be
+ * open at once, and tabs showing the same file share its connections.
+ * Connections are closed when the last user releases the file.
+ */
+public class ConnectionManager {
+    private final Map<String, DatabaseManager> managers = new HashMap<>();
+    private final Map<String, Integer> references = new HashMap<>();
+
+    public boolean createDatabase(File file) {
+        return new DatabaseManager().createDatabase(file);
+    }
+
+    public synchronized DatabaseManager open(File file) {
+        String key = keyFor(file);
+        DatabaseManager manager = managers.get(key);
+
+        if (manager == null) {
+            manager = new DatabaseManager();
+            if (!manager.connect(file)) {
+                return null;
+            }
+            managers.put(key, manager);
+        }
+
+        references.merge(key, 1, Integer::sum);
+        return manager;
+    }
+
+    public synchronized void release(File file) {
+        String key = keyFor(file);
+        Integer count = references.get(key);
+        if (count == null) {
+            return;
+        }
+
+        if (count > 1) {
+            references.put(key, count - 1);
+        } else {
+            references.remove(key);
+            DatabaseManager manager = managers.remove(key);
+            if (manager != null) {
+                manager.close();
+            }
+        }
+    }
+
+    public synchronized int getOpenCount() {
+        return managers.size();
+    }
+
+    public synchronized void closeAll() {
+        for (DatabaseManager manager : managers.values()) {
+            manager.close();
+        }
+        managers.clear();
+        references.clear();
+    }
+
+    private static String keyFor(File file) {
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException e) {
+            return file.getAbsolutePath();
+        }
+    }
+}
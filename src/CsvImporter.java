@@ -0,0 +1,316 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Bulk loads a CSV/TSV file into a new table; an existing table of the
+ * same name is refused. Column types are inferred from a sample of rows
+ * (values with leading zeros stay TEXT), the table is created through
+ * DatabaseManager.createTable, and rows are inserted with a batched
+ * PreparedStatement in chunked transactions. If the import fails, the
+ * new table is dropped again, so nothing is left half loaded and the
+ * import can simply be retried. Parsing runs on its own thread and hands
+ * batches of records to the inserting thread.
+ */
+public class CsvImporter {
+    private static final int SAMPLE_ROWS = 1000;
+    private static final int BATCH_ROWS = 1000;
+    private static final int COMMIT_ROWS = 50000;
+    private static final int QUEUED_BATCHES = 8;
+    private static final long PROGRESS_INTERVAL_MS = 2000;
+    private static final List<String[]> END = new ArrayList<>();
+
+    private enum ColumnType { INTEGER, REAL, TEXT }
+
+    private final DatabaseManager dbManager;
+    private final File file;
+    private final String tableName;
+    private final char delimiter;
+
+    public CsvImporter(DatabaseManager dbManager, File file, String tableName, char delimiter) {
+        this.dbManager = dbManager;
+        this.file = file;
+        this.tableName = tableName;
+        this.delimiter = delimiter;
+    }
+
+    public SqlImporter.ImportStats importFile(Consumer<String> progress) throws IOException, SQLException {
+        long start = System.currentTimeMillis();
+
+        for (String existing : dbManager.getSchemaCatalog().getTableNames()) {
+            // SQLite compares table names case-insensitively
+            if (existing.equalsIgnoreCase(tableName)) {
+                throw new SQLException("Table " + existing + " already exists; CSV files are imported into a new table");
+            }
+        }
+
+        CsvReader reader = new CsvReader(new InputStreamReader(
+            new FileInputStream(file), StandardCharsets.UTF_8), delimiter);
+
+        try {
+            String[] header = reader.readRecord();
+            if (header == null) {
+                throw new IOException("CSV file is empty");
+            }
+            if (header.length > 0 && header[0].startsWith("\uFEFF")) {
+                header[0] = header[0].substring(1);
+            }
+
+            List<String[]> sample = new ArrayList<>();
+            String[] record;
+            while (sample.size() < SAMPLE_ROWS && (record = reader.readRecord()) != null) {
+                if (!isBlank(record)) {
+                    sample.add(record);
+                }
+            }
+
+            String[] columns = columnNames(header);
+            ColumnType[] types = inferTypes(columns.length, sample);
+
+            List<String> definitions = new ArrayList<>();
+            for (int i = 0; i < columns.length; i++) {
+                definitions.add(DatabaseManager.quoteIdentifier(columns[i]) + " " + types[i]);
+            }
+            if (!dbManager.createTable(tableName, definitions)) {
+                throw new SQLException("Failed to create table " + tableName);
+            }
+
+            long rows;
+            try {
+                rows = load(reader, sample, columns, types, start, progress);
+            } catch (IOException e) {
+                throw new IOException(dropTable(e), e);
+            } catch (SQLException | RuntimeException e) {
+                throw new SQLException(dropTable(e), e);
+            }
+            return new SqlImporter.ImportStats(rows, rows, System.currentTimeMillis() - start, "rows");
+        } finally {
+            reader.close();
+        }
+    }
+
+    /** Drops the table created for a failed import; returns the failure's message saying so. */
+    private String dropTable(Exception e) {
+        if (dbManager.executeUpdate("DROP TABLE " + DatabaseManager.quoteIdentifier(tableName))) {
+            return e.getMessage() + " (nothing was imported; table " + tableName + " was removed)";
+        }
+        return e.getMessage() + " (table " + tableName + " is partly loaded and could not be removed)";
+    }
+
+    private long load(CsvReader reader, List<String[]> sample, String[] columns, ColumnType[] types,
+                      long start, Consumer<String> progress) throws IOException, SQLException {
+        BlockingQueue<List<String[]>> queue = new ArrayBlockingQueue<>(QUEUED_BATCHES);
+        AtomicReference<Throwable> parseError = new AtomicReference<>();
+        queue.add(sample);
+
+        Thread parser = new Thread(() -> {
+            try {
+                List<String[]> batch = new ArrayList<>(BATCH_ROWS);
+                String[] record;
+                while ((record = reader.readRecord()) != null) {
+                    if (isBlank(record)) {
+                        continue;
+                    }
+                    batch.add(record);
+                    if (batch.size() >= BATCH_ROWS) {
+                        queue.put(batch);
+                        batch = new ArrayList<>(BATCH_ROWS);
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    queue.put(batch);
+                }
+            } catch (InterruptedException e) {
+                // the inserter gave up; the put below returns at once
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                parseError.set(e);
+            } finally {
+                // without END the inserter would wait on the queue forever
+                try {
+                    queue.put(END);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "csv-parser");
+        parser.setDaemon(true);
+        parser.start();
+
+        StringBuilder sql = new StringBuilder("INSERT INTO ");
+        sql.append(DatabaseManager.quoteIdentifier(tableName)).append(" (");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(DatabaseManager.quoteIdentifier(columns[i]));
+        }
+        sql.append(") VALUES (");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i > 0 ? ", ?" : "?");
+        }
+        sql.append(")");
+
+        Connection connection = dbManager.getConnection();
+        long rows = 0;
+        long uncommitted = 0;
+        long lastReport = start;
+
+        synchronized (connection) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+
+            try (PreparedStatement insert = connection.prepareStatement(sql.toString())) {
+                while (true) {
+                    List<String[]> batch = queue.take();
+                    if (batch == END) {
+                        break;
+                    }
+
+                    for (String[] record : batch) {
+                        for (int i = 0; i < columns.length; i++) {
+                            insert.setObject(i + 1, convert(i < record.length ? record[i] : null, types[i]));
+                        }
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+
+                    rows += batch.size();
+                    uncommitted += batch.size();
+                    if (uncommitted >= COMMIT_ROWS) {
+                        connection.commit();
+                        uncommitted = 0;
+
+                        long now = System.currentTimeMillis();
+                        if (progress != null && now - lastReport >= PROGRESS_INTERVAL_MS) {
+                            progress.accept(new SqlImporter.ImportStats(rows, rows, now - start, "rows").toString());
+                            lastReport = now;
+                        }
+                    }
+                }
+
+                Throwable failure = parseError.get();
+                if (failure instanceof IOException) {
+                    throw (IOException) failure;
+                } else if (failure != null) {
+                    throw new IOException("Cannot parse " + file.getName() + " - " + failure, failure);
+                }
+                connection.commit();
+            } catch (SQLException | IOException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } catch (InterruptedException e) {
+                connection.rollback();
+                Thread.currentThread().interrupt();
+                throw new IOException("CSV import interrupted", e);
+            } finally {
+                parser.interrupt();
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+
+        return rows;
+    }
+
+    private static String[] columnNames(String[] header) {
+        Set<String> used = new HashSet<>();
+        used.add("id");
+
+        String[] names = new String[header.length];
+        for (int i = 0; i < header.length; i++) {
+            String name = header[i].trim();
+            if (name.isEmpty()) {
+                name = "column_" + (i + 1);
+            }
+
+            String candidate = name;
+            int suffix = 2;
+            while (!used.add(candidate.toLowerCase())) {
+                candidate = name + "_" + suffix++;
+            }
+            names[i] = candidate;
+        }
+        return names;
+    }
+
+    private static ColumnType[] inferTypes(int columnCount, List<String[]> sample) {
+        ColumnType[] types = new ColumnType[columnCount];
+        Arrays.fill(types, ColumnType.INTEGER);
+        boolean[] seen = new boolean[columnCount];
+
+        for (String[] record : sample) {
+            for (int i = 0; i < columnCount && i < record.length; i++) {
+                String value = record[i].trim();
+                if (value.isEmpty() || types[i] == ColumnType.TEXT) {
+                    continue;
+                }
+                seen[i] = true;
+
+                if (hasLeadingZero(value)) {
+                    // codes such as 00123 would lose their zeros as numbers
+                    types[i] = ColumnType.TEXT;
+                    continue;
+                }
+                if (types[i] == ColumnType.INTEGER && parseLong(value) == null) {
+                    types[i] = ColumnType.REAL;
+                }
+                if (types[i] == ColumnType.REAL && parseDouble(value) == null) {
+                    types[i] = ColumnType.TEXT;
+                }
+            }
+        }
+
+        for (int i = 0; i < columnCount; i++) {
+            if (!seen[i]) {
+                types[i] = ColumnType.TEXT;
+            }
+        }
+        return types;
+    }
+
+    private static Object convert(String value, ColumnType type) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+
+        Object converted = null;
+        if (type == ColumnType.INTEGER) {
+            converted = parseLong(value.trim());
+        } else if (type == ColumnType.REAL) {
+            converted = parseDouble(value.trim());
+        }
+        return converted != null ? converted : value;
+    }
+
+    /** True for 007, -01 or 00.5, but not for 0, 0.5 or 10. */
+    private static boolean hasLeadingZero(String value) {
+        int i = value.startsWith("-") || value.startsWith("+") ? 1 : 0;
+        return value.length() > i + 1 && value.charAt(i) == '0' && Character.isDigit(value.charAt(i + 1));
+    }
+
+    private static Long parseLong(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Double parseDouble(String value) {
+        if (value.isEmpty() || !(Character.isDigit(value.charAt(value.length() - 1)) || value.endsWith("."))) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean isBlank(String[] record) {
+        return record.length == 1 && record[0].isEmpty();
+    }
+}
@@ -2,10 +2,28 @@ import java.io.*;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public class DatabaseManager {
+    private static final int READ_CONNECTIONS = 2;
+
     private Connection connection;
+    private final List<Connection> readConnections = new CopyOnWriteArrayList<>();
+    private final BlockingQueue<Connection> idleReadConnections = new LinkedBlockingQueue<>();
+    private final Map<Connection, StatementCache> statementCaches = new ConcurrentHashMap<>();
+    private final SchemaCatalog schemaCatalog = new SchemaCatalog(this);
     private File currentDatabase;
+    private int importChunkSize = SqlImporter.DEFAULT_CHUNK_SIZE;
+    private SqlImporter.ImportStats lastImportStats;
+    private String lastImportError;
+    private int queryTimeoutSeconds = 300;
+    private int maxQueryRows = 100000;
 
     public boolean createDatabase(File file) {
         try {
@@ -26,53 +44,115 @@ public class DatabaseManager {
 
     public boolean connect(File dbFile) {
         try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-            }
+            close();
 
             String url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
             connection = DriverManager.getConnection(url);
+            applyPragmas(connection, false);
+
+            for (int i = 0; i < READ_CONNECTIONS; i++) {
+                Connection reader = DriverManager.getConnection(url);
+                applyPragmas(reader, true);
+                readConnections.add(reader);
+            }
+            idleReadConnections.addAll(readConnections);
             currentDatabase = dbFile;
+            schemaCatalog.invalidate();
 
             return true;
         } catch (SQLException e) {
             e.printStackTrace();
+            close();
             return false;
         }
     }
 
+    private static void applyPragmas(Connection conn, boolean readOnly) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = 5000");
+            if (!readOnly) {
+                stmt.execute("PRAGMA journal_mode = WAL");
+            }
+            stmt.execute("PRAGMA synchronous = NORMAL");
+            stmt.execute("PRAGMA cache_size = -65536");
+            stmt.execute("PRAGMA mmap_size = 268435456");
+            stmt.execute("PRAGMA temp_store = MEMORY");
+            if (readOnly) {
+                stmt.execute("PRAGMA query_only = ON");
+            }
+        }
+    }
+
     public Connection getConnection() {
         return connection;
     }
 
+    /**
+     * Borrows one of the read-only connections. In WAL mode these see the last
+     * committed state and never block the write connection. Every borrowed
+     * connection must be handed back through releaseReadConnection.
+     * Background threads wait up to 30 s for one; the EDT never waits and
+     * gets a "database busy" error while all of them are in use.
+     */
+    public Connection borrowReadConnection() throws SQLException {
+        if (javax.swing.SwingUtilities.isEventDispatchThread()) {
+            Connection reader = tryBorrowReadConnection();
+            if (reader == null) {
+                throw new SQLException("The database is busy: all " + READ_CONNECTIONS
+                    + " read connections are in use by running queries or exports. Try again when they finish.");
+            }
+            return reader;
+        }
+        try {
+            Connection reader = idleReadConnections.poll(30, TimeUnit.SECONDS);
+            if (reader == null) {
+                throw new SQLException("Timed out waiting for a read connection");
+            }
+            return reader;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a read connection", e);
+        }
+    }
+
+    /** Borrows an idle read connection without waiting, or returns null if all are in use. */
+    public Connection tryBorrowReadConnection() {
+        return idleReadConnections.poll();
+    }
+
+    public void releaseReadConnection(Connection reader) {
+        if (reader != null && readConnections.contains(reader)) {
+            idleReadConnections.offer(reader);
+        }
+    }
+
     public File getCurrentDatabase() {
         return currentDatabase;
     }
 
     public List<String> getTables() {
-        List<String> tables = new ArrayList<>();
-
         try {
-            DatabaseMetaData metaData = connection.getMetaData();
-            ResultSet rs = metaData.getTables(null, null, null, new String[]{"TABLE"});
-
-            while (rs.next()) {
-                tables.add(rs.getString("TABLE_NAME"));
-            }
-
-            rs.close();
+            return schemaCatalog.getTableNames();
         } catch (SQLException e) {
             e.printStackTrace();
+            return new ArrayList<>();
         }
+    }
 
-        return tables;
+    public SchemaCatalog getSchemaCatalog() {
+        return schemaCatalog;
     }
 
     public boolean executeUpdate(String sql) {
         try {
-            Statement stmt = connection.createStatement();
-            stmt.executeUpdate(sql);
-            stmt.close();
+            synchronized (connection) {
+                Statement stmt = connection.createStatement();
+                stmt.executeUpdate(sql);
+                stmt.close();
+            }
+            if (SchemaCatalog.isDdl(sql)) {
+                schemaCatalog.invalidate();
+            }
             return true;
         } catch (SQLException e) {
             e.printStackTrace();
@@ -82,17 +162,69 @@ public class DatabaseManager {
 
     public ResultSet executeQuery(String sql) {
         try {
-            Statement stmt = connection.createStatement();
-            return stmt.executeQuery(sql);
+            synchronized (connection) {
+                Statement stmt = connection.createStatement();
+                return stmt.executeQuery(sql);
+            }
         } catch (SQLException e) {
             e.printStackTrace();
             return null;
         }
     }
 
+    public boolean executeUpdate(String sql, Object... params) {
+        try {
+            synchronized (connection) {
+                PreparedStatement ps = prepare(sql);
+                bind(ps, params);
+                ps.executeUpdate();
+            }
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    public PreparedStatement prepare(String sql) throws SQLException {
+        return prepare(connection, sql);
+    }
+
+    /**
+     * Returns a cached PreparedStatement for the given connection. The cache
+     * owns the statement, so callers close the ResultSet but not the statement.
+     */
+    public PreparedStatement prepare(Connection conn, String sql) throws SQLException {
+        return getStatementCache(conn).prepare(sql);
+    }
+
+    public StatementCache getStatementCache(Connection conn) {
+        return statementCaches.computeIfAbsent(conn,
+            c -> new StatementCache(c, StatementCache.DEFAULT_CAPACITY));
+    }
+
+    /** Hit/miss totals over the statement caches of all connections. */
+    public String getStatementCacheStats() {
+        long hits = 0;
+        long misses = 0;
+        for (StatementCache cache : statementCaches.values()) {
+            hits += cache.getHits();
+            misses += cache.getMisses();
+        }
+        long total = hits + misses;
+        return String.format("%d hits / %d misses (%.0f%% hit rate)",
+            hits, misses, total == 0 ? 0.0 : hits * 100.0 / total);
+    }
+
+    public static void bind(PreparedStatement ps, Object... params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            ps.setObject(i + 1, params[i]);
+        }
+    }
+
     public boolean createTable(String tableName, List<String> columns) {
         StringBuilder sql = new StringBuilder("CREATE TABLE IF NOT EXISTS ");
-        sql.append(tableName).append(" (");
+        sql.append(quoteIdentifier(tableName)).append(" (");
         sql.append("id INTEGER PRIMARY KEY AUTOINCREMENT");
 
         for (String column : columns) {
@@ -104,108 +236,160 @@ public class DatabaseManager {
         return executeUpdate(sql.toString());
     }
 
-    public boolean insertRow(String tableName, List<String> columns, List<String> values) {
+    public boolean insertRow(String tableName, List<String> columns, List<?> values) {
         StringBuilder sql = new StringBuilder("INSERT INTO ");
-        sql.append(tableName).append(" (");
+        sql.append(quoteIdentifier(tableName)).append(" (");
 
         for (int i = 0; i < columns.size(); i++) {
-            sql.append(columns.get(i));
+            sql.append(quoteIdentifier(columns.get(i)));
             if (i < columns.size() - 1) sql.append(", ");
         }
 
         sql.append(") VALUES (");
 
         for (int i = 0; i < values.size(); i++) {
-            sql.append("'").append(values.get(i).replace("'", "''")).append("'");
+            sql.append("?");
             if (i < values.size() - 1) sql.append(", ");
         }
 
         sql.append(")");
 
-        return executeUpdate(sql.toString());
+        return executeUpdate(sql.toString(), values.toArray());
     }
 
-    public boolean importSql(File file) {
-        try {
-            BufferedReader reader = new BufferedReader(new FileReader(file));
-            StringBuilder sql = new StringBuilder();
-            String line;
+    public boolean updateRow(String tableName, List<String> columns, List<?> values,
+                             String keyColumn, Object key) {
+        StringBuilder sql = new StringBuilder("UPDATE ");
+        sql.append(quoteIdentifier(tableName)).append(" SET ");
 
-            while ((line = reader.readLine()) != null) {
-                sql.append(line).append("\n");
+        for (int i = 0; i < columns.size(); i++) {
+            sql.append(quoteIdentifier(columns.get(i))).append(" = ?");
+            if (i < columns.size() - 1) sql.append(", ");
+        }
 
-                if (line.trim().endsWith(";")) {
-                    executeUpdate(sql.toString());
-                    sql = new StringBuilder();
-                }
-            }
+        sql.append(" WHERE ").append(quoteIdentifier(keyColumn)).append(" = ?");
 
-            reader.close();
-            return true;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
+        Object[] params = new Object[values.size() + 1];
+        for (int i = 0; i < values.size(); i++) {
+            params[i] = values.get(i);
         }
+        params[values.size()] = key;
+
+        return executeUpdate(sql.toString(), params);
     }
 
-    public boolean exportSql(File file) {
-        try {
-            PrintWriter writer = new PrintWriter(new FileWriter(file));
-            List<String> tables = getTables();
+    public boolean deleteRow(String tableName, String keyColumn, Object key) {
+        String sql = "DELETE FROM " + quoteIdentifier(tableName)
+            + " WHERE " + quoteIdentifier(keyColumn) + " = ?";
+        return executeUpdate(sql, key);
+    }
 
-            for (String table : tables) {
-                ResultSet rs = executeQuery("SELECT sql FROM sqlite_master WHERE type='table' AND name='" + table + "'");
+    public int getQueryTimeoutSeconds() {
+        return queryTimeoutSeconds;
+    }
+
+    public void setQueryTimeoutSeconds(int queryTimeoutSeconds) {
+        this.queryTimeoutSeconds = queryTimeoutSeconds;
+    }
 
-                if (rs != null && rs.next()) {
-                    writer.println(rs.getString("sql") + ";");
-                    writer.println();
+    public int getMaxQueryRows() {
+        return maxQueryRows;
+    }
 
-                    ResultSet data = executeQuery("SELECT * FROM " + table);
-                    if (data != null) {
-                        ResultSetMetaData metaData = data.getMetaData();
-                        int columnCount = metaData.getColumnCount();
+    public void setMaxQueryRows(int maxQueryRows) {
+        this.maxQueryRows = maxQueryRows;
+    }
 
-                        while (data.next()) {
-                            StringBuilder insert = new StringBuilder("INSERT INTO " + table + " VALUES (");
+    public int getImportChunkSize() {
+        return importChunkSize;
+    }
 
-                            for (int i = 1; i <= columnCount; i++) {
-                                String value = data.getString(i);
-                                if (value == null) {
-                                    insert.append("NULL");
-                                } else {
-                                    insert.append("'").append(value.replace("'", "''")).append("'");
-                                }
+    public void setImportChunkSize(int importChunkSize) {
+        this.importChunkSize = importChunkSize;
+    }
 
-                                if (i < columnCount) insert.append(", ");
-                            }
+    public SqlImporter.ImportStats getLastImportStats() {
+        return lastImportStats;
+    }
 
-                            insert.append(");");
-                            writer.println(insert);
-                        }
+    /** Why the last import failed, or null if it succeeded. */
+    public String getLastImportError() {
+        return lastImportError;
+    }
 
-                        data.close();
-                    }
+    public boolean importSql(File file) {
+        return importSql(file, null);
+    }
 
-                    writer.println();
-                    rs.close();
-                }
+    public boolean importSql(File file, Consumer<String> progress) {
+        try {
+            lastImportError = null;
+            SqlImporter importer = new SqlImporter(connection, importChunkSize);
+            synchronized (connection) {
+                lastImportStats = importer.importFile(file, progress);
             }
+            return true;
+        } catch (IOException | SQLException e) {
+            e.printStackTrace();
+            lastImportError = e.getMessage();
+            return false;
+        }
+    }
 
-            writer.close();
+    public boolean importCsv(File file, String tableName, Consumer<String> progress) {
+        try {
+            lastImportError = null;
+            CsvImporter importer = new CsvImporter(this, file, tableName, CsvReader.delimiterFor(file.getName()));
+            lastImportStats = importer.importFile(progress);
             return true;
-        } catch (Exception e) {
+        } catch (IOException | SQLException e) {
             e.printStackTrace();
+            lastImportError = e.getMessage();
             return false;
         }
     }
 
+    public boolean exportSql(File file) {
+        return exportSql(file, file.getName().toLowerCase().endsWith(".gz"));
+    }
+
+    public boolean exportSql(File file, boolean gzip) {
+        Connection reader = null;
+        try {
+            reader = borrowReadConnection();
+            SqlExporter exporter = new SqlExporter(reader, SqlExporter.DEFAULT_ROWS_PER_INSERT);
+            exporter.exportTo(file, gzip);
+            return true;
+        } catch (IOException | SQLException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            releaseReadConnection(reader);
+        }
+    }
+
+    public static String quoteIdentifier(String name) {
+        return "\"" + name.replace("\"", "\"\"") + "\"";
+    }
+
     public void close() {
+        for (StatementCache cache : statementCaches.values()) {
+            cache.close();
+        }
+        statementCaches.clear();
+
         try {
             if (connection != null && !connection.isClosed()) {
                 connection.close();
             }
+            for (Connection reader : readConnections) {
+                reader.close();
+            }
         } catch (SQLException e) {
             e.printStackTrace();
+        } finally {
+            readConnections.clear();
+            idleReadConnections.clear();
         }
     }
 }
@@ -0,0 +1,192 @@
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Segment;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFileAttributeView;
+
+/**
+ * Saves text as UTF-8 without building one big String. A Document is read
+ * Segment by Segment, encoded by a per-thread CharsetEncoder into a reused
+ * direct buffer and written to a temporary file next to the target, which
+ * then replaces the target with an atomic move. A failed save leaves the
+ * original file untouched.
+ */
+public class DocumentWriter {
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private static final ThreadLocal<CharsetEncoder> ENCODER = ThreadLocal.withInitial(() ->
+        StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE));
+    private static final ThreadLocal<ByteBuffer> BUFFER = ThreadLocal.withInitial(() ->
+        ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    private interface Body {
+        void writeTo(Encoding encoding) throws IOException;
+    }
+
+    public static void write(Document document, File target, boolean sync) throws IOException {
+        writeAtomically(target, sync, encoding -> {
+            IOException[] failure = new IOException[1];
+            Runnable walk = () -> {
+                try {
+                    Segment segment = new Segment();
+                    segment.setPartialReturn(true);
+                    int offset = 0;
+                    int length = document.getLength();
+                    while (offset < length) {
+                        document.getText(offset, length - offset, segment);
+                        encoding.encode(CharBuffer.wrap(segment.array, segment.offset, segment.count));
+                        offset += segment.count;
+                    }
+                } catch (IOException e) {
+                    failure[0] = e;
+                } catch (BadLocationException e) {
+                    failure[0] = new IOException(e);
+                }
+            };
+
+            // render() holds the read lock so no edit lands mid-walk.
+            if (document instanceof AbstractDocument) {
+                document.render(walk);
+            } else {
+                walk.run();
+            }
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        });
+    }
+
+    public static void write(CharSequence text, File target, boolean sync) throws IOException {
+        writeAtomically(target, sync, encoding -> encoding.encode(CharBuffer.wrap(text)));
+    }
+
+    private static void writeAtomically(File target, boolean sync, Body body) throws IOException {
+        Path path = target.toPath().toAbsolutePath();
+        Path temp = createTempFor(path);
+
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                Encoding encoding = new Encoding(channel);
+                body.writeTo(encoding);
+                encoding.finish();
+                if (sync) {
+                    channel.force(true);
+                }
+            }
+
+            replace(temp, path);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /** A new temporary file next to target, for writing target's new content into. */
+    static Path createTempFor(Path target) throws IOException {
+        return Files.createTempFile(target.getParent(), "." + target.getFileName(), ".tmp");
+    }
+
+    /** Moves a fully written temporary file over target, atomically where the file system can. */
+    static void replace(Path temp, Path target) throws IOException {
+        copyPermissions(target, temp);
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** createTempFile makes owner-only files; keep the target's permissions where the platform has them. */
+    private static void copyPermissions(Path from, Path to) {
+        try {
+            if (Files.exists(from) && Files.getFileAttributeView(from, PosixFileAttributeView.class) != null) {
+                Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            // best effort; the saved content is what matters
+        }
+    }
+
+    /** Encodes successive CharBuffers into one channel, carrying split surrogate pairs over. */
+    private static class Encoding {
+        private final FileChannel channel;
+        private final CharsetEncoder encoder = ENCODER.get();
+        private final ByteBuffer out = BUFFER.get();
+        private final CharBuffer carry = CharBuffer.allocate(2);
+
+        Encoding(FileChannel channel) {
+            this.channel = channel;
+            encoder.reset();
+            out.clear();
+        }
+
+        void encode(CharBuffer in) throws IOException {
+            if (carry.position() > 0 && in.hasRemaining()) {
+                carry.put(in.get());
+                carry.flip();
+                encode(carry, false);
+                if (carry.hasRemaining()) {
+                    // the char taken from in is itself an unpaired high surrogate
+                    in.position(in.position() - 1);
+                }
+                carry.clear();
+            }
+
+            encode(in, false);
+            if (in.hasRemaining()) {
+                carry.put(in.get());
+            }
+        }
+
+        void finish() throws IOException {
+            carry.flip();
+            encode(carry, true);
+            flushEncoder();
+            drain();
+        }
+
+        private void encode(CharBuffer in, boolean endOfInput) throws IOException {
+            while (true) {
+                CoderResult result = encoder.encode(in, out, endOfInput);
+                if (result.isOverflow()) {
+                    drain();
+                } else if (result.isUnderflow()) {
+                    return;
+                } else {
+                    try {
+                        result.throwException();
+                    } catch (CharacterCodingException e) {
+                        throw new IOException("Cannot encode text as UTF-8", e);
+                    }
+                }
+            }
+        }
+
+        private void flushEncoder() throws IOException {
+            while (encoder.flush(out).isOverflow()) {
+                drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            out.flip();
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            out.clear();
+        }
+    }
+}
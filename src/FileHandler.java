@@ -1,59 +1,96 @@
 import javax.swing.*;
+import javax.swing.table.TableModel;
 import java.awt.*;
 import java.io.*;
 import java.util.function.Consumer;
 
 public class FileHandler {
+    /** Text files at least this large open in the read-only LargeFileViewer. */
+    public static final long LARGE_FILE_THRESHOLD = 64L * 1024 * 1024;
 
     public static Component openSqlFile(File file, JTabbedPane contentPane, Consumer<String> logger) {
-        try {
-            BufferedReader reader = new BufferedReader(new FileReader(file));
-            StringBuilder content = new StringBuilder();
-            String line;
+        return openInTextArea(file, contentPane, "SQL file", logger);
+    }
 
-            while ((line = reader.readLine()) != null) {
-                content.append(line).append("\n");
-            }
+    public static Component openTextFile(File file, JTabbedPane contentPane, Consumer<String> logger) {
+        return openInTextArea(file, contentPane, "text file", logger);
+    }
+
+    /**
+     * Adds the tab right away and streams the file into it on a FileLoadWorker,
+     * so the window stays responsive and several files can load at once.
+     */
+    private static Component openInTextArea(File file, JTabbedPane contentPane, String description,
+                                            Consumer<String> logger) {
+        if (file.length() >= LARGE_FILE_THRESHOLD) {
+            return openLargeFile(file, contentPane, logger);
+        }
+        if (!file.isFile() || !file.canRead()) {
+            logger.accept("ERROR: Failed to open " + description + " - cannot read " + file.getName());
+            return null;
+        }
 
-            reader.close();
+        JTextArea textArea = new JTextArea();
+        textArea.setFont(new java.awt.Font("Monospaced", java.awt.Font.PLAIN, 12));
+        textArea.setLineWrap(false);
 
-            JTextArea textArea = new JTextArea(content.toString());
-            textArea.setFont(new java.awt.Font("Monospaced", java.awt.Font.PLAIN, 12));
-            textArea.setLineWrap(false);
+        JScrollPane scrollPane = new JScrollPane(textArea);
+        contentPane.addTab(file.getName(), scrollPane);
+        contentPane.setSelectedComponent(scrollPane);
 
-            JScrollPane scrollPane = new JScrollPane(textArea);
-            contentPane.addTab(file.getName(), scrollPane);
-            contentPane.setSelectedComponent(scrollPane);
+        new FileLoadWorker(file, scrollPane, textArea, description, logger).execute();
+        return scrollPane;
+    }
 
-            logger.accept("Opened SQL file: " + file.getName());
-            return scrollPane;
-        } catch (IOException e) {
-            logger.accept("ERROR: Failed to open SQL file - " + e.getMessage());
+    /**
+     * Opens the end of a log file and keeps following it as it grows.
+     * Only the last LogFollower.INITIAL_TAIL_BYTES are loaded up front.
+     */
+    public static Component openLogFile(File file, JTabbedPane contentPane, Consumer<String> logger) {
+        if (!file.isFile() || !file.canRead()) {
+            logger.accept("ERROR: Failed to open log file - cannot read " + file.getName());
             return null;
         }
-    }
 
-    public static Component openTextFile(File file, JTabbedPane contentPane, Consumer<String> logger) {
-        try {
-            BufferedReader reader = new BufferedReader(new FileReader(file));
-            StringBuilder content = new StringBuilder();
-            String line;
+        JTextArea textArea = new JTextArea();
+        textArea.setFont(new java.awt.Font("Monospaced", java.awt.Font.PLAIN, 12));
+        textArea.setLineWrap(false);
 
-            while ((line = reader.readLine()) != null) {
-                content.append(line).append("\n");
-            }
+        JScrollPane scrollPane = new JScrollPane(textArea);
+        contentPane.addTab(file.getName(), scrollPane);
+        contentPane.setSelectedComponent(scrollPane);
 
-            reader.close();
+        long start = LogFollower.tailOffset(file);
+        LogFollower.start(file, scrollPane, textArea, start, logger);
+        logger.accept("Following log file: " + file.getName()
+            + (start > 0 ? " (from the last " + LargeFileViewer.formatSize(file.length() - start) + ")" : ""));
+        return scrollPane;
+    }
 
-            JTextArea textArea = new JTextArea(content.toString());
-            textArea.setFont(new java.awt.Font("Monospaced", java.awt.Font.PLAIN, 12));
+    public static Component openHexFile(File file, JTabbedPane contentPane, Consumer<String> logger) {
+        try {
+            HexViewer viewer = new HexViewer(file);
+            contentPane.addTab(file.getName(), viewer);
+            contentPane.setSelectedComponent(viewer);
 
-            JScrollPane scrollPane = new JScrollPane(textArea);
-            contentPane.addTab(file.getName(), scrollPane);
-            contentPane.setSelectedComponent(scrollPane);
+            logger.accept("Opened binary file: " + file.getName()
+                + " (" + LargeFileViewer.formatSize(file.length()) + ")");
+            return viewer;
+        } catch (IOException e) {
+            logger.accept("ERROR: Failed to open binary file - " + e.getMessage());
+            return null;
+        }
+    }
 
-            logger.accept("Opened text file: " + file.getName());
-            return scrollPane;
+    public static Component openLargeFile(File file, JTabbedPane contentPane, Consumer<String> logger) {
+        try {
+            LargeFileViewer viewer = new LargeFileViewer(file);
+            contentPane.addTab(file.getName(), viewer);
+            contentPane.setSelectedComponent(viewer);
+
+            logger.accept("Opened large file read-only: " + file.getName()
+                + " (" + LargeFileViewer.formatSize(file.length()) + ")");
+            return viewer;
         } catch (IOException e) {
             logger.accept("ERROR: Failed to open file - " + e.getMessage());
             return null;
@@ -64,25 +101,25 @@ public class FileHandler {
         try {
             Component selected = contentPane.getSelectedComponent();
 
-            if (selected instanceof JScrollPane) {
+            if (FileLoadWorker.isLoading(selected)) {
+                logger.accept("ERROR: Cannot save while the file is still loading");
+            } else if (LogFollower.wouldTruncate(selected, file)) {
+                logger.accept("ERROR: Cannot save the followed part of a log over " + file.getName());
+            } else if (selected instanceof JScrollPane) {
                 JScrollPane scrollPane = (JScrollPane) selected;
                 JViewport viewport = scrollPane.getViewport();
                 Component view = viewport.getView();
 
                 if (view instanceof JTextArea) {
                     JTextArea textArea = (JTextArea) view;
-                    String content = textArea.getText();
-
-                    PrintWriter writer = new PrintWriter(new FileWriter(file));
-                    writer.println("PDF Export");
-                    writer.println("Generated: " + new java.util.Date());
-                    writer.println("---");
-                    writer.println();
-                    writer.println(content);
-                    writer.close();
-
-                    logger.accept("Saved to PDF: " + file.getName() + " (basic format)");
+                    int lines = PdfWriter.writeDocument(textArea.getDocument(), file, file.getName());
+                    logger.accept("Saved to PDF: " + file.getName() + " (" + lines + " lines)");
+                } else if (view instanceof JTable) {
+                    long rows = PdfWriter.writeTable(((JTable) view).getModel(), file, file.getName());
+                    logger.accept("Saved to PDF: " + file.getName() + " (" + rows + " rows)");
                 }
+            } else if (selected instanceof TableViewer) {
+                ((TableViewer) selected).exportPdf(file, logger);
             } else {
                 logger.accept("ERROR: Cannot save current tab to PDF");
             }
@@ -95,18 +132,18 @@ public class FileHandler {
         try {
             Component selected = contentPane.getSelectedComponent();
 
-            if (selected instanceof JScrollPane) {
+            if (FileLoadWorker.isLoading(selected)) {
+                logger.accept("ERROR: Cannot save while the file is still loading");
+            } else if (LogFollower.wouldTruncate(selected, file)) {
+                logger.accept("ERROR: Cannot save the followed part of a log over " + file.getName());
+            } else if (selected instanceof JScrollPane) {
                 JScrollPane scrollPane = (JScrollPane) selected;
                 JViewport viewport = scrollPane.getViewport();
                 Component view = viewport.getView();
 
                 if (view instanceof JTextArea) {
                     JTextArea textArea = (JTextArea) view;
-                    String content = textArea.getText();
-
-                    PrintWriter writer = new PrintWriter(new FileWriter(file));
-                    writer.print(content);
-                    writer.close();
+                    DocumentWriter.write(textArea.getDocument(), file, true);
 
                     logger.accept("Saved document: " + file.getName());
                 }
@@ -118,27 +155,29 @@ public class FileHandler {
         }
     }
 
-    public static void saveOdbFile(File file, Object data, Consumer<String> logger) {
+    public static boolean saveOdbFile(File file, TableModel data, Consumer<String> logger) {
         try {
-            ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(file));
-            oos.writeObject(data);
-            oos.close();
+            long start = System.currentTimeMillis();
+            long rows = TableSnapshot.write(data, file, true);
 
-            logger.accept("Saved ODB file: " + file.getName());
+            logger.accept("Saved ODB file: " + file.getName() + " (" + rows + " rows, "
+                + LargeFileViewer.formatSize(file.length()) + ", " + (System.currentTimeMillis() - start) + " ms)");
+            return true;
         } catch (IOException e) {
             logger.accept("ERROR: Failed to save ODB file - " + e.getMessage());
+            return false;
         }
     }
 
-    public static Object loadOdbFile(File file, Consumer<String> logger) {
+    public static TableModel loadOdbFile(File file, Consumer<String> logger) {
         try {
-            ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file));
-            Object data = ois.readObject();
-            ois.close();
+            long start = System.currentTimeMillis();
+            TableModel data = TableSnapshot.load(file);
 
-            logger.accept("Loaded ODB file: " + file.getName());
+            logger.accept("Loaded ODB file: " + file.getName() + " (" + data.getRowCount() + " rows, "
+                + (System.currentTimeMillis() - start) + " ms)");
             return data;
-        } catch (Exception e) {
+        } catch (IOException e) {
             logger.accept("ERROR: Failed to load ODB file - " + e.getMessage());
             return null;
         }
@@ -146,9 +185,7 @@ public class FileHandler {
 
     public static void saveSqlFile(File file, String sqlContent, Consumer<String> logger) {
         try {
-            PrintWriter writer = new PrintWriter(new FileWriter(file));
-            writer.print(sqlContent);
-            writer.close();
+            DocumentWriter.write(sqlContent, file, true);
 
             logger.accept("Saved SQL file: " + file.getName());
         } catch (IOException e) {
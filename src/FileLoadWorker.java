@@ -0,0 +1,182 @@
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultCaret;
+import javax.swing.text.Document;
+import java.awt.Component;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+
+/**
+ * Reads a text file into a JTextArea off the event dispatch thread. The file
+ * is decoded as UTF-8 in chunks, line endings are normalized to \n, and the
+ * decoded text is appended to the area's Document chunk by chunk while a
+ * progress bar is shown in the scroll pane's header. The worker is stored
+ * on the scroll pane so closing the tab can cancel it.
+ */
+public class FileLoadWorker extends SwingWorker<Long, Void> {
+    public static final String CLIENT_PROPERTY = "fileLoadWorker";
+    private static final int CHUNK_CHARS = 64 * 1024;
+
+    private final File file;
+    private final JScrollPane scrollPane;
+    private final JTextArea textArea;
+    private final JProgressBar progressBar = new JProgressBar(0, 100);
+    private final Consumer<String> logger;
+    private final String description;
+
+    private volatile long bytesRead;
+    private boolean finished;
+
+    public FileLoadWorker(File file, JScrollPane scrollPane, JTextArea textArea,
+                          String description, Consumer<String> logger) {
+        this.file = file;
+        this.scrollPane = scrollPane;
+        this.textArea = textArea;
+        this.description = description;
+        this.logger = logger;
+
+        progressBar.setStringPainted(true);
+        progressBar.setString("Loading " + file.getName() + "...");
+        scrollPane.putClientProperty(CLIENT_PROPERTY, this);
+        scrollPane.setColumnHeaderView(progressBar);
+
+        textArea.setEditable(false);
+        ((DefaultCaret) textArea.getCaret()).setUpdatePolicy(DefaultCaret.NEVER_UPDATE);
+
+        addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) {
+                progressBar.setValue((Integer) e.getNewValue());
+                progressBar.setString(file.getName() + " - "
+                    + LargeFileViewer.formatSize(bytesRead) + " of " + LargeFileViewer.formatSize(file.length()));
+            }
+        });
+    }
+
+    /** Returns true while a load started on this component is still running. */
+    public static boolean isLoading(Component component) {
+        if (component instanceof JComponent) {
+            Object worker = ((JComponent) component).getClientProperty(CLIENT_PROPERTY);
+            return worker instanceof FileLoadWorker && !((FileLoadWorker) worker).finished;
+        }
+        return false;
+    }
+
+    /** Cancels a load still running on this component, if any. */
+    public static void cancel(Component component) {
+        if (component instanceof JComponent) {
+            Object worker = ((JComponent) component).getClientProperty(CLIENT_PROPERTY);
+            if (worker instanceof FileLoadWorker) {
+                ((FileLoadWorker) worker).cancel(true);
+            }
+        }
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    @Override
+    protected Long doInBackground() throws IOException {
+        long length = Math.max(1, file.length());
+
+        try (Reader reader = new InputStreamReader(new CountingInputStream(new FileInputStream(file)),
+                StandardCharsets.UTF_8)) {
+            char[] buffer = new char[CHUNK_CHARS];
+            boolean pendingCr = false;
+            int n;
+
+            while (!isCancelled() && (n = reader.read(buffer)) > 0) {
+                StringBuilder chunk = new StringBuilder(n);
+                for (int i = 0; i < n; i++) {
+                    char c = buffer[i];
+                    if (pendingCr) {
+                        pendingCr = false;
+                        if (c == '\n') {
+                            continue;
+                        }
+                    }
+                    if (c == '\r') {
+                        chunk.append('\n');
+                        pendingCr = true;
+                    } else {
+                        chunk.append(c);
+                    }
+                }
+
+                append(chunk.toString());
+                setProgress((int) Math.min(100, bytesRead * 100 / length));
+            }
+        }
+        // done() can ride along with a progress update queued before the last
+        // chunks, so wait until the EDT has inserted them all
+        try {
+            SwingUtilities.invokeAndWait(() -> { });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (java.lang.reflect.InvocationTargetException e) {
+            e.printStackTrace();
+        }
+        return bytesRead;
+    }
+
+    /** Queues a chunk for the EDT; unlike publish(), invokeLater never coalesces chunks. */
+    private void append(String chunk) {
+        SwingUtilities.invokeLater(() -> {
+            if (isCancelled()) {
+                return;
+            }
+            Document document = textArea.getDocument();
+            try {
+                document.insertString(document.getLength(), chunk, null);
+            } catch (BadLocationException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    @Override
+    protected void done() {
+        finished = true;
+        scrollPane.setColumnHeaderView(null);
+        textArea.setEditable(true);
+        textArea.setCaretPosition(0);
+        ((DefaultCaret) textArea.getCaret()).setUpdatePolicy(DefaultCaret.UPDATE_WHEN_ON_EDT);
+
+        try {
+            get();
+            logger.accept("Opened " + description + ": " + file.getName()
+                + " (" + LargeFileViewer.formatSize(bytesRead) + ")");
+        } catch (CancellationException e) {
+            logger.accept("Cancelled loading " + file.getName());
+        } catch (Exception e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            logger.accept("ERROR: Failed to open file - " + cause.getMessage());
+        }
+    }
+
+    private class CountingInputStream extends FilterInputStream {
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                bytesRead++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                bytesRead += n;
+            }
+            return n;
+        }
+    }
+}
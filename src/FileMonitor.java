@@ -0,0 +1,140 @@
+import javax.swing.*;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches directories with a WatchService on one background thread that
+ * blocks while nothing happens. Events are collected until the directories
+ * have been quiet for DEBOUNCE_MILLIS (or MAX_DELAY_MILLIS have passed) and
+ * then handed to the listener on the EDT as one batch of changed paths.
+ * Watching is not recursive; register each directory of interest.
+ */
+public class FileMonitor implements Closeable {
+    private static final long DEBOUNCE_MILLIS = 300;
+    private static final long MAX_DELAY_MILLIS = 2000;
+
+    public interface Listener {
+        /**
+         * Called on the EDT. changed holds created, modified and deleted paths;
+         * overflowed holds directories that lost events and should be rescanned.
+         */
+        void filesChanged(Set<Path> changed, Set<Path> overflowed);
+    }
+
+    private final WatchService watcher;
+    private final Listener listener;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private final Map<Path, WatchKey> keys = new HashMap<>();
+    private final Thread thread;
+    private volatile boolean closed;
+
+    public FileMonitor(Listener listener) throws IOException {
+        this.watcher = FileSystems.getDefault().newWatchService();
+        this.listener = listener;
+        this.thread = new Thread(this::run, "file-monitor");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Starts watching a directory; does nothing if it is already watched or cannot be. */
+    public void register(Path directory) {
+        Path dir = directory.toAbsolutePath().normalize();
+        synchronized (keys) {
+            if (keys.containsKey(dir)) {
+                return;
+            }
+            try {
+                WatchKey key = dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                keys.put(dir, key);
+                directories.put(key, dir);
+            } catch (IOException e) {
+                // not a directory, gone, or out of watches; the tree still works without events
+            }
+        }
+    }
+
+    public void unregister(Path directory) {
+        Path dir = directory.toAbsolutePath().normalize();
+        synchronized (keys) {
+            WatchKey key = keys.remove(dir);
+            if (key != null) {
+                key.cancel();
+                directories.remove(key);
+            }
+        }
+    }
+
+    public boolean isWatched(Path directory) {
+        synchronized (keys) {
+            return keys.containsKey(directory.toAbsolutePath().normalize());
+        }
+    }
+
+    public int getWatchCount() {
+        synchronized (keys) {
+            return keys.size();
+        }
+    }
+
+    private void run() {
+        while (!closed) {
+            try {
+                WatchKey key = watcher.take();
+                Set<Path> changed = new LinkedHashSet<>();
+                Set<Path> overflowed = new LinkedHashSet<>();
+                collect(key, changed, overflowed);
+
+                long deadline = System.currentTimeMillis() + MAX_DELAY_MILLIS;
+                while (System.currentTimeMillis() < deadline
+                        && (key = watcher.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    collect(key, changed, overflowed);
+                }
+
+                if (!changed.isEmpty() || !overflowed.isEmpty()) {
+                    SwingUtilities.invokeLater(() -> listener.filesChanged(changed, overflowed));
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+        }
+    }
+
+    private void collect(WatchKey key, Set<Path> changed, Set<Path> overflowed) {
+        Path dir;
+        synchronized (keys) {
+            dir = directories.get(key);
+        }
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (dir == null) {
+                continue;
+            }
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflowed.add(dir);
+            } else {
+                changed.add(dir.resolve((Path) event.context()));
+            }
+        }
+        if (!key.reset() && dir != null) {
+            // the directory itself is gone
+            unregister(dir);
+            changed.add(dir);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            watcher.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
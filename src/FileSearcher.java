@@ -0,0 +1,424 @@
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Searches UTF-8 bytes for a literal or a regular expression. The input is
+ * cut into line-aligned chunks that are scanned in parallel, literals with
+ * Boyer-Moore-Horspool straight on the bytes and regexes line by line.
+ * Chunk results are handed out in file order as soon as every earlier chunk
+ * is done, so hits arrive with correct line numbers while later chunks are
+ * still being scanned. Works on a MappedFile, so huge files are searched
+ * without loading them.
+ */
+public class FileSearcher {
+    public static final int MAX_HITS = 100_000;
+    private static final int CHUNK_SIZE = 4 * 1024 * 1024;
+    /** A chunk boundary is moved to the next line start, but never by more than this. */
+    private static final int MAX_ALIGN = 1024 * 1024;
+    private static final int PREVIEW_BYTES = 240;
+    /** How much of the line before a match the preview shows. */
+    private static final int PREVIEW_CONTEXT = 80;
+
+    /** The bytes being searched; MappedFile has exactly these methods. */
+    public interface Source {
+        long size();
+
+        byte byteAt(long position);
+
+        int read(long position, byte[] dst, int offset, int length);
+    }
+
+    public static class Hit {
+        /** Zero-based line number. */
+        public final long line;
+        /** Byte offset of the match. */
+        public final long offset;
+        /** Match position and length in characters, within the line. */
+        public final int column;
+        public final int length;
+        public final String preview;
+
+        Hit(long line, long offset, int column, int length, String preview) {
+            this.line = line;
+            this.offset = offset;
+            this.column = column;
+            this.length = length;
+            this.preview = preview;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,d: %s", line + 1, preview);
+        }
+    }
+
+    private final Source source;
+    private final String query;
+    private final boolean regex;
+    private final boolean matchCase;
+    private final byte[] literal;
+    private final int[] skip;
+    private final Pattern pattern;
+
+    private volatile boolean cancelled;
+
+    public FileSearcher(Source source, String query, boolean regex, boolean matchCase) {
+        if (query.isEmpty() || query.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("Search text must be a single, non-empty line");
+        }
+        this.source = source;
+        this.query = query;
+        this.regex = regex;
+        this.matchCase = matchCase;
+
+        if (regex) {
+            pattern = Pattern.compile(query, matchCase ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+            literal = null;
+            skip = null;
+        } else {
+            pattern = null;
+            literal = query.getBytes(StandardCharsets.UTF_8);
+            // byte-level folding, so ignoring case only covers ASCII letters for literals
+            if (!matchCase) {
+                for (int i = 0; i < literal.length; i++) {
+                    literal[i] = fold(literal[i]);
+                }
+            }
+            skip = new int[256];
+            Arrays.fill(skip, literal.length);
+            for (int i = 0; i < literal.length - 1; i++) {
+                skip[literal[i] & 0xFF] = literal.length - 1 - i;
+                if (!matchCase) {
+                    skip[upper(literal[i]) & 0xFF] = literal.length - 1 - i;
+                }
+            }
+        }
+    }
+
+    public static Source of(MappedFile file) {
+        return new Source() {
+            public long size() {
+                return file.size();
+            }
+
+            public byte byteAt(long position) {
+                return file.byteAt(position);
+            }
+
+            public int read(long position, byte[] dst, int offset, int length) {
+                return file.read(position, dst, offset, length);
+            }
+        };
+    }
+
+    public static Source of(byte[] bytes) {
+        return new Source() {
+            public long size() {
+                return bytes.length;
+            }
+
+            public byte byteAt(long position) {
+                return bytes[(int) position];
+            }
+
+            public int read(long position, byte[] dst, int offset, int length) {
+                int n = (int) Math.max(0, Math.min(length, bytes.length - position));
+                System.arraycopy(bytes, (int) position, dst, offset, n);
+                return n;
+            }
+        };
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Runs the search, passing hits to the consumer in file order, one batch
+     * per chunk. Returns the number of hits; stops at MAX_HITS.
+     */
+    public int search(Consumer<List<Hit>> hits) throws InterruptedException {
+        List<long[]> chunks = split();
+        int threads = Math.max(1, Math.min(chunks.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "file-search");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            List<Future<ChunkResult>> results = new ArrayList<>(chunks.size());
+            for (long[] chunk : chunks) {
+                results.add(pool.submit(() -> scan(chunk[0], (int) (chunk[1] - chunk[0]))));
+            }
+
+            long lineBase = 0;
+            int total = 0;
+            for (Future<ChunkResult> future : results) {
+                if (cancelled) {
+                    break;
+                }
+                ChunkResult result;
+                try {
+                    result = future.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+
+                if (!result.hits.isEmpty()) {
+                    List<Hit> batch = new ArrayList<>(result.hits.size());
+                    for (Hit hit : result.hits) {
+                        if (total + batch.size() >= MAX_HITS) {
+                            break;
+                        }
+                        batch.add(new Hit(lineBase + hit.line, hit.offset, hit.column, hit.length, hit.preview));
+                    }
+                    total += batch.size();
+                    hits.accept(batch);
+                }
+                lineBase += result.newlines;
+                if (total >= MAX_HITS) {
+                    break;
+                }
+            }
+            return total;
+        } finally {
+            cancelled = true;
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Scans the whole source on the calling thread and returns up to limit
+     * hits. Meant for many small inputs, where a thread pool per search
+     * would cost more than the scan.
+     */
+    public List<Hit> searchHere(int limit) {
+        if (source.size() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Source too large for a single-threaded scan");
+        }
+        List<Hit> hits = scan(0, (int) source.size()).hits;
+        return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+
+    /** Cuts the source into chunks that start at line starts. */
+    private List<long[]> split() {
+        List<long[]> chunks = new ArrayList<>();
+        long size = source.size();
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(size, start + CHUNK_SIZE);
+            long limit = Math.min(size, end + MAX_ALIGN);
+            while (end < limit && source.byteAt(end - 1) != '\n') {
+                end++;
+            }
+            chunks.add(new long[] {start, end});
+            start = end;
+        }
+        return chunks;
+    }
+
+    private static class ChunkResult {
+        final List<Hit> hits = new ArrayList<>();
+        long newlines;
+    }
+
+    private ChunkResult scan(long start, int length) {
+        byte[] bytes = new byte[length];
+        source.read(start, bytes, 0, length);
+
+        ChunkResult result = new ChunkResult();
+        if (regex) {
+            scanRegex(bytes, start, result);
+        } else {
+            scanLiteral(bytes, start, result);
+        }
+        return result;
+    }
+
+    private void scanLiteral(byte[] bytes, long start, ChunkResult result) {
+        int n = literal.length;
+        int last = n - 1;
+        long line = 0;
+        int counted = 0;
+        int lineStart = 0;
+        CharsetDecoder decoder = newDecoder();
+        // Characters from lineStart to columnAt, carried from hit to hit so
+        // a long line with many hits is decoded only once.
+        int columnAt = 0;
+        int column = 0;
+
+        int i = 0;
+        while (i + last < bytes.length && !cancelled) {
+            int j = last;
+            while (j >= 0 && (matchCase ? bytes[i + j] : fold(bytes[i + j])) == literal[j]) {
+                j--;
+            }
+            if (j < 0) {
+                for (; counted < i; counted++) {
+                    if (bytes[counted] == '\n') {
+                        line++;
+                        lineStart = counted + 1;
+                    }
+                }
+                if (columnAt < lineStart) {
+                    columnAt = lineStart;
+                    column = 0;
+                }
+                column += decode(decoder, bytes, columnAt, i - columnAt, null).length();
+                columnAt = i;
+                addHit(result, bytes, start, line, lineStart, i, i + n, column, decoder);
+                if (result.hits.size() >= MAX_HITS) {
+                    break;
+                }
+                i += n;
+            } else {
+                i += skip[bytes[i + last] & 0xFF];
+            }
+        }
+
+        for (; counted < bytes.length; counted++) {
+            if (bytes[counted] == '\n') {
+                line++;
+            }
+        }
+        result.newlines = line;
+    }
+
+    private void scanRegex(byte[] bytes, long start, ChunkResult result) {
+        CharsetDecoder decoder = newDecoder();
+        CharBuffer chars = CharBuffer.allocate(1024);
+        Matcher matcher = pattern.matcher("");
+        long line = 0;
+        int lineStart = 0;
+
+        while (lineStart < bytes.length && !cancelled) {
+            int lineEnd = lineStart;
+            while (lineEnd < bytes.length && bytes[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            int contentEnd = lineEnd > lineStart && bytes[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+
+            chars = decode(decoder, bytes, lineStart, contentEnd - lineStart, chars);
+            matcher.reset(chars);
+            String text = null;
+            int charAt = 0;
+            int byteAt = 0;
+            while (matcher.find() && result.hits.size() < MAX_HITS) {
+                if (text == null) {
+                    text = chars.toString();
+                }
+                byteAt += utf8Length(text, charAt, matcher.start());
+                charAt = matcher.start();
+                result.hits.add(new Hit(line, start + lineStart + byteAt,
+                    matcher.start(), matcher.end() - matcher.start(), preview(text, matcher.start(), matcher.end())));
+            }
+            if (result.hits.size() >= MAX_HITS) {
+                break;
+            }
+
+            if (lineEnd < bytes.length) {
+                line++;
+            }
+            lineStart = lineEnd + 1;
+        }
+
+        // a cancelled or capped scan still needs the chunk's line count for later chunks
+        for (int i = lineStart; i < bytes.length; i++) {
+            if (bytes[i] == '\n') {
+                line++;
+            }
+        }
+        result.newlines = line;
+    }
+
+    private void addHit(ChunkResult result, byte[] bytes, long start, long line, int lineStart,
+                        int matchStart, int matchEnd, int column, CharsetDecoder decoder) {
+        int from = previewStart(bytes, lineStart, matchStart);
+        int to = previewEnd(bytes, from, matchEnd);
+        String text = decode(decoder, bytes, from, to - from, null).toString();
+        result.hits.add(new Hit(line, start + matchStart, column, query.length(),
+            (from > lineStart ? "..." : "") + preview(text)
+                + (to < bytes.length && bytes[to] != '\n' && bytes[to] != '\r' ? "..." : "")));
+    }
+
+    /** The preview starts up to PREVIEW_CONTEXT bytes before the match, on a character boundary. */
+    private static int previewStart(byte[] bytes, int lineStart, int matchStart) {
+        int from = Math.max(lineStart, matchStart - PREVIEW_CONTEXT);
+        while (from < matchStart && (bytes[from] & 0xC0) == 0x80) {
+            from++;
+        }
+        return from;
+    }
+
+    private static int previewEnd(byte[] bytes, int from, int matchEnd) {
+        int to = matchEnd;
+        while (to < bytes.length && bytes[to] != '\n' && to - from < PREVIEW_BYTES) {
+            to++;
+        }
+        while (to > matchEnd && to < bytes.length && (bytes[to] & 0xC0) == 0x80) {
+            to--;
+        }
+        return to;
+    }
+
+    private static String preview(String line, int matchStart, int matchEnd) {
+        int from = Math.max(0, matchStart - PREVIEW_CONTEXT);
+        if (from > 0 && Character.isLowSurrogate(line.charAt(from))) {
+            from++;
+        }
+        int to = Math.min(line.length(), Math.max(matchEnd, from + PREVIEW_BYTES));
+        return (from > 0 ? "..." : "") + preview(line.substring(from, to)) + (to < line.length() ? "..." : "");
+    }
+
+    private static String preview(String line) {
+        String text = line.replace('\t', ' ').replace('\r', ' ').trim();
+        return text.length() > PREVIEW_BYTES ? text.substring(0, PREVIEW_BYTES) + "..." : text;
+    }
+
+    private static CharBuffer decode(CharsetDecoder decoder, byte[] bytes, int offset, int length, CharBuffer reuse) {
+        int capacity = (int) (length * (double) decoder.maxCharsPerByte()) + 1;
+        CharBuffer out = reuse != null && reuse.capacity() >= capacity ? reuse : CharBuffer.allocate(capacity);
+        out.clear();
+        decoder.reset();
+        decoder.decode(ByteBuffer.wrap(bytes, offset, length), out, true);
+        decoder.flush(out);
+        out.flip();
+        return out;
+    }
+
+    private static int utf8Length(String text, int from, int to) {
+        return text.substring(from, to).getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static CharsetDecoder newDecoder() {
+        return StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    private static byte fold(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    private static byte upper(byte b) {
+        return b >= 'a' && b <= 'z' ? (byte) (b - ('a' - 'A')) : b;
+    }
+}
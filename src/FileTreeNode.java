@@ -0,0 +1,140 @@
+import javax.swing.*;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * File tree node whose children are listed only when it is first expanded.
+ * Until then a directory holds a single "Loading..." placeholder so the
+ * tree shows an expand handle; the listing runs on a background thread
+ * with a DirectoryStream and is cached on the node afterwards.
+ */
+public class FileTreeNode extends DefaultMutableTreeNode {
+    private static final String PLACEHOLDER = "Loading...";
+
+    private final boolean directory;
+    private boolean loaded;
+    private boolean loading;
+
+    public FileTreeNode(File file, boolean directory) {
+        super(file, directory);
+        this.directory = directory;
+        if (directory) {
+            add(new DefaultMutableTreeNode(PLACEHOLDER, false));
+        }
+    }
+
+    public File getFile() {
+        return (File) getUserObject();
+    }
+
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    @Override
+    public boolean isLeaf() {
+        return !directory;
+    }
+
+    @Override
+    public String toString() {
+        String name = getFile().getName();
+        return name.isEmpty() ? getFile().getPath() : name;
+    }
+
+    /**
+     * Starts listing the directory unless it is listed already or being listed.
+     * filter decides which files are shown; subdirectories always are.
+     * onLoaded is called on the EDT once the children are in place.
+     */
+    public void load(DefaultTreeModel model, Predicate<Path> filter, Consumer<FileTreeNode> onLoaded) {
+        if (!directory || loaded || loading) {
+            return;
+        }
+        loading = true;
+
+        new SwingWorker<List<FileTreeNode>, Void>() {
+            @Override
+            protected List<FileTreeNode> doInBackground() throws IOException {
+                List<FileTreeNode> children = new ArrayList<>();
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(getFile().toPath())) {
+                    for (Path path : stream) {
+                        boolean isDirectory = Files.isDirectory(path);
+                        if (isDirectory || filter.test(path)) {
+                            children.add(new FileTreeNode(path.toFile(), isDirectory));
+                        }
+                    }
+                }
+                children.sort(ORDER);
+                return children;
+            }
+
+            @Override
+            protected void done() {
+                loading = false;
+                loaded = true;
+                removeAllChildren();
+                try {
+                    for (FileTreeNode child : get()) {
+                        add(child);
+                    }
+                    onLoaded.accept(FileTreeNode.this);
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    add(new DefaultMutableTreeNode("Cannot list folder: " + cause.getMessage(), false));
+                }
+                model.nodeStructureChanged(FileTreeNode.this);
+            }
+        }.execute();
+    }
+
+    /** Returns the child node for file, or null if it is not listed. */
+    public FileTreeNode findChild(File file) {
+        for (int i = 0; i < getChildCount(); i++) {
+            if (getChildAt(i) instanceof FileTreeNode && ((FileTreeNode) getChildAt(i)).getFile().equals(file)) {
+                return (FileTreeNode) getChildAt(i);
+            }
+        }
+        return null;
+    }
+
+    /** Inserts a child at its sorted position and notifies the model. */
+    public void insertSorted(FileTreeNode child, DefaultTreeModel model) {
+        int index = 0;
+        while (index < getChildCount() && getChildAt(index) instanceof FileTreeNode
+                && ORDER.compare((FileTreeNode) getChildAt(index), child) < 0) {
+            index++;
+        }
+        model.insertNodeInto(child, this, index);
+    }
+
+    /** Drops the cached listing; the next expansion lists the directory again. */
+    public void unload(DefaultTreeModel model) {
+        if (!directory || loading) {
+            return;
+        }
+        loaded = false;
+        removeAllChildren();
+        add(new DefaultMutableTreeNode(PLACEHOLDER, false));
+        model.nodeStructureChanged(this);
+    }
+
+    /** Directories first, then by name ignoring case. */
+    static final Comparator<FileTreeNode> ORDER = Comparator
+        .comparing((FileTreeNode node) -> !node.directory)
+        .thenComparing(node -> node.getFile().getName(), String.CASE_INSENSITIVE_ORDER);
+}
@@ -0,0 +1,224 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Decides how to open a file. Each file type registers its extensions,
+ * the magic bytes it starts with and the method that opens it. Detection
+ * reads only the first HEAD_BYTES of the file into a pooled buffer:
+ * signatures win over the name, so a misnamed database or image still
+ * opens in the right viewer, and a registered text type that turns out to
+ * be binary goes to the hex viewer instead. Files no type claims open as
+ * text, as large text or in hex, by size and content. Results are cached
+ * by path, size and modification time.
+ */
+public class FileTypeRegistry {
+    /** Bytes read to detect a type; a NUL among them marks the file as binary. */
+    public static final int HEAD_BYTES = 4096;
+    private static final int MAX_CACHED = 4096;
+    private static final int POOLED_BUFFERS = 4;
+
+    /** Binary image formats, opened in hex whatever is in the first bytes. */
+    private static final String[] RASTER_EXTENSIONS = {"png", "jpg", "jpeg", "gif", "bmp", "ico", "webp", "tiff", "tif"};
+    /** Image extensions, SVG included; the file tree leaves these out. */
+    private static final Set<String> IMAGE_EXTENSIONS = new HashSet<>(Arrays.asList(
+        "png", "jpg", "jpeg", "gif", "bmp", "ico", "svg", "webp", "tiff", "tif"));
+
+    private static final ArrayBlockingQueue<ByteBuffer> BUFFERS = new ArrayBlockingQueue<>(POOLED_BUFFERS);
+
+    public static class FileType {
+        public final String name;
+        /** Text types are checked for NUL bytes and opened in hex if they have any. */
+        public final boolean text;
+        private final Consumer<File> opener;
+
+        FileType(String name, boolean text, Consumer<File> opener) {
+            this.name = name;
+            this.text = text;
+            this.opener = opener;
+        }
+
+        public void open(File file) {
+            opener.accept(file);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private static class Signature {
+        final int offset;
+        final byte[] bytes;
+        final FileType type;
+
+        Signature(int offset, byte[] bytes, FileType type) {
+            this.offset = offset;
+            this.bytes = bytes;
+            this.type = type;
+        }
+
+        boolean matches(ByteBuffer head) {
+            if (offset + bytes.length > head.limit()) {
+                return false;
+            }
+            for (int i = 0; i < bytes.length; i++) {
+                if (head.get(offset + i) != bytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static class Cached {
+        final long length;
+        final long modified;
+        final FileType type;
+
+        Cached(long length, long modified, FileType type) {
+            this.length = length;
+            this.modified = modified;
+            this.type = type;
+        }
+    }
+
+    private final Map<String, FileType> byExtension = new HashMap<>();
+    private final List<Signature> signatures = new ArrayList<>();
+    private final FileType text;
+    private final FileType largeText;
+    private final FileType binary;
+    private final Map<String, Cached> cache = new LinkedHashMap<String, Cached>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+            return size() > MAX_CACHED;
+        }
+    };
+
+    /**
+     * The three openers handle files that no registered type claims; images
+     * are registered here and open with binaryOpener.
+     */
+    public FileTypeRegistry(Consumer<File> textOpener, Consumer<File> largeTextOpener, Consumer<File> binaryOpener) {
+        text = new FileType("text", true, textOpener);
+        largeText = new FileType("large text", true, largeTextOpener);
+        binary = new FileType("binary", false, binaryOpener);
+
+        FileType image = register("image", false, RASTER_EXTENSIONS, new byte[][] {
+            {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'},
+            {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF},
+            bytes("GIF87a"),
+            bytes("GIF89a"),
+            {'I', 'I', '*', 0},
+            {'M', 'M', 0, '*'},
+        }, binaryOpener);
+        addSignature(image, 8, bytes("WEBP"));
+    }
+
+    /**
+     * Registers a file type. Extensions are given without the dot; each
+     * signature is a byte string expected at the start of the file. Types
+     * registered earlier win when signatures overlap.
+     */
+    public FileType register(String name, boolean text, String[] extensions, byte[][] signatures, Consumer<File> opener) {
+        FileType type = new FileType(name, text, opener);
+        for (String extension : extensions) {
+            byExtension.put(extension.toLowerCase(Locale.ROOT), type);
+        }
+        for (byte[] signature : signatures) {
+            this.signatures.add(new Signature(0, signature, type));
+        }
+        return type;
+    }
+
+    /** Adds a signature that starts offset bytes into the file. */
+    public void addSignature(FileType type, int offset, byte[] bytes) {
+        signatures.add(new Signature(offset, bytes, type));
+    }
+
+    public FileType detect(File file) {
+        String key = file.getAbsolutePath();
+        long length = file.length();
+        long modified = file.lastModified();
+        synchronized (cache) {
+            Cached cached = cache.get(key);
+            if (cached != null && cached.length == length && cached.modified == modified) {
+                return cached.type;
+            }
+        }
+
+        FileType type = sniff(file, length);
+        synchronized (cache) {
+            cache.put(key, new Cached(length, modified, type));
+        }
+        return type;
+    }
+
+    private FileType sniff(File file, long length) {
+        FileType named = byExtension.get(extensionOf(file.getName()));
+        ByteBuffer head = BUFFERS.poll();
+        if (head == null) {
+            head = ByteBuffer.allocate(HEAD_BYTES);
+        }
+        try {
+            head.clear();
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                while (head.hasRemaining() && channel.read(head, head.position()) > 0) {
+                    // positional reads until the buffer is full or the file ends
+                }
+            } catch (IOException e) {
+                // unreadable: go by name and let the opener report the error
+                return named != null ? named : text;
+            }
+            head.flip();
+
+            for (Signature signature : signatures) {
+                if (signature.matches(head)) {
+                    return signature.type;
+                }
+            }
+            boolean hasNul = hasNul(head);
+            if (named != null) {
+                return named.text && hasNul ? binary : named;
+            }
+            if (hasNul) {
+                return binary;
+            }
+            return length >= FileHandler.LARGE_FILE_THRESHOLD ? largeText : text;
+        } finally {
+            BUFFERS.offer(head);
+        }
+    }
+
+    /** The binary test, also used by the search index: a NUL byte among the first HEAD_BYTES. */
+    public static boolean hasNul(ByteBuffer bytes) {
+        for (int i = 0, n = Math.min(bytes.limit(), HEAD_BYTES); i < n; i++) {
+            if (bytes.get(i) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** True for image file names, decided by extension alone so listing a folder reads nothing. */
+    public static boolean isImageName(String name) {
+        return IMAGE_EXTENSIONS.contains(extensionOf(name));
+    }
+
+    private static String extensionOf(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /** Signature bytes from an ASCII string; characters above 0xFF are not allowed. */
+    public static byte[] bytes(String ascii) {
+        return ascii.getBytes(StandardCharsets.ISO_8859_1);
+    }
+}
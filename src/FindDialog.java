@@ -0,0 +1,229 @@
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import java.awt.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Find All for the current tab. Text tabs are searched in their current
+ * (possibly edited) text, large file and hex tabs in the bytes on disk.
+ * Hits are listed with line numbers as they are found; selecting one jumps
+ * to it in the tab it came from.
+ */
+public class FindDialog extends JDialog {
+    private final JTabbedPane contentPane;
+
+    private final JTextField queryField = new JTextField(30);
+    private final JCheckBox matchCaseBox = new JCheckBox("Match case");
+    private final JCheckBox regexBox = new JCheckBox("Regex");
+    private final JButton findButton = new JButton("Find All");
+    private final JButton cancelButton = new JButton("Cancel");
+    private final DefaultListModel<FileSearcher.Hit> hitModel = new DefaultListModel<>();
+    private final JList<FileSearcher.Hit> hitList = new JList<>(hitModel);
+    private final JLabel statusLabel = new JLabel(" ");
+
+    private Component target;
+    private FileSearcher searcher;
+    private SwingWorker<Integer, FileSearcher.Hit> worker;
+
+    public FindDialog(Frame owner, JTabbedPane contentPane) {
+        super(owner, "Find", false);
+        this.contentPane = contentPane;
+
+        JPanel queryPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        queryPanel.add(new JLabel("Find:"));
+        queryPanel.add(queryField);
+        queryPanel.add(matchCaseBox);
+        queryPanel.add(regexBox);
+        queryPanel.add(findButton);
+        queryPanel.add(cancelButton);
+
+        hitList.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        hitList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        hitList.addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting() && hitList.getSelectedValue() != null) {
+                jumpTo(hitList.getSelectedValue());
+            }
+        });
+
+        JButton previousButton = new JButton("Previous");
+        previousButton.addActionListener(e -> step(-1));
+        JButton nextButton = new JButton("Next");
+        nextButton.addActionListener(e -> step(1));
+        JPanel bottomPanel = new JPanel(new BorderLayout());
+        JPanel stepPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        stepPanel.add(previousButton);
+        stepPanel.add(nextButton);
+        statusLabel.setBorder(BorderFactory.createEmptyBorder(2, 6, 2, 6));
+        bottomPanel.add(statusLabel, BorderLayout.CENTER);
+        bottomPanel.add(stepPanel, BorderLayout.EAST);
+
+        setLayout(new BorderLayout());
+        add(queryPanel, BorderLayout.NORTH);
+        add(new JScrollPane(hitList), BorderLayout.CENTER);
+        add(bottomPanel, BorderLayout.SOUTH);
+
+        findButton.addActionListener(e -> findAll());
+        queryField.addActionListener(e -> findAll());
+        cancelButton.setEnabled(false);
+        cancelButton.addActionListener(e -> cancelSearch());
+
+        JRootPane root = getRootPane();
+        root.registerKeyboardAction(e -> step(1), KeyStroke.getKeyStroke("F3"), JComponent.WHEN_IN_FOCUSED_WINDOW);
+        root.registerKeyboardAction(e -> step(-1), KeyStroke.getKeyStroke("shift F3"),
+            JComponent.WHEN_IN_FOCUSED_WINDOW);
+        root.registerKeyboardAction(e -> setVisible(false), KeyStroke.getKeyStroke("ESCAPE"),
+            JComponent.WHEN_IN_FOCUSED_WINDOW);
+
+        setSize(700, 400);
+        setLocationRelativeTo(owner);
+    }
+
+    /** Shows the dialog with the field focused, prefilled from a text selection if there is one. */
+    public void open() {
+        JTextArea textArea = textAreaOf(contentPane.getSelectedComponent());
+        if (textArea != null && textArea.getSelectedText() != null && textArea.getSelectedText().indexOf('\n') < 0) {
+            queryField.setText(textArea.getSelectedText());
+        }
+        setVisible(true);
+        queryField.selectAll();
+        queryField.requestFocusInWindow();
+    }
+
+    private void findAll() {
+        String query = queryField.getText();
+        if (query.isEmpty()) {
+            return;
+        }
+        cancelSearch();
+        hitModel.clear();
+
+        Component selected = contentPane.getSelectedComponent();
+        FileSearcher.Source source;
+        if (selected instanceof LargeFileViewer) {
+            source = FileSearcher.of(((LargeFileViewer) selected).getMappedFile());
+        } else if (selected instanceof HexViewer) {
+            source = FileSearcher.of(((HexViewer) selected).getMappedFile());
+        } else if (textAreaOf(selected) != null) {
+            if (FileLoadWorker.isLoading(selected)) {
+                statusLabel.setText("The file is still loading");
+                return;
+            }
+            String text = textAreaOf(selected).getText();
+            source = FileSearcher.of(text.getBytes(StandardCharsets.UTF_8));
+        } else {
+            statusLabel.setText("Find works in text, large file and binary tabs");
+            return;
+        }
+
+        FileSearcher search;
+        try {
+            search = new FileSearcher(source, query, regexBox.isSelected(), matchCaseBox.isSelected());
+        } catch (PatternSyntaxException e) {
+            statusLabel.setText("Invalid regex: " + e.getDescription());
+            return;
+        } catch (IllegalArgumentException e) {
+            statusLabel.setText(e.getMessage());
+            return;
+        }
+
+        target = selected;
+        searcher = search;
+        statusLabel.setText("Searching...");
+        findButton.setEnabled(false);
+        cancelButton.setEnabled(true);
+        long started = System.currentTimeMillis();
+
+        worker = new SwingWorker<Integer, FileSearcher.Hit>() {
+            @Override
+            protected Integer doInBackground() throws Exception {
+                return search.search(batch -> publish(batch.toArray(new FileSearcher.Hit[0])));
+            }
+
+            @Override
+            protected void process(List<FileSearcher.Hit> hits) {
+                if (searcher == search) {
+                    hitModel.addAll(hits);
+                    statusLabel.setText("Searching... " + String.format("%,d", hitModel.size()) + " hits");
+                }
+            }
+
+            @Override
+            protected void done() {
+                if (searcher != search) {
+                    return;
+                }
+                findButton.setEnabled(true);
+                cancelButton.setEnabled(false);
+                try {
+                    int count = get();
+                    statusLabel.setText(String.format("%,d", count) + " hits for \"" + search.getQuery() + "\""
+                        + (count >= FileSearcher.MAX_HITS ? " (stopped at the limit)" : "")
+                        + " in " + (System.currentTimeMillis() - started) + " ms");
+                } catch (CancellationException e) {
+                    statusLabel.setText("Search cancelled, " + String.format("%,d", hitModel.size()) + " hits");
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    statusLabel.setText("ERROR: Search failed - " + cause.getMessage());
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    private void cancelSearch() {
+        if (searcher != null) {
+            searcher.cancel();
+        }
+        if (worker != null && !worker.isDone()) {
+            worker.cancel(true);
+        }
+        findButton.setEnabled(true);
+        cancelButton.setEnabled(false);
+    }
+
+    private void step(int direction) {
+        if (hitModel.isEmpty()) {
+            return;
+        }
+        int index = hitList.getSelectedIndex() + direction;
+        index = Math.floorMod(index, hitModel.size());
+        hitList.setSelectedIndex(index);
+        hitList.ensureIndexIsVisible(index);
+    }
+
+    private void jumpTo(FileSearcher.Hit hit) {
+        if (target == null || contentPane.indexOfComponent(target) < 0) {
+            statusLabel.setText("The searched tab was closed");
+            return;
+        }
+        contentPane.setSelectedComponent(target);
+
+        if (target instanceof LargeFileViewer) {
+            ((LargeFileViewer) target).goToLine(hit.line);
+        } else if (target instanceof HexViewer) {
+            ((HexViewer) target).goToOffset(hit.offset);
+        } else {
+            JTextArea textArea = textAreaOf(target);
+            try {
+                int start = textArea.getLineStartOffset((int) hit.line) + hit.column;
+                textArea.select(start, Math.min(start + hit.length, textArea.getDocument().getLength()));
+                textArea.getCaret().setSelectionVisible(true);
+            } catch (BadLocationException e) {
+                statusLabel.setText("The text changed since the search; run it again");
+            }
+        }
+    }
+
+    private static JTextArea textAreaOf(Component component) {
+        if (component instanceof JScrollPane) {
+            Component view = ((JScrollPane) component).getViewport().getView();
+            if (view instanceof JTextArea) {
+                return (JTextArea) view;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,419 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Hex and ASCII view of a binary file backed by a MappedFile. Only the rows
+ * on screen are read and painted. Edits are kept as a sparse overlay and
+ * save() writes back just the modified byte ranges with positional
+ * FileChannel writes, so multi-gigabyte files open and save quickly.
+ */
+public class HexViewer extends JPanel {
+    private static final int BYTES_PER_ROW = 16;
+
+    private File file;
+    private MappedFile mappedFile;
+    private final TreeMap<Long, Byte> edits = new TreeMap<>();
+
+    private final RowView rowView = new RowView();
+    private final JScrollBar verticalBar = new JScrollBar(JScrollBar.VERTICAL);
+    private final JLabel statusLabel = new JLabel(" ");
+
+    private long cursor;
+    private boolean asciiColumn;
+    private boolean lowNibble;
+
+    public HexViewer(File file) throws IOException {
+        super(new BorderLayout());
+        this.file = file;
+        this.mappedFile = new MappedFile(file);
+
+        add(rowView, BorderLayout.CENTER);
+        add(verticalBar, BorderLayout.EAST);
+        statusLabel.setBorder(BorderFactory.createEmptyBorder(2, 6, 2, 6));
+        add(statusLabel, BorderLayout.SOUTH);
+
+        verticalBar.addAdjustmentListener(e -> rowView.repaint());
+        rowView.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                updateScrollBar();
+            }
+        });
+        rowView.addMouseWheelListener(e ->
+            verticalBar.setValue(verticalBar.getValue() + e.getWheelRotation() * 3));
+        rowView.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                rowView.requestFocusInWindow();
+                rowView.moveCursorTo(e.getX(), e.getY());
+            }
+        });
+        rowView.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                handleNavigation(e);
+            }
+
+            @Override
+            public void keyTyped(KeyEvent e) {
+                if (!e.isControlDown() && !e.isAltDown()) {
+                    handleTyped(e.getKeyChar());
+                }
+            }
+        });
+
+        updateScrollBar();
+        updateStatus();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /** The bytes on disk, without unsaved edits. */
+    public MappedFile getMappedFile() {
+        return mappedFile;
+    }
+
+    public boolean isModified() {
+        return !edits.isEmpty();
+    }
+
+    public int getModifiedByteCount() {
+        return edits.size();
+    }
+
+    public byte byteAt(long position) {
+        Byte edited = edits.get(position);
+        return edited != null ? edited : mappedFile.byteAt(position);
+    }
+
+    public void setByte(long position, byte value) {
+        if (position < 0 || position >= mappedFile.size()) {
+            throw new IndexOutOfBoundsException("Offset " + position + " outside file");
+        }
+        if (mappedFile.byteAt(position) == value) {
+            edits.remove(position);
+        } else {
+            edits.put(position, value);
+        }
+        updateStatus();
+        rowView.repaint();
+    }
+
+    /** Writes the modified byte ranges back into the file in place. */
+    public void save() throws IOException {
+        patch(file);
+        edits.clear();
+        updateStatus();
+        rowView.repaint();
+    }
+
+    /** Copies the file to target, patches the copy, and continues editing the copy. */
+    public void saveAs(File target) throws IOException {
+        if (target.getCanonicalFile().equals(file.getCanonicalFile())) {
+            save();
+            return;
+        }
+
+        Files.copy(file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        patch(target);
+
+        MappedFile reopened = new MappedFile(target);
+        mappedFile.close();
+        mappedFile = reopened;
+        file = target;
+        edits.clear();
+        updateStatus();
+        rowView.repaint();
+    }
+
+    private void patch(File target) throws IOException {
+        if (edits.isEmpty()) {
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(target.toPath(), StandardOpenOption.WRITE)) {
+            ByteBuffer run = ByteBuffer.allocate(64 * 1024);
+            long runStart = -1;
+            long next = -1;
+
+            for (Map.Entry<Long, Byte> edit : edits.entrySet()) {
+                long position = edit.getKey();
+                if (position != next || !run.hasRemaining()) {
+                    writeRun(channel, run, runStart);
+                    runStart = position;
+                }
+                run.put(edit.getValue());
+                next = position + 1;
+            }
+            writeRun(channel, run, runStart);
+            channel.force(false);
+        }
+    }
+
+    private static void writeRun(FileChannel channel, ByteBuffer run, long position) throws IOException {
+        run.flip();
+        while (run.hasRemaining()) {
+            position += channel.write(run, position);
+        }
+        run.clear();
+    }
+
+    public void promptGoToOffset() {
+        String input = JOptionPane.showInputDialog(this,
+            "Go to offset (decimal, or hex with 0x; file is " + String.format("%,d", mappedFile.size()) + " bytes):");
+        if (input == null || input.trim().isEmpty()) {
+            return;
+        }
+        try {
+            String value = input.trim().toLowerCase();
+            goToOffset(value.startsWith("0x") ? Long.parseLong(value.substring(2), 16) : Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Not an offset: " + input);
+        }
+    }
+
+    public void goToOffset(long offset) {
+        if (mappedFile.size() == 0) {
+            return;
+        }
+        cursor = Math.max(0, Math.min(offset, mappedFile.size() - 1));
+        lowNibble = false;
+        long row = cursor / BYTES_PER_ROW;
+        int rows = rowView.visibleRows();
+        verticalBar.setValue((int) Math.min(Integer.MAX_VALUE, Math.max(0, row - rows / 3)));
+        updateStatus();
+        rowView.repaint();
+    }
+
+    public void dispose() {
+        try {
+            mappedFile.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void handleNavigation(KeyEvent e) {
+        long size = mappedFile.size();
+        long target;
+        switch (e.getKeyCode()) {
+            case KeyEvent.VK_LEFT: target = cursor - 1; break;
+            case KeyEvent.VK_RIGHT: target = cursor + 1; break;
+            case KeyEvent.VK_UP: target = cursor - BYTES_PER_ROW; break;
+            case KeyEvent.VK_DOWN: target = cursor + BYTES_PER_ROW; break;
+            case KeyEvent.VK_PAGE_UP: target = cursor - (long) BYTES_PER_ROW * rowView.visibleRows(); break;
+            case KeyEvent.VK_PAGE_DOWN: target = cursor + (long) BYTES_PER_ROW * rowView.visibleRows(); break;
+            case KeyEvent.VK_HOME: target = e.isControlDown() ? 0 : cursor - cursor % BYTES_PER_ROW; break;
+            case KeyEvent.VK_END:
+                target = e.isControlDown() ? size - 1 : cursor - cursor % BYTES_PER_ROW + BYTES_PER_ROW - 1;
+                break;
+            case KeyEvent.VK_TAB:
+                asciiColumn = !asciiColumn;
+                lowNibble = false;
+                rowView.repaint();
+                e.consume();
+                return;
+            default:
+                return;
+        }
+        e.consume();
+        moveCursor(target);
+    }
+
+    private void handleTyped(char c) {
+        if (cursor >= mappedFile.size()) {
+            return;
+        }
+
+        if (asciiColumn) {
+            if (c >= 0x20 && c < 0x7f) {
+                setByte(cursor, (byte) c);
+                moveCursor(cursor + 1);
+            }
+            return;
+        }
+
+        int digit = Character.digit(c, 16);
+        if (digit < 0) {
+            return;
+        }
+        int current = byteAt(cursor) & 0xff;
+        if (lowNibble) {
+            setByte(cursor, (byte) ((current & 0xf0) | digit));
+            moveCursor(cursor + 1);
+        } else {
+            setByte(cursor, (byte) ((digit << 4) | (current & 0x0f)));
+            lowNibble = true;
+            rowView.repaint();
+        }
+    }
+
+    private void moveCursor(long target) {
+        long size = mappedFile.size();
+        if (size == 0) {
+            return;
+        }
+        cursor = Math.max(0, Math.min(target, size - 1));
+        lowNibble = false;
+
+        long row = cursor / BYTES_PER_ROW;
+        int first = verticalBar.getValue();
+        int rows = rowView.visibleRows();
+        if (row < first) {
+            verticalBar.setValue((int) row);
+        } else if (row >= first + rows) {
+            verticalBar.setValue((int) Math.min(Integer.MAX_VALUE, row - rows + 1));
+        }
+        updateStatus();
+        rowView.repaint();
+    }
+
+    private long rowCount() {
+        return (mappedFile.size() + BYTES_PER_ROW - 1) / BYTES_PER_ROW;
+    }
+
+    private void updateScrollBar() {
+        int rows = rowView.visibleRows();
+        int total = (int) Math.min(Integer.MAX_VALUE, rowCount());
+        verticalBar.setValues(verticalBar.getValue(), rows, 0, Math.max(total, rows));
+        verticalBar.setBlockIncrement(Math.max(1, rows - 1));
+    }
+
+    private void updateStatus() {
+        StringBuilder status = new StringBuilder();
+        status.append(String.format("Offset 0x%X (%,d)", cursor, cursor));
+        status.append("  |  ").append(LargeFileViewer.formatSize(mappedFile.size()));
+        if (!edits.isEmpty()) {
+            status.append("  |  ").append(String.format("%,d", edits.size())).append(" bytes modified");
+        }
+        statusLabel.setText(status.toString());
+    }
+
+    /** Paints offset, hex and ASCII columns for the visible rows only. */
+    private class RowView extends JComponent {
+        private final Font font = new Font("Monospaced", Font.PLAIN, 12);
+        private final byte[] rowBytes = new byte[BYTES_PER_ROW];
+
+        RowView() {
+            setFocusable(true);
+            setFocusTraversalKeysEnabled(false);
+            setOpaque(true);
+            setBackground(UIManager.getColor("TextArea.background") != null
+                ? UIManager.getColor("TextArea.background") : Color.WHITE);
+        }
+
+        int lineHeight() {
+            return getFontMetrics(font).getHeight();
+        }
+
+        int charWidth() {
+            return getFontMetrics(font).charWidth('0');
+        }
+
+        int visibleRows() {
+            return Math.max(1, getHeight() / lineHeight());
+        }
+
+        int offsetDigits() {
+            return mappedFile.size() > 0xFFFFFFFFL ? 16 : 8;
+        }
+
+        int hexStart() {
+            return (offsetDigits() + 2) * charWidth();
+        }
+
+        int hexColumn(int index) {
+            return index * 3 + (index >= BYTES_PER_ROW / 2 ? 1 : 0);
+        }
+
+        int asciiStart() {
+            return hexStart() + (hexColumn(BYTES_PER_ROW) + 2) * charWidth();
+        }
+
+        void moveCursorTo(int x, int y) {
+            long row = verticalBar.getValue() + (long) (y / lineHeight());
+            int cw = charWidth();
+            int index;
+            if (x >= asciiStart()) {
+                asciiColumn = true;
+                index = (x - asciiStart()) / cw;
+            } else {
+                asciiColumn = false;
+                int column = Math.max(0, (x - hexStart()) / cw);
+                index = 0;
+                while (index < BYTES_PER_ROW - 1 && hexColumn(index + 1) <= column) {
+                    index++;
+                }
+            }
+            moveCursor(row * BYTES_PER_ROW + Math.max(0, Math.min(index, BYTES_PER_ROW - 1)));
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            g.setColor(getBackground());
+            g.fillRect(0, 0, getWidth(), getHeight());
+            g.setFont(font);
+
+            FontMetrics metrics = g.getFontMetrics();
+            int lineHeight = metrics.getHeight();
+            int cw = charWidth();
+            int hexStart = hexStart();
+            int asciiStart = asciiStart();
+            String offsetFormat = "%0" + offsetDigits() + "X";
+            Color text = getForeground() != null ? getForeground() : Color.BLACK;
+            Color edited = new Color(200, 0, 0);
+            Color cursorFill = new Color(184, 207, 229);
+
+            long first = verticalBar.getValue();
+            long total = rowCount();
+            int rows = visibleRows() + 1;
+
+            for (int r = 0; r < rows && first + r < total; r++) {
+                long rowOffset = (first + r) * BYTES_PER_ROW;
+                int n = mappedFile.read(rowOffset, rowBytes, 0, BYTES_PER_ROW);
+                int y = r * lineHeight;
+                int baseline = y + metrics.getAscent();
+
+                g.setColor(Color.GRAY);
+                g.drawString(String.format(offsetFormat, rowOffset), cw / 2, baseline);
+
+                for (int i = 0; i < n; i++) {
+                    long position = rowOffset + i;
+                    Byte overlay = edits.isEmpty() ? null : edits.get(position);
+                    int value = (overlay != null ? overlay : rowBytes[i]) & 0xff;
+                    int hx = hexStart + hexColumn(i) * cw;
+                    int ax = asciiStart + i * cw;
+
+                    if (position == cursor) {
+                        g.setColor(cursorFill);
+                        if (asciiColumn) {
+                            g.fillRect(ax, y, cw, lineHeight);
+                        } else {
+                            g.fillRect(hx + (lowNibble ? cw : 0), y, lowNibble ? cw : 2 * cw, lineHeight);
+                        }
+                    }
+
+                    g.setColor(overlay != null ? edited : text);
+                    g.drawString(String.format("%02X", value), hx, baseline);
+                    g.drawString(value >= 0x20 && value < 0x7f ? String.valueOf((char) value) : ".", ax, baseline);
+                }
+            }
+
+            g.setColor(Color.LIGHT_GRAY);
+            g.drawLine(hexStart - cw, 0, hexStart - cw, getHeight());
+            g.drawLine(asciiStart - cw, 0, asciiStart - cw, getHeight());
+        }
+    }
+}
@@ -0,0 +1,336 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.datatransfer.StringSelection;
+import java.awt.event.*;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Read-only viewer for files too large for a JTextArea. The file is memory
+ * mapped, a LineIndex is built in the background, and only the lines that
+ * are on screen are decoded and painted, so heap use does not grow with the
+ * file size and the first page shows immediately.
+ */
+public class LargeFileViewer extends JPanel {
+    private static final int TAB_WIDTH = 4;
+    private static final int MAX_COPY_LINES = 100000;
+
+    private final File file;
+    private final MappedFile mappedFile;
+    private final LineIndex lineIndex;
+    private final Thread indexer;
+    private final Timer indexProgressTimer;
+
+    private final LineView lineView = new LineView();
+    private final JScrollBar verticalBar = new JScrollBar(JScrollBar.VERTICAL);
+    private final JScrollBar horizontalBar = new JScrollBar(JScrollBar.HORIZONTAL);
+    private final JLabel statusLabel = new JLabel(" ");
+
+    private long selectionStart = -1;
+    private long selectionEnd = -1;
+
+    public LargeFileViewer(File file) throws IOException {
+        super(new BorderLayout());
+        this.file = file;
+        this.mappedFile = new MappedFile(file);
+        this.lineIndex = new LineIndex(mappedFile);
+
+        JPanel center = new JPanel(new BorderLayout());
+        center.add(lineView, BorderLayout.CENTER);
+        center.add(verticalBar, BorderLayout.EAST);
+        center.add(horizontalBar, BorderLayout.SOUTH);
+        add(center, BorderLayout.CENTER);
+
+        statusLabel.setBorder(BorderFactory.createEmptyBorder(2, 6, 2, 6));
+        add(statusLabel, BorderLayout.SOUTH);
+
+        verticalBar.addAdjustmentListener(e -> lineView.repaint());
+        horizontalBar.addAdjustmentListener(e -> lineView.repaint());
+        lineView.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                updateScrollBars();
+            }
+        });
+        lineView.addMouseWheelListener(e ->
+            verticalBar.setValue(verticalBar.getValue() + e.getWheelRotation() * 3));
+        lineView.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                lineView.requestFocusInWindow();
+                long line = lineView.lineAt(e.getY());
+                if (line >= 0) {
+                    if (e.isShiftDown() && selectionStart >= 0) {
+                        selectionEnd = line;
+                    } else {
+                        selectionStart = line;
+                        selectionEnd = line;
+                    }
+                    updateStatus();
+                    lineView.repaint();
+                }
+            }
+        });
+        setupKeys();
+
+        indexer = new Thread(lineIndex::build, "line-index-" + file.getName());
+        indexer.setDaemon(true);
+        indexer.start();
+
+        indexProgressTimer = new Timer(250, e -> {
+            updateScrollBars();
+            updateStatus();
+            lineView.repaint();
+            if (lineIndex.isComplete()) {
+                ((Timer) e.getSource()).stop();
+            }
+        });
+        indexProgressTimer.start();
+        updateStatus();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public MappedFile getMappedFile() {
+        return mappedFile;
+    }
+
+    public long getLineCount() {
+        return lineIndex.getLineCount();
+    }
+
+    /** Scrolls to and selects the given zero-based line, clamped to the lines indexed so far. */
+    public void goToLine(long line) {
+        long count = lineIndex.getLineCount();
+        if (count == 0) {
+            return;
+        }
+        line = Math.max(0, Math.min(line, count - 1));
+        selectionStart = line;
+        selectionEnd = line;
+
+        int rows = lineView.visibleRows();
+        verticalBar.setValue((int) Math.min(Integer.MAX_VALUE, Math.max(0, line - rows / 3)));
+        updateStatus();
+        lineView.repaint();
+    }
+
+    public void promptGoToLine() {
+        long count = lineIndex.getLineCount();
+        String message = "Go to line (1-" + String.format("%,d", count)
+            + (lineIndex.isComplete() ? "" : ", still indexing") + "):";
+        String input = JOptionPane.showInputDialog(this, message);
+        if (input == null || input.trim().isEmpty()) {
+            return;
+        }
+        try {
+            goToLine(Long.parseLong(input.trim().replace(",", "")) - 1);
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Not a line number: " + input);
+        }
+    }
+
+    /** Stops indexing and releases the file. */
+    public void dispose() {
+        indexProgressTimer.stop();
+        lineIndex.cancel();
+        try {
+            indexer.join(1000);
+            mappedFile.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void setupKeys() {
+        InputMap inputs = lineView.getInputMap(JComponent.WHEN_FOCUSED);
+        ActionMap actions = lineView.getActionMap();
+
+        bind(inputs, actions, "UP", "lineUp", () -> scrollBy(-1));
+        bind(inputs, actions, "DOWN", "lineDown", () -> scrollBy(1));
+        bind(inputs, actions, "PAGE_UP", "pageUp", () -> scrollBy(-lineView.visibleRows()));
+        bind(inputs, actions, "PAGE_DOWN", "pageDown", () -> scrollBy(lineView.visibleRows()));
+        bind(inputs, actions, "ctrl HOME", "top", () -> verticalBar.setValue(0));
+        bind(inputs, actions, "ctrl END", "bottom", () -> verticalBar.setValue(verticalBar.getMaximum()));
+        bind(inputs, actions, "ctrl G", "goToLine", this::promptGoToLine);
+        bind(inputs, actions, "ctrl C", "copy", this::copySelection);
+    }
+
+    private static void bind(InputMap inputs, ActionMap actions, String key, String name, Runnable action) {
+        inputs.put(KeyStroke.getKeyStroke(key), name);
+        actions.put(name, new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                action.run();
+            }
+        });
+    }
+
+    private void scrollBy(int lines) {
+        verticalBar.setValue(verticalBar.getValue() + lines);
+    }
+
+    private void copySelection() {
+        if (selectionStart < 0) {
+            return;
+        }
+        long first = Math.min(selectionStart, selectionEnd);
+        long last = Math.min(Math.max(selectionStart, selectionEnd), first + MAX_COPY_LINES - 1);
+
+        StringBuilder text = new StringBuilder();
+        long offset = lineIndex.offsetOfLine(first);
+        for (long line = first; line <= last && line < lineIndex.getLineCount(); line++) {
+            text.append(lineIndex.lineAt(offset)).append('\n');
+            if (line < last) {
+                offset = lineIndex.nextLine(offset);
+            }
+        }
+        Toolkit.getDefaultToolkit().getSystemClipboard().setContents(new StringSelection(text.toString()), null);
+    }
+
+    private void updateScrollBars() {
+        int rows = lineView.visibleRows();
+        int lines = (int) Math.min(Integer.MAX_VALUE, lineIndex.getLineCount());
+        verticalBar.setValues(verticalBar.getValue(), rows, 0, Math.max(lines, rows));
+        verticalBar.setBlockIncrement(Math.max(1, rows - 1));
+
+        int columns = lineView.visibleColumns();
+        horizontalBar.setValues(horizontalBar.getValue(), columns, 0,
+            Math.max(lineIndex.getLongestLine() + 1, columns));
+        horizontalBar.setBlockIncrement(Math.max(1, columns - 1));
+    }
+
+    private void updateStatus() {
+        StringBuilder status = new StringBuilder();
+        status.append(String.format("%,d lines", lineIndex.getLineCount()));
+        if (lineIndex.isComplete()) {
+            status.append(", ").append(formatSize(mappedFile.size())).append(" (read-only)");
+        } else {
+            long percent = mappedFile.size() == 0 ? 100 : lineIndex.getScannedBytes() * 100 / mappedFile.size();
+            status.append(" indexed (").append(percent).append("%)");
+        }
+        if (selectionStart >= 0) {
+            status.append("  |  Line ").append(String.format("%,d", selectionEnd + 1));
+        }
+        statusLabel.setText(status.toString());
+    }
+
+    static String formatSize(long bytes) {
+        if (bytes >= 1L << 30) {
+            return String.format("%.1f GB", bytes / (double) (1L << 30));
+        }
+        if (bytes >= 1L << 20) {
+            return String.format("%.1f MB", bytes / (double) (1L << 20));
+        }
+        return String.format("%,d bytes", bytes);
+    }
+
+    private static String expandTabs(String line) {
+        if (line.indexOf('\t') < 0) {
+            return line;
+        }
+        StringBuilder sb = new StringBuilder(line.length() + 16);
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\t') {
+                do {
+                    sb.append(' ');
+                } while (sb.length() % TAB_WIDTH != 0);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Paints the visible slice of the file, with a line-number gutter. */
+    private class LineView extends JComponent {
+        private final Font font = new Font("Monospaced", Font.PLAIN, 12);
+
+        LineView() {
+            setFocusable(true);
+            setOpaque(true);
+            setBackground(UIManager.getColor("TextArea.background") != null
+                ? UIManager.getColor("TextArea.background") : Color.WHITE);
+        }
+
+        int lineHeight() {
+            return getFontMetrics(font).getHeight();
+        }
+
+        int visibleRows() {
+            return Math.max(1, getHeight() / lineHeight());
+        }
+
+        int visibleColumns() {
+            return Math.max(1, (getWidth() - gutterWidth()) / getFontMetrics(font).charWidth('m'));
+        }
+
+        int gutterWidth() {
+            int digits = Long.toString(Math.max(1, lineIndex.getLineCount())).length();
+            return (digits + 2) * getFontMetrics(font).charWidth('0');
+        }
+
+        long lineAt(int y) {
+            long line = verticalBar.getValue() + (long) (y / lineHeight());
+            return line < lineIndex.getLineCount() ? line : -1;
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            g.setColor(getBackground());
+            g.fillRect(0, 0, getWidth(), getHeight());
+            g.setFont(font);
+
+            FontMetrics metrics = g.getFontMetrics();
+            int lineHeight = metrics.getHeight();
+            int gutter = gutterWidth();
+            int column = horizontalBar.getValue();
+
+            g.setColor(new Color(240, 240, 240));
+            g.fillRect(0, 0, gutter - 4, getHeight());
+
+            long total = lineIndex.getLineCount();
+            long first = verticalBar.getValue();
+            if (first >= total) {
+                return;
+            }
+
+            long selectFrom = Math.min(selectionStart, selectionEnd);
+            long selectTo = Math.max(selectionStart, selectionEnd);
+            long offset = lineIndex.offsetOfLine(first);
+            int rows = visibleRows() + 1;
+
+            for (int row = 0; row < rows && first + row < total; row++) {
+                long line = first + row;
+                int y = row * lineHeight;
+
+                if (selectionStart >= 0 && line >= selectFrom && line <= selectTo) {
+                    g.setColor(new Color(184, 207, 229));
+                    g.fillRect(gutter - 4, y, getWidth(), lineHeight);
+                }
+
+                String number = Long.toString(line + 1);
+                g.setColor(Color.GRAY);
+                g.drawString(number, gutter - 8 - metrics.stringWidth(number), y + metrics.getAscent());
+
+                String text = expandTabs(lineIndex.lineAt(offset));
+                if (column < text.length()) {
+                    g.setColor(getForeground() != null ? getForeground() : Color.BLACK);
+                    int end = Math.min(text.length(), column + visibleColumns() + 1);
+                    g.drawString(text.substring(column, end), gutter, y + metrics.getAscent());
+                }
+                // nextLine scans to the next '\n', on the last line to the end of the file
+                if (row + 1 < rows && line + 1 < total) {
+                    offset = lineIndex.nextLine(offset);
+                }
+            }
+            g.setColor(Color.LIGHT_GRAY);
+            g.drawLine(gutter - 4, 0, gutter - 4, getHeight());
+        }
+    }
+}
@@ -0,0 +1,183 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sparse line index over a MappedFile. build() scans the file once and
+ * records the byte offset of every LINES_PER_CHECKPOINT-th line, so a 3 GB
+ * log with 60 million lines needs well under a megabyte of heap. Any other
+ * line is found by scanning forward from the nearest checkpoint. Lines of
+ * LONG_LINE_BYTES or more also record where the next line starts, so
+ * stepping over them never scans them again. The index can be queried
+ * while build() is still running on another thread.
+ */
+public class LineIndex {
+    public static final int LINES_PER_CHECKPOINT = 1024;
+    /** Longest stretch of a single line that is decoded for display. */
+    public static final int MAX_LINE_BYTES = 16 * 1024;
+    private static final int SCAN_BUFFER = 64 * 1024;
+    /** Lines at least this long remember their end; there are at most size / LONG_LINE_BYTES of them. */
+    private static final int LONG_LINE_BYTES = 256 * 1024;
+
+    private final MappedFile file;
+
+    private volatile long[] checkpoints = new long[256];
+    private volatile int checkpointCount;
+    /** Start offset of each long line mapped to the start of the line after it. */
+    private final Map<Long, Long> longLines = new ConcurrentHashMap<>();
+    private volatile long lineCount;
+    private volatile long scannedBytes;
+    private volatile int longestLine;
+    private volatile boolean complete;
+    private volatile boolean cancelled;
+
+    private long cursorLine;
+    private long cursorOffset;
+    private final byte[] lineBuffer = new byte[MAX_LINE_BYTES];
+    private final byte[] skipBuffer = new byte[4096];
+
+    public LineIndex(MappedFile file) {
+        this.file = file;
+        checkpoints[0] = 0;
+        checkpointCount = 1;
+    }
+
+    /** Scans the whole file. Runs on a background thread; stops early if cancel() is called. */
+    public void build() {
+        byte[] chunk = new byte[SCAN_BUFFER];
+        long lines = 0;
+        long lineStart = 0;
+        long position = 0;
+        int longest = 0;
+
+        for (int s = 0; s < file.getSegmentCount() && !cancelled; s++) {
+            ByteBuffer segment = file.segment(s);
+            while (segment.hasRemaining() && !cancelled) {
+                int n = Math.min(chunk.length, segment.remaining());
+                segment.get(chunk, 0, n);
+
+                for (int i = 0; i < n; i++) {
+                    if (chunk[i] == '\n') {
+                        long end = position + i;
+                        longest = (int) Math.max(longest, Math.min(end - lineStart, MAX_LINE_BYTES));
+                        if (end - lineStart >= LONG_LINE_BYTES) {
+                            longLines.put(lineStart, end + 1);
+                        }
+                        lineStart = end + 1;
+                        lines++;
+                        if (lines % LINES_PER_CHECKPOINT == 0) {
+                            addCheckpoint(lineStart);
+                        }
+                    }
+                }
+
+                position += n;
+                lineCount = lines;
+                longestLine = longest;
+                scannedBytes = position;
+            }
+        }
+
+        if (!cancelled) {
+            if (lineStart < file.size()) {
+                longestLine = (int) Math.max(longest, Math.min(file.size() - lineStart, MAX_LINE_BYTES));
+                lineCount = lines + 1;
+            }
+            complete = true;
+        }
+    }
+
+    private void addCheckpoint(long offset) {
+        long[] current = checkpoints;
+        int count = checkpointCount;
+        if (count == current.length) {
+            long[] grown = new long[count * 2];
+            System.arraycopy(current, 0, grown, 0, count);
+            grown[count] = offset;
+            checkpoints = grown;
+        } else {
+            current[count] = offset;
+        }
+        checkpointCount = count + 1;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /** Lines found so far; final once isComplete() returns true. */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    public long getScannedBytes() {
+        return scannedBytes;
+    }
+
+    /** Length in bytes of the longest line seen so far, capped at MAX_LINE_BYTES. */
+    public int getLongestLine() {
+        return longestLine;
+    }
+
+    /** Byte offset of the given zero-based line, which must be below getLineCount(). */
+    public synchronized long offsetOfLine(long line) {
+        int count = checkpointCount;
+        long[] offsets = checkpoints;
+        int checkpoint = (int) Math.min(line / LINES_PER_CHECKPOINT, count - 1);
+        long fromLine = (long) checkpoint * LINES_PER_CHECKPOINT;
+        long fromOffset = offsets[checkpoint];
+
+        // Scrolling moves a few lines at a time, so the previous lookup is
+        // usually a closer starting point than the checkpoint.
+        if (cursorLine <= line && cursorLine > fromLine) {
+            fromLine = cursorLine;
+            fromOffset = cursorOffset;
+        }
+
+        long offset = fromOffset;
+        for (long l = fromLine; l < line; l++) {
+            offset = nextLine(offset);
+        }
+
+        cursorLine = line;
+        cursorOffset = offset;
+        return offset;
+    }
+
+    /** Offset of the line after the one starting at offset, or the file size at the last line. */
+    public synchronized long nextLine(long offset) {
+        Long known = longLines.get(offset);
+        if (known != null) {
+            return known;
+        }
+        long position = offset;
+        int n;
+        while ((n = file.read(position, skipBuffer, 0, skipBuffer.length)) > 0) {
+            for (int i = 0; i < n; i++) {
+                if (skipBuffer[i] == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += n;
+        }
+        return file.size();
+    }
+
+    /** Decodes the line starting at offset, without its line terminator. */
+    public synchronized String lineAt(long offset) {
+        int n = file.read(offset, lineBuffer, 0, lineBuffer.length);
+        int end = 0;
+        while (end < n && lineBuffer[end] != '\n') {
+            end++;
+        }
+        if (end > 0 && end < n && lineBuffer[end - 1] == '\r') {
+            end--;
+        }
+        return new String(lineBuffer, 0, end, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,411 @@
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+import java.awt.Component;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Follows a growing log file like tail -F. A shared background thread polls
+ * the file, reads only the bytes appended since the last poll and hands
+ * complete lines to the EDT in one batch per poll. Truncation restarts from
+ * the beginning; rotation (a new file under the same name) drains the old
+ * file and switches to the new one. The text area keeps at most MAX_LINES
+ * lines, dropping the oldest. Following again after stop() picks up right
+ * after the last line shown, so nothing written in between is missed.
+ */
+public class LogFollower {
+    public static final String CLIENT_PROPERTY = "logFollower";
+    /**
+     * The file a scroll pane has followed. It stays set after following
+     * stops: the area then holds only part of the file, so it stays
+     * read-only and must never be saved over it.
+     */
+    public static final String FOLLOWED_FILE_PROPERTY = "logFollowedFile";
+    /** Where a stopped follower left off, see resumeOffset(). */
+    private static final String RESUME_PROPERTY = "logFollowerResume";
+    public static final int MAX_LINES = 100_000;
+    /** How much of an existing log is shown when a .log file is opened. */
+    public static final long INITIAL_TAIL_BYTES = 1024 * 1024;
+
+    private static final long POLL_MILLIS = 250;
+    private static final int READ_BUFFER = 256 * 1024;
+    private static final long MAX_BYTES_PER_POLL = 16L * 1024 * 1024;
+    private static final int MAX_LINE_CHARS = 64 * 1024;
+
+    private static final ScheduledExecutorService POLLER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "log-follower");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static class Position {
+        final long offset;
+        final Object fileKey;
+
+        Position(long offset, Object fileKey) {
+            this.offset = offset;
+            this.fileKey = fileKey;
+        }
+    }
+
+    private final Path path;
+    private final JScrollPane scrollPane;
+    private final JTextArea textArea;
+    private final Consumer<String> logger;
+
+    // poller thread only
+    private final ByteBuffer bytes = ByteBuffer.allocate(READ_BUFFER);
+    private final CharBuffer chars = CharBuffer.allocate(READ_BUFFER);
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final StringBuilder partialLine = new StringBuilder();
+    private FileChannel channel;
+    private Object fileKey;
+    private long offset;
+    private boolean failing;
+
+    // guarded by this
+    private StringBuilder pending = new StringBuilder();
+    private int pendingLines;
+    private boolean flushScheduled;
+    /** File offset and key just past the last pending line. */
+    private long pendingEnd;
+    private Object pendingKey;
+
+    // EDT only: file offset and key just past the last line shown
+    private long shownEnd;
+    private Object shownKey;
+
+    private ScheduledFuture<?> task;
+
+    private LogFollower(File file, JScrollPane scrollPane, JTextArea textArea, Consumer<String> logger) {
+        this.path = file.toPath();
+        this.scrollPane = scrollPane;
+        this.textArea = textArea;
+        this.logger = logger;
+    }
+
+    /**
+     * Starts following file in the text area, reading from startOffset on.
+     * The area is made read-only for good, see FOLLOWED_FILE_PROPERTY.
+     */
+    public static LogFollower start(File file, JScrollPane scrollPane, JTextArea textArea, long startOffset,
+                                    Consumer<String> logger) {
+        stop(scrollPane);
+
+        LogFollower follower = new LogFollower(file, scrollPane, textArea, logger);
+        follower.offset = startOffset;
+        follower.shownEnd = startOffset;
+        scrollPane.putClientProperty(CLIENT_PROPERTY, follower);
+        scrollPane.putClientProperty(FOLLOWED_FILE_PROPERTY, file.getAbsoluteFile());
+        textArea.setEditable(false);
+        follower.task = POLLER.scheduleWithFixedDelay(follower::poll, 0, POLL_MILLIS, TimeUnit.MILLISECONDS);
+        return follower;
+    }
+
+    /** Offset of the first full line in the last INITIAL_TAIL_BYTES of file. */
+    public static long tailOffset(File file) {
+        long length = file.length();
+        if (length <= INITIAL_TAIL_BYTES) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long start = length - INITIAL_TAIL_BYTES;
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            while (channel.read(buffer, start) > 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    start++;
+                    if (buffer.get() == '\n') {
+                        return start;
+                    }
+                }
+                buffer.clear();
+            }
+            return length;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * The offset to follow file from again after following stopped on this
+     * component: just past the last line shown, or 0 if the file was
+     * rotated meanwhile. Returns -1 if the component never followed file.
+     */
+    public static long resumeOffset(Component component, File file) {
+        if (!(component instanceof JComponent) || !file.getAbsoluteFile().equals(getFollowedFile(component))) {
+            return -1;
+        }
+        Object resume = ((JComponent) component).getClientProperty(RESUME_PROPERTY);
+        if (!(resume instanceof Position)) {
+            return -1;
+        }
+        Position position = (Position) resume;
+        if (position.fileKey != null) {
+            try {
+                Object key = Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+                if (key != null && !key.equals(position.fileKey)) {
+                    return 0;
+                }
+            } catch (IOException e) {
+                return 0;
+            }
+        }
+        return position.offset;
+    }
+
+    public static boolean isFollowing(Component component) {
+        return get(component) != null;
+    }
+
+    /** The file this component has followed, even if it has stopped, or null. */
+    public static File getFollowedFile(Component component) {
+        if (component instanceof JComponent) {
+            Object file = ((JComponent) component).getClientProperty(FOLLOWED_FILE_PROPERTY);
+            if (file instanceof File) {
+                return (File) file;
+            }
+        }
+        return null;
+    }
+
+    /** True if writing component's text to target would replace a followed file with part of it. */
+    public static boolean wouldTruncate(Component component, File target) {
+        File followed = getFollowedFile(component);
+        return followed != null && followed.equals(target.getAbsoluteFile());
+    }
+
+    public static LogFollower get(Component component) {
+        if (component instanceof JComponent) {
+            Object follower = ((JComponent) component).getClientProperty(CLIENT_PROPERTY);
+            if (follower instanceof LogFollower) {
+                return (LogFollower) follower;
+            }
+        }
+        return null;
+    }
+
+    /** Stops following on this component, if it is following. */
+    public static void stop(Component component) {
+        LogFollower follower = get(component);
+        if (follower != null) {
+            follower.stop();
+        }
+    }
+
+    public void stop() {
+        scrollPane.putClientProperty(CLIENT_PROPERTY, null);
+        scrollPane.putClientProperty(RESUME_PROPERTY, new Position(shownEnd, shownKey));
+        task.cancel(false);
+        POLLER.execute(this::closeChannel);
+    }
+
+    public File getFile() {
+        return path.toFile();
+    }
+
+    private void poll() {
+        try {
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                // rotated away and not recreated yet
+                if (channel != null) {
+                    readAppended(MAX_BYTES_PER_POLL);
+                    closeChannel();
+                    rewind();
+                }
+                return;
+            }
+
+            Object key = attributes.fileKey();
+            if (channel != null && key != null && !key.equals(fileKey)) {
+                readAppended(MAX_BYTES_PER_POLL);
+                closeChannel();
+                rewind();
+                report(path.getFileName() + " was rotated, following the new file");
+            }
+            if (channel == null) {
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+                fileKey = key;
+            }
+
+            long size = channel.size();
+            if (size < offset) {
+                rewind();
+                report(path.getFileName() + " was truncated, following from the start");
+            }
+            if (size > offset) {
+                readAppended(MAX_BYTES_PER_POLL);
+            }
+            failing = false;
+        } catch (IOException e) {
+            closeChannel();
+            if (!failing) {
+                failing = true;
+                report("ERROR: Failed to follow " + path.getFileName() + " - " + e.getMessage());
+            }
+        }
+    }
+
+    private void rewind() {
+        offset = 0;
+        partialLine.setLength(0);
+        decoder.reset();
+        bytes.clear();
+    }
+
+    private void readAppended(long limit) throws IOException {
+        long read = 0;
+        int n;
+        while (read < limit && (n = channel.read(bytes, offset)) > 0) {
+            offset += n;
+            read += n;
+            bytes.flip();
+            decoder.decode(bytes, chars, false);
+            bytes.compact();
+            chars.flip();
+            splitLines();
+            chars.clear();
+        }
+    }
+
+    /**
+     * File offset just past the last complete line read: the bytes still
+     * undecoded and the unfinished line have not been shown yet.
+     */
+    private long lineEnd() {
+        return offset - bytes.position() - partialLine.toString().getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /** Moves complete lines from the decoded chars to pending; keeps the unfinished tail. */
+    private void splitLines() {
+        StringBuilder lines = new StringBuilder(chars.remaining());
+        int count = 0;
+        while (chars.hasRemaining()) {
+            char c = chars.get();
+            if (c == '\r') {
+                continue;
+            }
+            partialLine.append(c);
+            if (c != '\n' && partialLine.length() >= MAX_LINE_CHARS) {
+                // a line that never ends is shown in pieces
+                partialLine.append('\n');
+                c = '\n';
+            }
+            if (c == '\n') {
+                lines.append(partialLine);
+                partialLine.setLength(0);
+                count++;
+            }
+        }
+        if (count > 0) {
+            enqueue(lines, count, lineEnd());
+        }
+    }
+
+    private void enqueue(CharSequence lines, int count, long end) {
+        synchronized (this) {
+            pending.append(lines);
+            pendingLines += count;
+            pendingEnd = end;
+            pendingKey = fileKey;
+            if (pendingLines > MAX_LINES) {
+                pending.delete(0, startOfLastLines(pending, MAX_LINES));
+                pendingLines = MAX_LINES;
+            }
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        SwingUtilities.invokeLater(this::flush);
+    }
+
+    private static int startOfLastLines(CharSequence text, int lines) {
+        int seen = 0;
+        for (int i = text.length() - 1; i >= 0; i--) {
+            if (text.charAt(i) == '\n' && ++seen > lines) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    private void flush() {
+        String text;
+        long end;
+        Object key;
+        synchronized (this) {
+            text = pending.toString();
+            end = pendingEnd;
+            key = pendingKey;
+            pending = new StringBuilder();
+            pendingLines = 0;
+            flushScheduled = false;
+        }
+        if (get(scrollPane) != this) {
+            return;
+        }
+        shownEnd = end;
+        shownKey = key;
+
+        JScrollBar vertical = scrollPane.getVerticalScrollBar();
+        boolean atBottom = vertical.getValue() + vertical.getVisibleAmount() >= vertical.getMaximum() - 2;
+
+        Document document = textArea.getDocument();
+        try {
+            document.insertString(document.getLength(), text, null);
+
+            Element root = document.getDefaultRootElement();
+            // the element after the last newline is empty
+            int excess = root.getElementCount() - 1 - MAX_LINES;
+            if (excess > 0) {
+                document.remove(0, root.getElement(excess - 1).getEndOffset());
+            }
+        } catch (BadLocationException e) {
+            e.printStackTrace();
+        }
+
+        if (atBottom) {
+            textArea.setCaretPosition(document.getLength());
+        }
+    }
+
+    private void report(String message) {
+        SwingUtilities.invokeLater(() -> logger.accept(message));
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // nothing left to read from it
+            }
+            channel = null;
+            fileKey = null;
+        }
+    }
+}
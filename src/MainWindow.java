@@ -1,42 +1,87 @@
 import javax.swing.*;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreePath;
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeWillExpandListener;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class MainWindow extends JFrame {
+    private static final String WORKSPACE_FILE = "workspace.txt";
+
     private JTree fileTree;
     private JTextArea monitorArea;
     private JTabbedPane contentPane;
-    private DatabaseManager dbManager;
-    private List<File> watchedFiles;
+    private ConnectionManager connectionManager;
     private Map<Component, File> tabFileMap;
+    private Map<Component, Long> tabModified;
+    private FileMonitor fileMonitor;
+    private MonitorLog monitorLog;
+    private Map<Path, FileTreeNode> loadedFolders;
+    /** How many loaded tree folders and open tabs need each watched folder. */
+    private Map<Path, Integer> watchCounts;
+    /** The folder watched for each tab's backing file. */
+    private Map<Component, Path> tabFolders;
+    private FindDialog findDialog;
+    private List<File> workspaceRoots;
+    private WorkspaceSearchPanel searchPanel;
+    private QuickOpenDialog quickOpen;
+    private FileTypeRegistry fileTypes;
+    private TabMemoryManager tabMemory;
 
     public MainWindow() {
         setTitle("Database & File Manager");
         setSize(1200, 800);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                if (fileMonitor != null) {
+                    fileMonitor.close();
+                }
+                quickOpen.close();
+                searchPanel.close();
+                tabMemory.close();
+                connectionManager.closeAll();
+                monitorLog.close();
+            }
+        });
 
-        dbManager = new DatabaseManager();
-        watchedFiles = new ArrayList<>();
+        connectionManager = new ConnectionManager();
+        workspaceRoots = new ArrayList<>();
         tabFileMap = new HashMap<>();
+        tabModified = new HashMap<>();
+        loadedFolders = new HashMap<>();
+        watchCounts = new HashMap<>();
+        tabFolders = new HashMap<>();
+        fileTypes = createFileTypes();
 
         initComponents();
         setupMenuBar();
         startFileMonitor();
+        quickOpen = new QuickOpenDialog(this, this::openFile, this::logMonitor);
+        restoreWorkspace();
     }
 
     private void initComponents() {
         JSplitPane mainSplit = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT);
         mainSplit.setDividerLocation(300);
 
-        JPanel leftPanel = createFileFinderPanel();
+        searchPanel = new WorkspaceSearchPanel(this::openFileAtLine, this::logMonitor);
+        JTabbedPane leftPanel = new JTabbedPane();
+        leftPanel.addTab("Files", createFileFinderPanel());
+        leftPanel.addTab("Search", searchPanel);
         mainSplit.setLeftComponent(leftPanel);
 
         JPanel rightPanel = new JPanel(new BorderLayout());
@@ -49,6 +94,8 @@ public class MainWindow extends JFrame {
         monitorArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
         JScrollPane monitorScroll = new JScrollPane(monitorArea);
         monitorScroll.setPreferredSize(new Dimension(0, 150));
+        monitorLog = new MonitorLog(monitorArea, monitorLogFile());
+        tabMemory = new TabMemoryManager(contentPane, this::logMonitor, this::tabReloaded);
         rightPanel.add(monitorScroll, BorderLayout.SOUTH);
 
         mainSplit.setRightComponent(rightPanel);
@@ -63,15 +110,27 @@ public class MainWindow extends JFrame {
 
         DefaultMutableTreeNode root = new DefaultMutableTreeNode("Workspace");
         fileTree = new JTree(root);
+        fileTree.addTreeWillExpandListener(new TreeWillExpandListener() {
+            @Override
+            public void treeWillExpand(TreeExpansionEvent e) {
+                Object node = e.getPath().getLastPathComponent();
+                if (node instanceof FileTreeNode) {
+                    ((FileTreeNode) node).load((DefaultTreeModel) fileTree.getModel(),
+                        path -> isSupported(path.toFile()), MainWindow.this::folderLoaded);
+                }
+            }
+
+            @Override
+            public void treeWillCollapse(TreeExpansionEvent e) {
+            }
+        });
         fileTree.addMouseListener(new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
                 if (e.getClickCount() == 2) {
-                    DefaultMutableTreeNode node = (DefaultMutableTreeNode)
-                        fileTree.getLastSelectedPathComponent();
-                    if (node != null && node.getUserObject() instanceof File) {
-                        File file = (File) node.getUserObject();
-                        openFile(file);
+                    Object node = fileTree.getLastSelectedPathComponent();
+                    if (node instanceof FileTreeNode && !((FileTreeNode) node).isDirectory()) {
+                        openFile(((FileTreeNode) node).getFile());
                     }
                 }
             }
@@ -103,12 +162,22 @@ public class MainWindow extends JFrame {
         newDbItem.addActionListener(e -> createNewDatabase());
         JMenuItem openItem = new JMenuItem("Open File");
         openItem.addActionListener(e -> openFileDialog());
+        JMenuItem quickOpenItem = new JMenuItem("Quick Open...");
+        quickOpenItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_P, InputEvent.CTRL_DOWN_MASK));
+        quickOpenItem.addActionListener(e -> quickOpen.open());
         JMenuItem saveItem = new JMenuItem("Save");
         saveItem.addActionListener(e -> saveCurrentFile());
         JMenuItem saveAsItem = new JMenuItem("Save As...");
         saveAsItem.addActionListener(e -> saveAsNewFile());
         JMenuItem exitItem = new JMenuItem("Exit");
-        exitItem.addActionListener(e -> System.exit(0));
+        exitItem.addActionListener(e -> {
+            quickOpen.close();
+            searchPanel.close();
+            tabMemory.close();
+            connectionManager.closeAll();
+            monitorLog.close();
+            System.exit(0);
+        });
 
         JMenuItem closeTabItem = new JMenuItem("Close Tab");
         closeTabItem.addActionListener(e -> closeCurrentTab());
@@ -116,6 +185,7 @@ public class MainWindow extends JFrame {
         fileMenu.add(newFileItem);
         fileMenu.add(newDbItem);
         fileMenu.add(openItem);
+        fileMenu.add(quickOpenItem);
         fileMenu.addSeparator();
         fileMenu.add(saveItem);
         fileMenu.add(saveAsItem);
@@ -128,11 +198,14 @@ public class MainWindow extends JFrame {
         createTableItem.addActionListener(e -> createTable());
         JMenuItem importSqlItem = new JMenuItem("Import SQL");
         importSqlItem.addActionListener(e -> importSqlFile());
+        JMenuItem importCsvItem = new JMenuItem("Import CSV/TSV");
+        importCsvItem.addActionListener(e -> importCsvFile());
         JMenuItem exportSqlItem = new JMenuItem("Export SQL");
         exportSqlItem.addActionListener(e -> exportSqlFile());
 
         databaseMenu.add(createTableItem);
         databaseMenu.add(importSqlItem);
+        databaseMenu.add(importCsvItem);
         databaseMenu.add(exportSqlItem);
 
         JMenu documentsMenu = new JMenu("Documents");
@@ -141,8 +214,24 @@ public class MainWindow extends JFrame {
         JMenuItem saveDocItem = new JMenuItem("Save Document");
         saveDocItem.addActionListener(e -> saveDocument());
 
+        JMenuItem goToLineItem = new JMenuItem("Go to Line...");
+        goToLineItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_G, InputEvent.CTRL_DOWN_MASK));
+        goToLineItem.addActionListener(e -> goToLine());
+        JMenuItem findItem = new JMenuItem("Find...");
+        findItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F, InputEvent.CTRL_DOWN_MASK));
+        findItem.addActionListener(e -> showFindDialog());
+        JMenuItem followItem = new JMenuItem("Follow Log On/Off");
+        followItem.addActionListener(e -> toggleFollow());
+        JMenuItem tabMemoryItem = new JMenuItem("Show Tab Memory");
+        tabMemoryItem.addActionListener(e -> tabMemory.logUsage());
+
         documentsMenu.add(savePdfItem);
         documentsMenu.add(saveDocItem);
+        documentsMenu.addSeparator();
+        documentsMenu.add(findItem);
+        documentsMenu.add(goToLineItem);
+        documentsMenu.add(followItem);
+        documentsMenu.add(tabMemoryItem);
 
         menuBar.add(fileMenu);
         menuBar.add(databaseMenu);
@@ -158,85 +247,137 @@ public class MainWindow extends JFrame {
         if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
             File folder = chooser.getSelectedFile();
             addFolderToTree(folder);
+            if (!workspaceRoots.contains(folder)) {
+                workspaceRoots.add(folder);
+                searchPanel.setRoots(workspaceRoots);
+                quickOpen.setRoots(workspaceRoots);
+                saveWorkspace();
+            }
             logMonitor("Added folder: " + folder.getAbsolutePath());
         }
     }
 
+    /** Adds a folder as a lazily listed node; its contents are read when it is expanded. */
     private void addFolderToTree(File folder) {
+        DefaultTreeModel model = (DefaultTreeModel) fileTree.getModel();
+        DefaultMutableTreeNode root = (DefaultMutableTreeNode) model.getRoot();
+        FileTreeNode folderNode = new FileTreeNode(folder, true);
+        model.insertNodeInto(folderNode, root, root.getChildCount());
+        fileTree.expandPath(new TreePath(root.getPath()));
+        fileTree.expandPath(new TreePath(folderNode.getPath()));
+    }
+
+    /** Filters the files listed in the tree; directories are always listed. */
+    private boolean isSupported(File file) {
+        return !FileTypeRegistry.isImageName(file.getName());
+    }
+
+    private void refreshFileTree() {
         DefaultMutableTreeNode root = (DefaultMutableTreeNode) fileTree.getModel().getRoot();
-        DefaultMutableTreeNode folderNode = createTreeNode(folder);
-        root.add(folderNode);
+        root.removeAllChildren();
         ((DefaultTreeModel) fileTree.getModel()).reload();
-        expandTree();
+        for (Path folder : loadedFolders.keySet()) {
+            unwatch(folder);
+        }
+        loadedFolders.clear();
+        for (File folder : workspaceRoots) {
+            addFolderToTree(folder);
+        }
+        searchPanel.setRoots(workspaceRoots);
+        quickOpen.setRoots(workspaceRoots);
+        logMonitor("File tree refreshed");
     }
 
-    private DefaultMutableTreeNode createTreeNode(File file) {
-        DefaultMutableTreeNode node = new DefaultMutableTreeNode(file) {
-            @Override
-            public String toString() {
-                return ((File) getUserObject()).getName();
+    /** Adds the folders saved by the last session back to the tree and the indexes. */
+    private void restoreWorkspace() {
+        try {
+            File saved = AppPaths.resolve(WORKSPACE_FILE);
+            if (!saved.isFile()) {
+                return;
             }
-        };
-
-        if (file.isDirectory()) {
-            File[] files = file.listFiles();
-            if (files != null) {
-                for (File child : files) {
-                    if (isSupported(child)) {
-                        node.add(createTreeNode(child));
-                    }
+            for (String line : Files.readAllLines(saved.toPath(), StandardCharsets.UTF_8)) {
+                File folder = new File(line);
+                if (!line.isEmpty() && folder.isDirectory() && !workspaceRoots.contains(folder)) {
+                    workspaceRoots.add(folder);
+                    addFolderToTree(folder);
                 }
             }
+        } catch (java.io.IOException e) {
+            logMonitor("ERROR: Cannot read the saved workspace - " + e.getMessage());
+        }
+        if (!workspaceRoots.isEmpty()) {
+            searchPanel.setRoots(workspaceRoots);
+            quickOpen.setRoots(workspaceRoots);
+            logMonitor("Restored " + workspaceRoots.size() + " workspace folder(s)");
         }
-
-        return node;
     }
 
-    private boolean isSupported(File file) {
-        if (file.isDirectory()) return true;
-        String name = file.getName().toLowerCase();
-
-        // Exclude image files
-        String[] imageExtensions = {".png", ".jpg", ".jpeg", ".gif", ".bmp", ".ico",
-                                   ".svg", ".webp", ".tiff", ".tif"};
-        for (String ext : imageExtensions) {
-            if (name.endsWith(ext)) {
-                return false;
-            }
+    private void saveWorkspace() {
+        List<String> lines = new ArrayList<>();
+        for (File folder : workspaceRoots) {
+            lines.add(folder.getAbsolutePath());
+        }
+        try {
+            Files.write(AppPaths.resolve(WORKSPACE_FILE).toPath(), lines, StandardCharsets.UTF_8);
+        } catch (java.io.IOException e) {
+            logMonitor("ERROR: Cannot save the workspace - " + e.getMessage());
         }
+    }
 
-        // Accept all other files
-        return true;
+    /** Signatures are checked in this order, before extensions. */
+    private FileTypeRegistry createFileTypes() {
+        FileTypeRegistry types = new FileTypeRegistry(this::openTextFile, this::openLargeFile, this::openHexFile);
+        types.register("database", false, new String[] {"db", "sqlite"},
+            new byte[][] {FileTypeRegistry.bytes("SQLite format 3\0")}, this::openDatabase);
+        types.register("table snapshot", false, new String[0], new byte[][] {TableSnapshot.MAGIC}, this::openSnapshot);
+        types.register("ODB", false, new String[] {"odb"}, new byte[0][], this::openOdbFile);
+        types.register("PDF", false, new String[] {"pdf"}, new byte[][] {FileTypeRegistry.bytes("%PDF-")},
+            this::openPdfFile);
+        types.register("SQL", true, new String[] {"sql"}, new byte[0][], this::openSqlFile);
+        types.register("log", true, new String[] {"log"}, new byte[0][], this::openLogFile);
+        types.register("archive", false, new String[] {"gz", "jar", "class"}, new byte[][] {
+            {0x1F, (byte) 0x8B},
+            {(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE},
+            {0x7F, 'E', 'L', 'F'},
+        }, this::openHexFile);
+        return types;
     }
 
-    private void refreshFileTree() {
-        DefaultMutableTreeNode root = (DefaultMutableTreeNode) fileTree.getModel().getRoot();
-        root.removeAllChildren();
-        ((DefaultTreeModel) fileTree.getModel()).reload();
-        logMonitor("File tree refreshed");
+    private void openFile(File file) {
+        FileTypeRegistry.FileType type = fileTypes.detect(file);
+        logMonitor("Opening file: " + file.getName() + " (" + type + ")");
+        type.open(file);
     }
 
-    private void expandTree() {
-        for (int i = 0; i < fileTree.getRowCount(); i++) {
-            fileTree.expandRow(i);
+    /** Opens a file and moves to a zero-based line once it is shown. */
+    private void openFileAtLine(File file, long line) {
+        openFile(file);
+        Component component = contentPane.getSelectedComponent();
+        if (tabFileMap.get(component) == null || !tabFileMap.get(component).equals(file)) {
+            return;
         }
-    }
 
-    private void openFile(File file) {
-        logMonitor("Opening file: " + file.getName());
-
-        String fileName = file.getName().toLowerCase();
-
-        if (fileName.endsWith(".db") || fileName.endsWith(".sqlite")) {
-            openDatabase(file);
-        } else if (fileName.endsWith(".odb")) {
-            openOdbFile(file);
-        } else if (fileName.endsWith(".sql")) {
-            openSqlFile(file);
-        } else if (fileName.endsWith(".pdf")) {
-            openPdfFile(file);
-        } else {
-            openTextFile(file);
+        if (component instanceof LargeFileViewer) {
+            ((LargeFileViewer) component).goToLine(line);
+        } else if (component instanceof JScrollPane
+                && ((JScrollPane) component).getViewport().getView() instanceof JTextArea) {
+            JTextArea textArea = (JTextArea) ((JScrollPane) component).getViewport().getView();
+            Timer timer = new Timer(100, null);
+            timer.addActionListener(e -> {
+                if (FileLoadWorker.isLoading(component)) {
+                    return;
+                }
+                timer.stop();
+                try {
+                    int target = (int) Math.min(line, textArea.getLineCount() - 1);
+                    textArea.setCaretPosition(textArea.getLineStartOffset(target));
+                    textArea.select(textArea.getLineStartOffset(target), textArea.getLineEndOffset(target));
+                    textArea.requestFocusInWindow();
+                } catch (javax.swing.text.BadLocationException ex) {
+                    // the file changed since it was indexed
+                }
+            });
+            timer.start();
         }
     }
 
@@ -266,7 +407,7 @@ public class MainWindow extends JFrame {
 
             if (chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
                 File dbFile = chooser.getSelectedFile();
-                if (dbManager.createDatabase(dbFile)) {
+                if (connectionManager.createDatabase(dbFile)) {
                     logMonitor("Created database: " + dbFile.getAbsolutePath());
                     openDatabase(dbFile);
                 } else {
@@ -277,16 +418,26 @@ public class MainWindow extends JFrame {
     }
 
     private void openDatabase(File file) {
-        if (dbManager.connect(file)) {
+        DatabaseManager dbManager = connectionManager.open(file);
+        if (dbManager != null) {
             TableViewer viewer = new TableViewer(dbManager, file);
             contentPane.addTab(file.getName(), viewer);
             contentPane.setSelectedComponent(viewer);
-            logMonitor("Opened database: " + file.getName());
+            logMonitor("Opened database: " + file.getName() + " (" + connectionManager.getOpenCount() + " open)");
         } else {
             logMonitor("ERROR: Failed to open database");
         }
     }
 
+    private TableViewer getSelectedViewer() {
+        Component selected = contentPane.getSelectedComponent();
+        if (selected instanceof TableViewer) {
+            return (TableViewer) selected;
+        }
+        JOptionPane.showMessageDialog(this, "Please select a database first");
+        return null;
+    }
+
     private void openOdbFile(File file) {
         JTextArea textArea = new JTextArea();
         textArea.setText("ODB File: " + file.getName() + "\n\n");
@@ -295,14 +446,43 @@ public class MainWindow extends JFrame {
 
         JScrollPane scrollPane = new JScrollPane(textArea);
         contentPane.addTab(file.getName(), scrollPane);
-        tabFileMap.put(scrollPane, file);
+        trackTab(scrollPane, file);
         logMonitor("Opened ODB file: " + file.getName());
     }
 
+    private void openSnapshot(File file) {
+        new SwingWorker<javax.swing.table.TableModel, Void>() {
+            @Override
+            protected javax.swing.table.TableModel doInBackground() {
+                return FileHandler.loadOdbFile(file, message -> SwingUtilities.invokeLater(() -> logMonitor(message)));
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    javax.swing.table.TableModel model = get();
+                    if (model == null) {
+                        return;
+                    }
+                    JTable table = new JTable(model);
+                    table.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+
+                    JScrollPane scrollPane = new JScrollPane(table);
+                    contentPane.addTab(file.getName(), scrollPane);
+                    contentPane.setSelectedComponent(scrollPane);
+                    trackTab(scrollPane, file);
+                } catch (Exception e) {
+                    logMonitor("ERROR: Failed to open ODB file - " + e.getMessage());
+                }
+            }
+        }.execute();
+    }
+
     private void openSqlFile(File file) {
         Component component = FileHandler.openSqlFile(file, contentPane, this::logMonitor);
         if (component != null) {
-            tabFileMap.put(component, file);
+            trackTab(component, file);
+            tabMemory.manage(component, file);
         }
     }
 
@@ -318,7 +498,29 @@ public class MainWindow extends JFrame {
     private void openTextFile(File file) {
         Component component = FileHandler.openTextFile(file, contentPane, this::logMonitor);
         if (component != null) {
-            tabFileMap.put(component, file);
+            trackTab(component, file);
+            tabMemory.manage(component, file);
+        }
+    }
+
+    private void openLogFile(File file) {
+        Component component = FileHandler.openLogFile(file, contentPane, this::logMonitor);
+        if (component != null) {
+            trackTab(component, file);
+        }
+    }
+
+    private void openLargeFile(File file) {
+        Component component = FileHandler.openLargeFile(file, contentPane, this::logMonitor);
+        if (component != null) {
+            trackTab(component, file);
+        }
+    }
+
+    private void openHexFile(File file) {
+        Component component = FileHandler.openHexFile(file, contentPane, this::logMonitor);
+        if (component != null) {
+            trackTab(component, file);
         }
     }
 
@@ -332,28 +534,134 @@ public class MainWindow extends JFrame {
     }
 
     private void importSqlFile() {
+        TableViewer viewer = getSelectedViewer();
+        if (viewer == null) {
+            return;
+        }
+
+        DatabaseManager dbManager = viewer.getDatabaseManager();
         JFileChooser chooser = new JFileChooser();
         if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
             File file = chooser.getSelectedFile();
-            if (dbManager.importSql(file)) {
-                logMonitor("Imported SQL file: " + file.getName());
-            } else {
-                logMonitor("ERROR: Failed to import SQL file");
-            }
+            logMonitor("Importing SQL file: " + file.getName());
+
+            new SwingWorker<Boolean, String>() {
+                @Override
+                protected Boolean doInBackground() {
+                    return dbManager.importSql(file, this::publish);
+                }
+
+                @Override
+                protected void process(List<String> chunks) {
+                    for (String progress : chunks) {
+                        logMonitor("Importing " + file.getName() + ": " + progress);
+                    }
+                }
+
+                @Override
+                protected void done() {
+                    try {
+                        if (get()) {
+                            logMonitor("Imported SQL file: " + file.getName() + " - " + dbManager.getLastImportStats());
+                            viewer.loadTables();
+                        } else {
+                            String error = dbManager.getLastImportError();
+                            logMonitor("ERROR: Failed to import SQL file" + (error != null ? " - " + error : ""));
+                            // committed chunks may have created tables
+                            viewer.loadTables();
+                        }
+                    } catch (Exception e) {
+                        logMonitor("ERROR: Failed to import SQL file - " + e.getMessage());
+                    }
+                }
+            }.execute();
         }
     }
 
+    private void importCsvFile() {
+        TableViewer viewer = getSelectedViewer();
+        if (viewer == null) {
+            return;
+        }
+
+        DatabaseManager dbManager = viewer.getDatabaseManager();
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+
+        File file = chooser.getSelectedFile();
+        String defaultName = file.getName().replaceFirst("\\.[^.]*$", "").replaceAll("\\W+", "_");
+        String tableName = JOptionPane.showInputDialog(this, "Import into new table:", defaultName);
+        if (tableName == null || tableName.trim().isEmpty()) {
+            return;
+        }
+
+        logMonitor("Importing CSV file: " + file.getName() + " into " + tableName.trim());
+
+        new SwingWorker<Boolean, String>() {
+            @Override
+            protected Boolean doInBackground() {
+                return dbManager.importCsv(file, tableName.trim(), this::publish);
+            }
+
+            @Override
+            protected void process(List<String> chunks) {
+                for (String progress : chunks) {
+                    logMonitor("Importing " + file.getName() + ": " + progress);
+                }
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    if (get()) {
+                        logMonitor("Imported CSV file: " + file.getName() + " - " + dbManager.getLastImportStats());
+                        viewer.loadTables();
+                    } else {
+                        String error = dbManager.getLastImportError();
+                        logMonitor("ERROR: Failed to import CSV file" + (error != null ? " - " + error : ""));
+                    }
+                } catch (Exception e) {
+                    logMonitor("ERROR: Failed to import CSV file - " + e.getMessage());
+                }
+            }
+        }.execute();
+    }
+
     private void exportSqlFile() {
+        TableViewer viewer = getSelectedViewer();
+        if (viewer == null) {
+            return;
+        }
+
+        DatabaseManager dbManager = viewer.getDatabaseManager();
         JFileChooser chooser = new JFileChooser();
         chooser.setSelectedFile(new File("export.sql"));
 
         if (chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
             File file = chooser.getSelectedFile();
-            if (dbManager.exportSql(file)) {
-                logMonitor("Exported SQL to: " + file.getName());
-            } else {
-                logMonitor("ERROR: Failed to export SQL");
-            }
+            logMonitor("Exporting SQL to: " + file.getName());
+
+            new SwingWorker<Boolean, Void>() {
+                @Override
+                protected Boolean doInBackground() {
+                    return dbManager.exportSql(file);
+                }
+
+                @Override
+                protected void done() {
+                    try {
+                        if (get()) {
+                            logMonitor("Exported SQL to: " + file.getName());
+                        } else {
+                            logMonitor("ERROR: Failed to export SQL");
+                        }
+                    } catch (Exception e) {
+                        logMonitor("ERROR: Failed to export SQL - " + e.getMessage());
+                    }
+                }
+            }.execute();
         }
     }
 
@@ -375,55 +683,143 @@ public class MainWindow extends JFrame {
         }
     }
 
+    private void goToLine() {
+        Component selected = contentPane.getSelectedComponent();
+
+        if (selected instanceof LargeFileViewer) {
+            ((LargeFileViewer) selected).promptGoToLine();
+        } else if (selected instanceof HexViewer) {
+            ((HexViewer) selected).promptGoToOffset();
+        } else if (selected instanceof JScrollPane
+                && ((JScrollPane) selected).getViewport().getView() instanceof JTextArea) {
+            JTextArea textArea = (JTextArea) ((JScrollPane) selected).getViewport().getView();
+            String input = JOptionPane.showInputDialog(this, "Go to line (1-" + textArea.getLineCount() + "):");
+            if (input == null || input.trim().isEmpty()) {
+                return;
+            }
+            try {
+                int line = Math.max(1, Math.min(Integer.parseInt(input.trim()), textArea.getLineCount()));
+                textArea.setCaretPosition(textArea.getLineStartOffset(line - 1));
+                textArea.requestFocusInWindow();
+            } catch (NumberFormatException | javax.swing.text.BadLocationException e) {
+                logMonitor("ERROR: Invalid line number - " + input);
+            }
+        }
+    }
+
+    private void showFindDialog() {
+        if (findDialog == null) {
+            findDialog = new FindDialog(this, contentPane);
+        }
+        findDialog.open();
+    }
+
+    /** Starts or stops following the current text tab's file for appended lines. */
+    private void toggleFollow() {
+        Component selected = contentPane.getSelectedComponent();
+        File file = tabFileMap.get(selected);
+
+        if (LogFollower.isFollowing(selected)) {
+            LogFollower.stop(selected);
+            logMonitor("Stopped following " + file.getName());
+        } else if (file == null || !(selected instanceof JScrollPane)
+                || !(((JScrollPane) selected).getViewport().getView() instanceof JTextArea)) {
+            logMonitor("ERROR: Follow mode needs a text tab opened from a file");
+        } else if (FileLoadWorker.isLoading(selected)) {
+            logMonitor("ERROR: Cannot follow " + file.getName() + " while it is still loading");
+        } else {
+            JScrollPane scrollPane = (JScrollPane) selected;
+            JTextArea textArea = (JTextArea) scrollPane.getViewport().getView();
+            long from = LogFollower.resumeOffset(scrollPane, file);
+            LogFollower.start(file, scrollPane, textArea, from >= 0 ? from : file.length(), this::logMonitor);
+            logMonitor("Following " + file.getName() + (from >= 0 ? " again from where it stopped" : ""));
+        }
+    }
+
     private void saveCurrentFile() {
         Component selected = contentPane.getSelectedComponent();
 
         if (selected instanceof TableViewer) {
             TableViewer viewer = (TableViewer) selected;
             viewer.saveChanges();
-            logMonitor("Saved database changes");
-        } else if (tabFileMap.containsKey(selected)) {
+            logMonitor("Saving database changes");
+        } else if (tabFileMap.containsKey(selected) && !LogFollower.wouldTruncate(selected, tabFileMap.get(selected))) {
             File file = tabFileMap.get(selected);
-            saveComponentToFile(selected, file);
+            if (saveComponentToFile(selected, file)) {
+                trackTab(selected, file);
+                contentPane.setTitleAt(contentPane.indexOfComponent(selected), file.getName());
+            }
         } else {
             saveAsNewFile();
         }
     }
 
-    private void saveComponentToFile(Component component, File file) {
-        if (component instanceof JScrollPane) {
+    /** Returns true if the component's content was written to file. */
+    private boolean saveComponentToFile(Component component, File file) {
+        if (FileLoadWorker.isLoading(component)) {
+            logMonitor("ERROR: Cannot save " + file.getName() + " while it is still loading");
+            return false;
+        } else if (component instanceof LargeFileViewer) {
+            logMonitor("Large files are opened read-only: " + file.getName());
+            return false;
+        } else if (!tabMemory.canSave(component)) {
+            logMonitor("ERROR: " + file.getName() + " could not be read back into memory; saving it would lose text");
+            return false;
+        } else if (LogFollower.wouldTruncate(component, file)) {
+            logMonitor("ERROR: " + file.getName() + " holds only the followed part of the log;"
+                + " use Save As to write it to a new file");
+            return false;
+        } else if (component instanceof HexViewer) {
+            HexViewer viewer = (HexViewer) component;
+            try {
+                int modified = viewer.getModifiedByteCount();
+                viewer.saveAs(file);
+                logMonitor("Saved file: " + file.getName() + " (" + modified + " bytes patched)");
+                return true;
+            } catch (java.io.IOException e) {
+                logMonitor("ERROR: Failed to save file - " + e.getMessage());
+                return false;
+            }
+        } else if (component instanceof JScrollPane) {
             JScrollPane scrollPane = (JScrollPane) component;
             JViewport viewport = scrollPane.getViewport();
             Component view = viewport.getView();
 
-            if (view instanceof JTextArea) {
+            if (view instanceof JTable) {
+                return FileHandler.saveOdbFile(file, ((JTable) view).getModel(), this::logMonitor);
+            } else if (view instanceof JTextArea) {
                 JTextArea textArea = (JTextArea) view;
-                String content = textArea.getText();
 
                 try {
-                    java.io.PrintWriter writer = new java.io.PrintWriter(new java.io.FileWriter(file));
-                    writer.print(content);
-                    writer.close();
+                    DocumentWriter.write(textArea.getDocument(), file, true);
+                    tabMemory.saved(component, file);
                     logMonitor("Saved file: " + file.getName());
+                    return true;
                 } catch (java.io.IOException e) {
                     logMonitor("ERROR: Failed to save file - " + e.getMessage());
                 }
             }
         }
+        return false;
     }
 
     private void saveAsNewFile() {
         Component selected = contentPane.getSelectedComponent();
+        if (selected instanceof LargeFileViewer) {
+            logMonitor("Large files are opened read-only: " + ((LargeFileViewer) selected).getFile().getName());
+            return;
+        }
         JFileChooser chooser = new JFileChooser();
 
         if (chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
             File file = chooser.getSelectedFile();
-            saveComponentToFile(selected, file);
-            tabFileMap.put(selected, file);
+            if (saveComponentToFile(selected, file)) {
+                trackTab(selected, file);
 
-            int index = contentPane.getSelectedIndex();
-            if (index >= 0) {
-                contentPane.setTitleAt(index, file.getName());
+                int index = contentPane.getSelectedIndex();
+                if (index >= 0) {
+                    contentPane.setTitleAt(index, file.getName());
+                }
             }
         }
     }
@@ -432,27 +828,183 @@ public class MainWindow extends JFrame {
         int index = contentPane.getSelectedIndex();
         if (index >= 0) {
             Component component = contentPane.getComponentAt(index);
+            if (component instanceof TableViewer && !((TableViewer) component).confirmDiscardChanges()) {
+                return;
+            }
+            if (component instanceof HexViewer && ((HexViewer) component).isModified()
+                    && JOptionPane.showConfirmDialog(this, "Discard unsaved byte edits?", "Close Tab",
+                        JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION) {
+                return;
+            }
+            FileLoadWorker.cancel(component);
+            LogFollower.stop(component);
             contentPane.removeTabAt(index);
             tabFileMap.remove(component);
+            tabModified.remove(component);
+            Path folder = tabFolders.remove(component);
+            if (folder != null) {
+                unwatch(folder);
+            }
+            tabMemory.release(component);
+
+            if (component instanceof TableViewer) {
+                TableViewer viewer = (TableViewer) component;
+                viewer.dispose();
+                connectionManager.release(viewer.getDatabaseFile());
+            } else if (component instanceof LargeFileViewer) {
+                ((LargeFileViewer) component).dispose();
+            } else if (component instanceof HexViewer) {
+                ((HexViewer) component).dispose();
+            }
             logMonitor("Closed tab");
         }
     }
 
+    /** Watches expanded folders and the folders of open files; costs nothing while idle. */
     private void startFileMonitor() {
-        Timer timer = new Timer(5000, e -> {
-            for (File file : watchedFiles) {
-                if (file.exists()) {
-                    logMonitor("Monitoring: " + file.getName() + " - Last modified: " +
-                        new java.util.Date(file.lastModified()));
+        try {
+            fileMonitor = new FileMonitor(this::filesChanged);
+        } catch (java.io.IOException e) {
+            logMonitor("ERROR: File monitoring unavailable - " + e.getMessage());
+        }
+    }
+
+    /** Registers a tab's backing file and remembers its modification time. */
+    private void trackTab(Component component, File file) {
+        tabFileMap.put(component, file);
+        tabModified.put(component, file.lastModified());
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            Path folder = parent.toPath().normalize();
+            Path previous = tabFolders.put(component, folder);
+            if (!folder.equals(previous)) {
+                watch(folder);
+                if (previous != null) {
+                    unwatch(previous);
                 }
             }
-        });
-        timer.start();
+        }
+    }
+
+    /** Watches folder until unwatch has been called as often as watch. */
+    private void watch(Path folder) {
+        if (watchCounts.merge(folder, 1, Integer::sum) == 1 && fileMonitor != null) {
+            fileMonitor.register(folder);
+        }
+    }
+
+    private void unwatch(Path folder) {
+        Integer count = watchCounts.get(folder);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            watchCounts.put(folder, count - 1);
+        } else {
+            watchCounts.remove(folder);
+            if (fileMonitor != null) {
+                fileMonitor.unregister(folder);
+            }
+        }
+    }
+
+    /** A tab dropped from memory was read from its file again; it now shows what is on disk. */
+    private void tabReloaded(Component component) {
+        File file = tabFileMap.get(component);
+        int index = contentPane.indexOfComponent(component);
+        if (file != null && index >= 0) {
+            trackTab(component, file);
+            contentPane.setTitleAt(index, file.getName());
+        }
+    }
+
+    private void folderLoaded(FileTreeNode node) {
+        Path folder = node.getFile().toPath().toAbsolutePath().normalize();
+        if (loadedFolders.put(folder, node) == null) {
+            watch(folder);
+        }
+    }
+
+    /** Applies a batch of file system events to the tree and the open tabs. */
+    private void filesChanged(Set<Path> changed, Set<Path> overflowed) {
+        DefaultTreeModel model = (DefaultTreeModel) fileTree.getModel();
+
+        for (Path folder : overflowed) {
+            FileTreeNode node = loadedFolders.get(folder);
+            if (node != null) {
+                // the folder itself stays watched; what was loaded below it is listed again
+                for (int i = 0; i < node.getChildCount(); i++) {
+                    if (node.getChildAt(i) instanceof FileTreeNode) {
+                        forgetFolders((FileTreeNode) node.getChildAt(i));
+                    }
+                }
+                node.unload(model);
+                node.load(model, path -> isSupported(path.toFile()), this::folderLoaded);
+            }
+        }
+
+        for (Path path : changed) {
+            FileTreeNode parent = loadedFolders.get(path.getParent());
+            if (parent == null || !parent.isLoaded()) {
+                continue;
+            }
+            FileTreeNode child = parent.findChild(path.toFile());
+            boolean exists = Files.exists(path);
+            if (exists && child == null) {
+                boolean directory = Files.isDirectory(path);
+                if (directory || isSupported(path.toFile())) {
+                    parent.insertSorted(new FileTreeNode(path.toFile(), directory), model);
+                }
+            } else if (!exists && child != null) {
+                forgetFolders(child);
+                model.removeNodeFromParent(child);
+            }
+        }
+
+        for (Map.Entry<Component, File> entry : tabFileMap.entrySet()) {
+            Component component = entry.getKey();
+            File file = entry.getValue();
+            if (!changed.contains(file.toPath().toAbsolutePath().normalize()) || LogFollower.isFollowing(component)) {
+                continue;
+            }
+            int index = contentPane.indexOfComponent(component);
+            if (!file.exists()) {
+                contentPane.setTitleAt(index, file.getName() + " [deleted on disk]");
+                logMonitor("File deleted on disk: " + file.getAbsolutePath());
+            } else if (file.lastModified() != tabModified.getOrDefault(component, 0L)) {
+                contentPane.setTitleAt(index, file.getName() + " [changed on disk]");
+                logMonitor("File changed on disk: " + file.getAbsolutePath());
+            }
+        }
+    }
+
+    /** Stops watching a removed folder and everything loaded below it. */
+    private void forgetFolders(FileTreeNode node) {
+        if (!node.isDirectory()) {
+            return;
+        }
+        Path folder = node.getFile().toPath().toAbsolutePath().normalize();
+        if (loadedFolders.remove(folder) != null) {
+            unwatch(folder);
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            if (node.getChildAt(i) instanceof FileTreeNode) {
+                forgetFolders((FileTreeNode) node.getChildAt(i));
+            }
+        }
+    }
+
+    private static File monitorLogFile() {
+        try {
+            File directory = AppPaths.resolve("logs");
+            return directory.isDirectory() || directory.mkdirs() ? new File(directory, "monitor.log") : null;
+        } catch (java.io.IOException e) {
+            return null;
+        }
     }
 
+    /** Safe to call from any thread. */
     private void logMonitor(String message) {
-        String timestamp = new java.text.SimpleDateFormat("HH:mm:ss").format(new java.util.Date());
-        monitorArea.append("[" + timestamp + "] " + message + "\n");
-        monitorArea.setCaretPosition(monitorArea.getDocument().getLength());
+        monitorLog.log(message);
     }
 }
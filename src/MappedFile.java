@@ -0,0 +1,90 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only memory mapping of a whole file. A single MappedByteBuffer is
+ * limited to 2 GB, so the file is mapped as consecutive 1 GB segments and
+ * positions are plain longs. Pages are loaded by the OS on access and do
+ * not count against the Java heap.
+ */
+public class MappedFile implements Closeable {
+    public static final int SEGMENT_SHIFT = 30;
+    public static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private final File file;
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long size;
+
+    public MappedFile(File file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+        try {
+            size = channel.size();
+            int count = (int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+            segments = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long start = (long) i << SEGMENT_SHIFT;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    /** Returns an independent view of one segment, positioned at its start. */
+    public ByteBuffer segment(int index) {
+        return segments[index].duplicate();
+    }
+
+    public byte byteAt(long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].get((int) (position & SEGMENT_MASK));
+    }
+
+    /** Copies up to length bytes starting at position; returns the number copied. */
+    public int read(long position, byte[] dst, int offset, int length) {
+        if (position >= size) {
+            return 0;
+        }
+        int total = (int) Math.min(length, size - position);
+        int copied = 0;
+        while (copied < total) {
+            long pos = position + copied;
+            ByteBuffer segment = segments[(int) (pos >>> SEGMENT_SHIFT)].duplicate();
+            segment.position((int) (pos & SEGMENT_MASK));
+            int n = Math.min(total - copied, segment.remaining());
+            segment.get(dst, offset + copied, n);
+            copied += n;
+        }
+        return total;
+    }
+
+    /**
+     * Closes the channel. The mappings themselves are released by the GC once
+     * no buffer refers to them; the JDK offers no supported way to unmap early.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,261 @@
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Monitor panel log that any thread can write to. log() puts the message in
+ * a lock-free ring buffer (dropping it if the buffer is full rather than
+ * blocking); one consumer thread drains the buffer at most FRAMES_PER_SECOND
+ * times a second, appends each batch to the text area in a single EDT call
+ * while keeping it under MAX_LINES, and writes the same lines to a log file
+ * that is rotated by size.
+ */
+public class MonitorLog {
+    public static final int MAX_LINES = 5000;
+    private static final int CAPACITY = 1 << 14;
+    private static final int FRAMES_PER_SECOND = 20;
+    private static final long FRAME_NANOS = 1_000_000_000L / FRAMES_PER_SECOND;
+    private static final long MAX_FILE_BYTES = 5L * 1024 * 1024;
+    private static final int KEEP_FILES = 3;
+
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss")
+        .withZone(ZoneId.systemDefault());
+
+    private static class Entry {
+        final long time;
+        final String message;
+
+        Entry(long time, String message) {
+            this.time = time;
+            this.message = message;
+        }
+    }
+
+    private final JTextArea textArea;
+    private final File logFile;
+    private final AtomicReferenceArray<Entry> slots = new AtomicReferenceArray<>(CAPACITY);
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread consumer;
+
+    // written by the consumer only; producers read it to see whether the buffer is full
+    private volatile long head;
+
+    // consumer thread only
+    private Writer fileWriter;
+    private long fileBytes;
+
+    private volatile boolean idle;
+    private volatile boolean closed;
+
+    // guarded by this; text handed to the EDT but not yet appended
+    private StringBuilder pending = new StringBuilder();
+    private int pendingLines;
+    private boolean appendScheduled;
+
+    /** logFile may be null to log to the panel only. */
+    public MonitorLog(JTextArea textArea, File logFile) {
+        this.textArea = textArea;
+        this.logFile = logFile;
+        this.consumer = new Thread(this::run, "monitor-log");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    /** Queues a message; never blocks. */
+    public void log(String message) {
+        long slot;
+        do {
+            slot = tail.get();
+            if (slot - head >= CAPACITY) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!tail.compareAndSet(slot, slot + 1));
+
+        slots.set((int) (slot & (CAPACITY - 1)), new Entry(System.currentTimeMillis(), message));
+        if (idle) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /** Writes out what is queued and closes the log file. */
+    public void close() {
+        closed = true;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        StringBuilder batch = new StringBuilder();
+        while (true) {
+            long frameStart = System.nanoTime();
+            batch.setLength(0);
+            int lines = drain(batch);
+
+            if (lines > 0) {
+                writeToFile(batch);
+                handToEdt(batch, lines);
+            }
+            if (closed) {
+                break;
+            }
+
+            if (lines == 0) {
+                // nothing queued: sleep until a producer wakes us
+                idle = true;
+                if (tail.get() == head) {
+                    LockSupport.park(this);
+                }
+                idle = false;
+            } else {
+                long remaining = FRAME_NANOS - (System.nanoTime() - frameStart);
+                if (remaining > 0) {
+                    LockSupport.parkNanos(this, remaining);
+                }
+            }
+        }
+        closeFile();
+    }
+
+    private int drain(StringBuilder batch) {
+        int lines = 0;
+        long missed = dropped.getAndSet(0);
+        if (missed > 0) {
+            batch.append('[').append(TIME.format(Instant.now())).append("] (")
+                .append(missed).append(" messages dropped)\n");
+            lines++;
+        }
+
+        while (head < tail.get()) {
+            int index = (int) (head & (CAPACITY - 1));
+            Entry entry = slots.get(index);
+            if (entry == null) {
+                // claimed but not yet written; pick it up next frame
+                break;
+            }
+            slots.set(index, null);
+            head++;
+            batch.append('[').append(TIME.format(Instant.ofEpochMilli(entry.time))).append("] ")
+                .append(entry.message).append('\n');
+            lines++;
+        }
+        return lines;
+    }
+
+    private void handToEdt(CharSequence text, int lines) {
+        synchronized (this) {
+            pending.append(text);
+            pendingLines += lines;
+            if (pendingLines > MAX_LINES) {
+                // the EDT is behind; lines beyond the panel's limit would be trimmed anyway
+                pending.delete(0, startOfLastLines(pending, MAX_LINES));
+                pendingLines = MAX_LINES;
+            }
+            if (appendScheduled) {
+                return;
+            }
+            appendScheduled = true;
+        }
+        SwingUtilities.invokeLater(this::append);
+    }
+
+    private static int startOfLastLines(CharSequence text, int lines) {
+        int seen = 0;
+        for (int i = text.length() - 1; i >= 0; i--) {
+            if (text.charAt(i) == '\n' && ++seen > lines) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    private void append() {
+        String text;
+        synchronized (this) {
+            text = pending.toString();
+            pending = new StringBuilder();
+            pendingLines = 0;
+            appendScheduled = false;
+        }
+
+        Document document = textArea.getDocument();
+        try {
+            document.insertString(document.getLength(), text, null);
+            Element root = document.getDefaultRootElement();
+            int excess = root.getElementCount() - 1 - MAX_LINES;
+            if (excess > 0) {
+                document.remove(0, root.getElement(excess - 1).getEndOffset());
+            }
+        } catch (BadLocationException e) {
+            e.printStackTrace();
+        }
+        textArea.setCaretPosition(document.getLength());
+    }
+
+    private void writeToFile(CharSequence text) {
+        if (logFile == null) {
+            return;
+        }
+        try {
+            if (fileWriter == null) {
+                fileWriter = Files.newBufferedWriter(logFile.toPath(), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                fileBytes = logFile.length();
+            }
+            fileWriter.append(text);
+            fileWriter.flush();
+            // counts chars, not bytes; near enough to decide when to rotate
+            fileBytes += text.length();
+
+            if (fileBytes >= MAX_FILE_BYTES) {
+                closeFile();
+                rotate();
+            }
+        } catch (IOException e) {
+            // keep logging to the panel even if the disk is full or the file is gone
+            closeFile();
+        }
+    }
+
+    /** monitor.log becomes monitor.log.1, .1 becomes .2 and so on; the oldest is dropped. */
+    private void rotate() throws IOException {
+        for (int i = KEEP_FILES - 1; i >= 1; i--) {
+            File from = new File(logFile.getPath() + "." + i);
+            if (from.exists()) {
+                Files.move(from.toPath(), new File(logFile.getPath() + "." + (i + 1)).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(logFile.toPath(), new File(logFile.getPath() + ".1").toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void closeFile() {
+        if (fileWriter != null) {
+            try {
+                fileWriter.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            fileWriter = null;
+        }
+    }
+}
@@ -0,0 +1,442 @@
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Read-through TableModel for a single database table. Only the row count
+ * and column names are loaded up front; rows are fetched in fixed-size pages
+ * (keyset pagination on rowid) when the JTable asks for them and kept in a
+ * small LRU cache, so memory stays flat no matter how big the table is.
+ * A page far from any known anchor would need a long OFFSET scan, so when
+ * the rowids have no gaps a page's anchor is computed directly, and
+ * otherwise anchors every ANCHOR_PAGES pages are seeded in the background.
+ * Edits are recorded in a TableChangeSet and only written by saveChanges().
+ */
+public class PagedTableModel extends AbstractTableModel {
+    public static final int PAGE_SIZE = 200;
+    private static final int CACHE_PAGES = 32;
+    /** Distance between seeded anchors; no page is more than this many pages of OFFSET away. */
+    private static final int ANCHOR_PAGES = 16;
+
+    private static final ExecutorService LOADER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "table-page-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final DatabaseManager dbManager;
+    private final String tableName;
+    private final String quotedName;
+    private final String[] columnNames;
+    private final int rowCount;
+    private final boolean keyset;
+    /** Smallest rowid when the rowids are exactly firstRowId .. firstRowId + rowCount - 1, else null. */
+    private final Long firstRowId;
+
+    private final Map<Integer, Page> cache;
+    private final Set<Integer> pending = new HashSet<>();
+    private final NavigableMap<Integer, Long> anchors = new ConcurrentSkipListMap<>();
+    private volatile int lastRequestedPage;
+    private volatile boolean closed;
+    private final TableChangeSet changes;
+
+    private static class Page {
+        final long[] rowIds;
+        final Object[][] rows;
+
+        Page(long[] rowIds, Object[][] rows) {
+            this.rowIds = rowIds;
+            this.rows = rows;
+        }
+    }
+
+    public PagedTableModel(DatabaseManager dbManager, String tableName) throws SQLException {
+        this(dbManager, tableName, stmt -> { });
+    }
+
+    /**
+     * counting is handed the COUNT(*) statement before it runs and null once
+     * it has finished, so a caller can cancel() it on a huge table.
+     */
+    public PagedTableModel(DatabaseManager dbManager, String tableName,
+                           Consumer<Statement> counting) throws SQLException {
+        this.dbManager = dbManager;
+        this.tableName = tableName;
+        this.quotedName = DatabaseManager.quoteIdentifier(tableName);
+
+        SchemaCatalog.TableInfo info = dbManager.getSchemaCatalog().getTable(tableName);
+        if (info == null) {
+            throw new SQLException("No such table: " + tableName);
+        }
+        columnNames = info.getColumnNames().toArray(new String[0]);
+        keyset = !info.isWithoutRowId();
+        changes = new TableChangeSet(columnNames.length);
+
+        Connection connection = dbManager.borrowReadConnection();
+        try (Statement stmt = connection.createStatement()) {
+            counting.accept(stmt);
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + quotedName)) {
+                rowCount = rs.next() ? rs.getInt(1) : 0;
+            } finally {
+                counting.accept(null);
+            }
+            firstRowId = keyset && rowCount > 0 ? denseStart(stmt) : null;
+        } finally {
+            dbManager.releaseReadConnection(connection);
+        }
+
+        anchors.put(0, Long.MIN_VALUE);
+        if (keyset && firstRowId == null && rowCount > ANCHOR_PAGES * PAGE_SIZE) {
+            seedAnchor(0, Long.MIN_VALUE);
+        }
+
+        cache = new LinkedHashMap<Integer, Page>(CACHE_PAGES * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Page> eldest) {
+                return size() > CACHE_PAGES;
+            }
+        };
+    }
+
+    /** The smallest rowid if the rowids have no gaps; min and max come straight from the rowid b-tree. */
+    private Long denseStart(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("SELECT min(rowid), max(rowid) FROM " + quotedName)) {
+            if (!rs.next()) {
+                return null;
+            }
+            long min = rs.getLong(1);
+            long max = rs.getLong(2);
+            return min > Long.MIN_VALUE && max - min == rowCount - 1L ? min : null;
+        }
+    }
+
+    /**
+     * Finds the anchor ANCHOR_PAGES pages after the one at pageIndex and
+     * queues the next step. One step at a time goes through LOADER, so page
+     * loads wait for at most one step.
+     */
+    private void seedAnchor(int pageIndex, long afterRowId) {
+        LOADER.execute(() -> {
+            int next = pageIndex + ANCHOR_PAGES;
+            if (closed || next * (long) PAGE_SIZE >= rowCount) {
+                return;
+            }
+            Long rowId = null;
+            try {
+                Connection connection = dbManager.borrowReadConnection();
+                try {
+                    PreparedStatement ps = dbManager.prepare(connection, "SELECT rowid FROM " + quotedName
+                        + " WHERE rowid > ? ORDER BY rowid LIMIT 1 OFFSET ?");
+                    ps.setLong(1, afterRowId);
+                    ps.setLong(2, ANCHOR_PAGES * (long) PAGE_SIZE - 1);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        rowId = rs.next() ? rs.getLong(1) : null;
+                    }
+                } finally {
+                    dbManager.releaseReadConnection(connection);
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            if (rowId != null) {
+                anchors.put(next, rowId);
+                seedAnchor(next, rowId);
+            }
+        });
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount + changes.getInserts().size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        if (rowIndex >= rowCount) {
+            return changes.getInserts().get(rowIndex - rowCount)[columnIndex];
+        }
+
+        Page page = getPage(rowIndex);
+        if (page == null) {
+            return null;
+        }
+
+        Object value = page.rows[rowIndex % PAGE_SIZE][columnIndex];
+        return page.rowIds == null ? value : changes.valueOr(page.rowIds[rowIndex % PAGE_SIZE], columnIndex, value);
+    }
+
+    @Override
+    public boolean isCellEditable(int rowIndex, int columnIndex) {
+        if (rowIndex >= rowCount) {
+            return true;
+        }
+        Long rowId = getRowId(rowIndex);
+        // The text editor cannot round-trip a BLOB; it would write "[B@..." over it.
+        return rowId != null && !changes.isDeleted(rowId) && !(getValueAt(rowIndex, columnIndex) instanceof byte[]);
+    }
+
+    @Override
+    public void setValueAt(Object value, int rowIndex, int columnIndex) {
+        if (rowIndex >= rowCount) {
+            Object[] row = changes.getInserts().get(rowIndex - rowCount);
+            row[columnIndex] = coerce(value, row[columnIndex]);
+        } else {
+            Long rowId = getRowId(rowIndex);
+            Object stored = getValueAt(rowIndex, columnIndex);
+            value = coerce(value, stored);
+            if (rowId == null || Objects.equals(value, stored)) {
+                return;
+            }
+            changes.update(rowId, columnIndex, value);
+        }
+        fireTableCellUpdated(rowIndex, columnIndex);
+    }
+
+    /**
+     * The cell editor hands back Strings. A numeric cell keeps its storage
+     * class when the text still parses as a number, so an unchanged cell
+     * compares equal and an edited one is bound as INTEGER or REAL, not TEXT.
+     * A NULL cell left empty stays NULL instead of becoming ''.
+     */
+    private static Object coerce(Object value, Object stored) {
+        if (stored == null && "".equals(value)) {
+            return null;
+        }
+        if (!(value instanceof String) || !(stored instanceof Number)) {
+            return value;
+        }
+        String text = ((String) value).trim();
+        try {
+            if (stored instanceof Long || stored instanceof Integer) {
+                long number = Long.parseLong(text);
+                return stored instanceof Integer && number == (int) number ? (Object) (int) number : (Object) number;
+            }
+        } catch (NumberFormatException e) {
+            // Not an integer any more; fall through and try REAL.
+        }
+        try {
+            return Double.valueOf(text);
+        } catch (NumberFormatException e) {
+            return value;
+        }
+    }
+
+    public boolean isEditable() {
+        return keyset;
+    }
+
+    public int addRow() {
+        changes.addInsert();
+        int row = getRowCount() - 1;
+        fireTableRowsInserted(row, row);
+        return row;
+    }
+
+    /** Marks a row for deletion; rows added since the last save are dropped immediately. */
+    public boolean deleteRow(int rowIndex) {
+        if (rowIndex >= rowCount) {
+            changes.getInserts().remove(rowIndex - rowCount);
+            fireTableRowsDeleted(rowIndex, rowIndex);
+            return true;
+        }
+
+        Long rowId = getRowId(rowIndex);
+        if (rowId == null) {
+            return false;
+        }
+        changes.delete(rowId);
+        fireTableRowsUpdated(rowIndex, rowIndex);
+        return true;
+    }
+
+    public boolean isRowDeleted(int rowIndex) {
+        if (rowIndex >= rowCount) {
+            return false;
+        }
+        Long rowId = getRowId(rowIndex);
+        return rowId != null && changes.isDeleted(rowId);
+    }
+
+    public boolean isCellModified(int rowIndex, int columnIndex) {
+        if (rowIndex >= rowCount) {
+            return true;
+        }
+        Long rowId = getRowId(rowIndex);
+        return rowId != null && changes.isUpdated(rowId, columnIndex);
+    }
+
+    public boolean hasChanges() {
+        return !changes.isEmpty();
+    }
+
+    public TableChangeSet getChanges() {
+        return changes;
+    }
+
+    /** Writes the pending delta in one transaction. Call off the EDT; reload the model afterwards. */
+    public void saveChanges() throws SQLException {
+        changes.apply(dbManager, tableName, columnNames);
+    }
+
+    /** Returns the rowid of a loaded row, or null if its page is not cached (or the table has no rowid). */
+    public Long getRowId(int rowIndex) {
+        if (rowIndex >= rowCount) {
+            return null;
+        }
+        Page page = getPage(rowIndex);
+        return page == null || page.rowIds == null ? null : page.rowIds[rowIndex % PAGE_SIZE];
+    }
+
+    public boolean isRowLoaded(int rowIndex) {
+        return cache.containsKey(rowIndex / PAGE_SIZE);
+    }
+
+    public void close() {
+        closed = true;
+        cache.clear();
+    }
+
+    /** Reads every page in order on the calling thread and returns the row count. */
+    int scanAllPages() throws SQLException {
+        int rows = 0;
+        for (int pageIndex = 0; ; pageIndex++) {
+            int loaded = fetchPage(pageIndex).rows.length;
+            rows += loaded;
+            if (loaded < PAGE_SIZE) {
+                return rows;
+            }
+        }
+    }
+
+    private Page getPage(int rowIndex) {
+        int pageIndex = rowIndex / PAGE_SIZE;
+        Page page = cache.get(pageIndex);
+
+        lastRequestedPage = pageIndex;
+        if (page == null) {
+            requestPage(pageIndex);
+        }
+        requestPage(pageIndex + 1);
+        requestPage(pageIndex - 1);
+
+        return page;
+    }
+
+    private void requestPage(int pageIndex) {
+        if (closed || pageIndex < 0 || pageIndex * (long) PAGE_SIZE >= rowCount
+                || cache.containsKey(pageIndex) || !pending.add(pageIndex)) {
+            return;
+        }
+
+        LOADER.execute(() -> {
+            if (closed || Math.abs(pageIndex - lastRequestedPage) > CACHE_PAGES / 2) {
+                SwingUtilities.invokeLater(() -> pending.remove(pageIndex));
+                return;
+            }
+
+            Page page = null;
+            try {
+                page = fetchPage(pageIndex);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+
+            Page loaded = page;
+            SwingUtilities.invokeLater(() -> {
+                pending.remove(pageIndex);
+                if (loaded != null && !closed) {
+                    cache.put(pageIndex, loaded);
+                    int first = pageIndex * PAGE_SIZE;
+                    int last = Math.min(rowCount, first + loaded.rows.length) - 1;
+                    if (last >= first) {
+                        fireTableRowsUpdated(first, last);
+                    }
+                }
+            });
+        });
+    }
+
+    private Page fetchPage(int pageIndex) throws SQLException {
+        Connection connection = dbManager.borrowReadConnection();
+        try {
+            return fetchPage(connection, pageIndex);
+        } finally {
+            dbManager.releaseReadConnection(connection);
+        }
+    }
+
+    private Page fetchPage(Connection connection, int pageIndex) throws SQLException {
+        List<Object[]> rows = new ArrayList<>(PAGE_SIZE);
+        List<Long> rowIds = keyset ? new ArrayList<>(PAGE_SIZE) : null;
+        int columnCount = columnNames.length;
+
+        PreparedStatement ps;
+        if (keyset) {
+            long after;
+            long skip;
+            if (firstRowId != null) {
+                after = firstRowId - 1 + (long) pageIndex * PAGE_SIZE;
+                skip = 0;
+            } else {
+                Map.Entry<Integer, Long> anchor = anchors.floorEntry(pageIndex);
+                after = anchor.getValue();
+                skip = (long) (pageIndex - anchor.getKey()) * PAGE_SIZE;
+            }
+            ps = dbManager.prepare(connection, "SELECT rowid, * FROM " + quotedName
+                + " WHERE rowid > ? ORDER BY rowid LIMIT ? OFFSET ?");
+            ps.setLong(1, after);
+            ps.setInt(2, PAGE_SIZE);
+            ps.setLong(3, skip);
+        } else {
+            ps = dbManager.prepare(connection, "SELECT * FROM " + quotedName + " LIMIT ? OFFSET ?");
+            ps.setInt(1, PAGE_SIZE);
+            ps.setLong(2, (long) pageIndex * PAGE_SIZE);
+        }
+
+        try (ResultSet rs = ps.executeQuery()) {
+            int offset = keyset ? 1 : 0;
+            while (rs.next()) {
+                if (keyset) {
+                    rowIds.add(rs.getLong(1));
+                }
+                Object[] row = new Object[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    row[i] = rs.getObject(i + 1 + offset);
+                }
+                rows.add(row);
+            }
+        }
+
+        long[] ids = null;
+        if (keyset) {
+            ids = new long[rowIds.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = rowIds.get(i);
+            }
+            if (ids.length == PAGE_SIZE) {
+                anchors.put(pageIndex + 1, ids[ids.length - 1]);
+            }
+        }
+
+        return new Page(ids, rows.toArray(new Object[0][]));
+    }
+}
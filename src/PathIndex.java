@@ -0,0 +1,940 @@
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Names of all files under the workspace roots, for quick open. Every file
+ * and folder is a node holding its parent and an interned name segment in
+ * int arrays; nodes are laid out depth first, so a folder's subtree is one
+ * range and can be skipped in one step. Each node also keeps a bit mask of
+ * the characters used anywhere in its subtree, which lets a fuzzy search
+ * skip every folder that cannot contain the rest of the query.
+ *
+ * Files created after the last full scan are appended out of order and
+ * removed ones are marked dead; the tree is laid out again once either
+ * grows large. The index is saved under AppPaths and reloaded on start.
+ */
+public class PathIndex {
+    public static final String FILE_NAME = "paths.idx";
+
+    private static final int MAGIC = 0x464D5049; // "FMPI"
+    private static final int VERSION = 1;
+
+    public static class Result {
+        public final File file;
+        /** Path from the root folder's name down, separated by '/'. */
+        public final String path;
+        public final int score;
+
+        Result(File file, String path, int score) {
+            this.file = file;
+            this.path = path;
+            this.score = score;
+        }
+
+        @Override
+        public String toString() {
+            return path;
+        }
+    }
+
+    /** Nodes and name segments; replaced as a whole by a full scan. */
+    private static class Tree {
+        final List<File> roots = new ArrayList<>();
+        int[] rootNodes = new int[0];
+
+        final Map<String, Integer> segmentIds = new HashMap<>();
+        String[] names = new String[1024];
+        /** Lower-cased segments back to back: segment s is chars[offsets[s], offsets[s + 1]). */
+        char[] chars = new char[16384];
+        int[] offsets = new int[1025];
+        long[] segmentMasks = new long[1024];
+        /** Bit i is set if character i starts a word: first, after punctuation, or a capital after lower case. */
+        long[] wordStarts = new long[1024];
+        int segmentCount;
+
+        int[] parent = new int[1024];
+        int[] name = new int[1024];
+        /** End of the node's subtree; only meaningful for nodes below ordered. */
+        int[] end = new int[1024];
+        int[] depth = new int[1024];
+        /** Characters used in the node's subtree, including its own name. */
+        long[] mask = new long[1024];
+        final BitSet directory = new BitSet();
+        /** Removed nodes; everything below a dead node counts as removed too. */
+        final BitSet dead = new BitSet();
+        int count;
+        /** Nodes before this index are in depth-first order. */
+        int ordered;
+        int maxDepth;
+        int files;
+        int deadCount;
+
+        int intern(String segment) {
+            Integer id = segmentIds.get(segment);
+            if (id != null) {
+                return id;
+            }
+            if (segmentCount == names.length) {
+                names = Arrays.copyOf(names, segmentCount * 2);
+                offsets = Arrays.copyOf(offsets, segmentCount * 2 + 1);
+                segmentMasks = Arrays.copyOf(segmentMasks, segmentCount * 2);
+                wordStarts = Arrays.copyOf(wordStarts, segmentCount * 2);
+            }
+            int start = offsets[segmentCount];
+            if (start + segment.length() > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(chars.length * 2, start + segment.length()));
+            }
+            long bits = 0;
+            long starts = 0;
+            for (int i = 0; i < segment.length(); i++) {
+                char c = segment.charAt(i);
+                if (i < 64 && (i == 0 || !Character.isLetterOrDigit(segment.charAt(i - 1))
+                        || Character.isUpperCase(c) && Character.isLowerCase(segment.charAt(i - 1)))) {
+                    starts |= 1L << i;
+                }
+                chars[start + i] = Character.toLowerCase(c);
+                bits |= bit(chars[start + i]);
+            }
+            names[segmentCount] = segment;
+            offsets[segmentCount + 1] = start + segment.length();
+            segmentMasks[segmentCount] = bits;
+            wordStarts[segmentCount] = starts;
+            segmentIds.put(segment, segmentCount);
+            return segmentCount++;
+        }
+
+        int add(int parentNode, String segment, boolean isDirectory) {
+            if (count == parent.length) {
+                int capacity = count * 2;
+                parent = Arrays.copyOf(parent, capacity);
+                name = Arrays.copyOf(name, capacity);
+                end = Arrays.copyOf(end, capacity);
+                depth = Arrays.copyOf(depth, capacity);
+                mask = Arrays.copyOf(mask, capacity);
+            }
+            int node = count++;
+            parent[node] = parentNode;
+            name[node] = intern(segment);
+            end[node] = node + 1;
+            depth[node] = parentNode < 0 ? 0 : depth[parentNode] + 1;
+            maxDepth = Math.max(maxDepth, depth[node]);
+            mask[node] = segmentMasks[name[node]];
+            directory.set(node, isDirectory);
+            if (!isDirectory) {
+                files++;
+            }
+            return node;
+        }
+
+        /** Computes subtree ends and masks once all nodes are added in depth-first order. */
+        void finish() {
+            for (int node = count - 1; node >= 0; node--) {
+                int p = parent[node];
+                if (p >= 0) {
+                    end[p] = Math.max(end[p], end[node]);
+                    mask[p] |= mask[node];
+                }
+            }
+            ordered = count;
+            List<Integer> rootList = new ArrayList<>();
+            for (int node = 0; node < count; node++) {
+                if (parent[node] < 0) {
+                    rootList.add(node);
+                }
+            }
+            rootNodes = rootList.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        boolean isRemoved(int node) {
+            for (int n = node; n >= 0; n = parent[n]) {
+                if (dead.get(n)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int findChild(int node, int segment) {
+            if (node < ordered) {
+                for (int child = node + 1; child < end[node]; child = end[child]) {
+                    if (name[child] == segment && !dead.get(child)) {
+                        return child;
+                    }
+                }
+            }
+            for (int child = ordered; child < count; child++) {
+                if (parent[child] == node && name[child] == segment && !dead.get(child)) {
+                    return child;
+                }
+            }
+            return -1;
+        }
+
+        /** The node for path, or -1 if it is not in the index. */
+        int find(Path path) {
+            for (int r = 0; r < roots.size(); r++) {
+                Path root = roots.get(r).toPath();
+                if (!path.startsWith(root)) {
+                    continue;
+                }
+                int node = rootNodes[r];
+                for (Path part : root.relativize(path)) {
+                    if (part.toString().isEmpty()) {
+                        continue;
+                    }
+                    Integer segment = segmentIds.get(part.toString());
+                    node = segment == null ? -1 : findChild(node, segment);
+                    if (node < 0) {
+                        return -1;
+                    }
+                }
+                return node;
+            }
+            return -1;
+        }
+
+        /** Live files in the node's subtree, counting appended nodes too. */
+        int filesUnder(int node) {
+            int total = 0;
+            if (node < ordered) {
+                for (int n = node; n < end[node]; ) {
+                    if (dead.get(n)) {
+                        n = end[n];
+                        continue;
+                    }
+                    if (!directory.get(n)) {
+                        total++;
+                    }
+                    n++;
+                }
+            } else if (!directory.get(node)) {
+                total++;
+            }
+            for (int n = Math.max(ordered, node + 1); n < count; n++) {
+                if (!directory.get(n) && !isRemoved(n) && isBelow(n, node)) {
+                    total++;
+                }
+            }
+            return total;
+        }
+
+        boolean isBelow(int node, int ancestor) {
+            for (int n = parent[node]; n >= 0; n = parent[n]) {
+                if (n == ancestor) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        File fileOf(int node) {
+            int[] chain = chain(node);
+            int root = chain[chain.length - 1];
+            File file = null;
+            for (int r = 0; r < rootNodes.length; r++) {
+                if (rootNodes[r] == root) {
+                    file = roots.get(r);
+                }
+            }
+            for (int i = chain.length - 2; i >= 0; i--) {
+                file = new File(file, names[name[chain[i]]]);
+            }
+            return file;
+        }
+
+        String pathOf(int node) {
+            int[] chain = chain(node);
+            StringBuilder path = new StringBuilder();
+            for (int i = chain.length - 1; i >= 0; i--) {
+                path.append(names[name[chain[i]]]);
+                if (i > 0) {
+                    path.append('/');
+                }
+            }
+            return path.toString();
+        }
+
+        /** The node and its ancestors, the root last. */
+        int[] chain(int node) {
+            int[] chain = new int[depth[node] + 1];
+            for (int i = 0, n = node; n >= 0; n = parent[n]) {
+                chain[i++] = n;
+            }
+            return chain;
+        }
+    }
+
+    private final File storage;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // guarded by lock
+    private Tree tree = new Tree();
+
+    public PathIndex(File storage) {
+        this.storage = storage;
+    }
+
+    /** Loads the saved index, or returns an empty one if there is none or it cannot be read. */
+    public static PathIndex load(File storage) {
+        PathIndex index = new PathIndex(storage);
+        if (storage.isFile()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(storage), 1 << 16))) {
+                index.tree = read(in);
+            } catch (IOException e) {
+                // a stale or damaged index is rebuilt by the next update
+                return new PathIndex(storage);
+            }
+        }
+        return index;
+    }
+
+    public int getFileCount() {
+        lock.readLock().lock();
+        try {
+            return tree.files;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Scans the roots and replaces the index with what is there now. Returns the file count. */
+    public int update(List<File> roots) throws IOException {
+        Tree fresh = new Tree();
+        for (File root : roots) {
+            File absolute = root.toPath().toAbsolutePath().normalize().toFile();
+            fresh.roots.add(absolute);
+            int rootNode = fresh.add(-1, absolute.getName().isEmpty() ? absolute.getPath() : absolute.getName(), true);
+            scan(absolute.toPath(), fresh, rootNode, null);
+        }
+        fresh.finish();
+
+        lock.writeLock().lock();
+        try {
+            tree = fresh;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return fresh.files;
+    }
+
+    /**
+     * Adds or removes one path after a file system event. Folders that are
+     * added, including those found below a new folder, are passed to
+     * directoryAdded so the caller can watch them.
+     */
+    public void updatePath(Path path, Consumer<Path> directoryAdded) {
+        Path absolute = path.toAbsolutePath().normalize();
+        boolean isDirectory = Files.isDirectory(absolute, LinkOption.NOFOLLOW_LINKS);
+        boolean isFile = Files.isRegularFile(absolute, LinkOption.NOFOLLOW_LINKS);
+        if (absolute.getParent() == null) {
+            return;
+        }
+        String segment = absolute.getFileName().toString();
+
+        // list a new folder before taking the lock
+        Tree listing = null;
+        if (isDirectory) {
+            lock.readLock().lock();
+            try {
+                if (tree.find(absolute) >= 0 || tree.find(absolute.getParent()) < 0) {
+                    return;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (segment.startsWith(".")) {
+                return;
+            }
+            listing = new Tree();
+            listing.add(-1, segment, true);
+            try {
+                scan(absolute, listing, 0, directoryAdded);
+            } catch (IOException e) {
+                // added without its contents; an overflow or the next scan fills them in
+            }
+            directoryAdded.accept(absolute);
+        }
+
+        lock.writeLock().lock();
+        try {
+            int node = tree.find(absolute);
+            if (!isDirectory && !isFile) {
+                if (node >= 0) {
+                    tree.files -= tree.filesUnder(node);
+                    tree.dead.set(node);
+                    tree.deadCount++;
+                }
+                return;
+            }
+            int parentNode = tree.find(absolute.getParent());
+            if (node >= 0 || parentNode < 0) {
+                return;
+            }
+            if (isFile) {
+                tree.add(parentNode, segment, false);
+            } else {
+                int[] copied = new int[listing.count];
+                for (int n = 0; n < listing.count; n++) {
+                    int p = n == 0 ? parentNode : copied[listing.parent[n]];
+                    copied[n] = tree.add(p, listing.names[listing.name[n]], listing.directory.get(n));
+                }
+            }
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Lists a folder again after its events were lost. */
+    public void refresh(Path directory, Consumer<Path> directoryAdded) {
+        Path absolute = directory.toAbsolutePath().normalize();
+        lock.writeLock().lock();
+        try {
+            int node = tree.find(absolute);
+            if (node < 0 || tree.parent[node] < 0) {
+                // a root; only a full update can list it again
+                return;
+            }
+            tree.files -= tree.filesUnder(node);
+            tree.dead.set(node);
+            tree.deadCount++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        updatePath(absolute, directoryAdded);
+    }
+
+    /** Live folders, shallowest first, at most limit of them. */
+    public List<Path> getDirectories(int limit) {
+        lock.readLock().lock();
+        try {
+            List<Integer> nodes = new ArrayList<>();
+            for (int node = 0; node < tree.count; node++) {
+                if (tree.directory.get(node) && !tree.isRemoved(node)) {
+                    nodes.add(node);
+                }
+            }
+            Tree t = tree;
+            nodes.sort(Comparator.comparingInt(node -> t.depth[node]));
+            List<Path> directories = new ArrayList<>();
+            for (int node : nodes.subList(0, Math.min(limit, nodes.size()))) {
+                directories.add(tree.fileOf(node).toPath());
+            }
+            return directories;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Files whose path contains the query's characters in order, ignoring
+     * case and spaces, best first. Matches inside the file name, at word
+     * starts and in runs score higher; '/' in the query matches a folder
+     * separator.
+     */
+    public List<Result> search(String query, int limit) {
+        char[] q = fold(query);
+        if (q.length == 0 || limit <= 0) {
+            return new ArrayList<>();
+        }
+        int n = q.length;
+        long[] need = new long[n + 1];
+        for (int k = n - 1; k >= 0; k--) {
+            need[k] = need[k + 1] | bit(q[k]);
+        }
+
+        lock.readLock().lock();
+        try {
+            Tree t = tree;
+            TopResults top = new TopResults(limit);
+            Scorer scorer = new Scorer(q, t);
+            int[] states = new int[t.maxDepth + 1];
+            boolean anyDead = t.deadCount > 0;
+
+            // depth-first nodes: a node's state is its parent's plus its own name
+            for (int node = 0; node < t.ordered; ) {
+                int d = t.depth[node];
+                int state = d == 0 ? 0 : states[d - 1];
+                if ((need[state] & ~t.mask[node]) != 0 || (anyDead && t.dead.get(node))) {
+                    node = t.end[node];
+                    continue;
+                }
+                int segment = t.name[node];
+                state = advance(q, state, t.chars, t.offsets[segment], t.offsets[segment + 1], d > 0);
+                states[d] = state;
+                if (state == n && !t.directory.get(node)) {
+                    top.offer(node, scorer.score(node));
+                }
+                node++;
+            }
+
+            // appended nodes: walk each one's chain from its root
+            for (int node = t.ordered; node < t.count; node++) {
+                if (t.directory.get(node) || t.isRemoved(node)) {
+                    continue;
+                }
+                int[] chain = t.chain(node);
+                int state = 0;
+                for (int i = chain.length - 1; i >= 0 && state < n; i--) {
+                    int segment = t.name[chain[i]];
+                    state = advance(q, state, t.chars, t.offsets[segment], t.offsets[segment + 1], i < chain.length - 1);
+                }
+                if (state == n) {
+                    top.offer(node, scorer.score(node));
+                }
+            }
+
+            List<Result> results = new ArrayList<>();
+            for (int i = 0, count = top.sort(); i < count; i++) {
+                int node = top.nodes[i];
+                results.add(new Result(t.fileOf(node), t.pathOf(node), top.scores[i]));
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Keeps the best limit nodes in a min-heap on score. */
+    private static class TopResults {
+        final int[] nodes;
+        final int[] scores;
+        int size;
+
+        TopResults(int limit) {
+            nodes = new int[limit];
+            scores = new int[limit];
+        }
+
+        void offer(int node, int score) {
+            if (size < nodes.length) {
+                nodes[size] = node;
+                scores[size] = score;
+                siftUp(size++);
+            } else if (score > scores[0]) {
+                nodes[0] = node;
+                scores[0] = score;
+                siftDown(0, size);
+            }
+        }
+
+        /** Sorts the heap in place, best first; returns the count. */
+        int sort() {
+            for (int last = size - 1; last > 0; last--) {
+                swap(0, last);
+                siftDown(0, last);
+            }
+            return size;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0 && less(i, (i - 1) / 2)) {
+                swap(i, (i - 1) / 2);
+                i = (i - 1) / 2;
+            }
+        }
+
+        private void siftDown(int i, int size) {
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && less(left, smallest)) {
+                    smallest = left;
+                }
+                if (right < size && less(right, smallest)) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        /** Lower score, or the later node on a tie, ranks lower. */
+        private boolean less(int a, int b) {
+            return scores[a] != scores[b] ? scores[a] < scores[b] : nodes[a] > nodes[b];
+        }
+
+        private void swap(int a, int b) {
+            int node = nodes[a];
+            nodes[a] = nodes[b];
+            nodes[b] = node;
+            int score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+        }
+    }
+
+    /** Greedily matches the query from state through one segment, after a '/' unless it is a root. */
+    private static int advance(char[] q, int state, char[] chars, int start, int end, boolean separator) {
+        int k = state;
+        if (k == q.length) {
+            return k;
+        }
+        if (separator && q[k] == '/') {
+            k++;
+        }
+        for (int i = start; i < end && k < q.length; i++) {
+            if (chars[i] == q[k]) {
+                k++;
+            }
+        }
+        return k;
+    }
+
+    /**
+     * Ranks matching files. The query after its last '/' is scored against
+     * the file name and the part before it against the best fitting folder
+     * above the file; shallow, short paths win ties. Scores depend only on the
+     * segment, so each segment is scored once per query.
+     */
+    private static class Scorer {
+        final char[] q;
+        final int nameFrom;
+        final int folderFrom;
+        final int folderTo;
+        final Tree tree;
+        final int[] nameScores;
+        final int[] folderScores;
+
+        Scorer(char[] q, Tree tree) {
+            this.q = q;
+            this.tree = tree;
+            int slash = lastIndexOf(q, '/', q.length - 1);
+            nameFrom = slash + 1;
+            folderTo = slash;
+            folderFrom = slash < 0 ? 0 : lastIndexOf(q, '/', slash - 1) + 1;
+            nameScores = new int[tree.segmentCount];
+            Arrays.fill(nameScores, Integer.MIN_VALUE);
+            folderScores = slash < 0 ? null : new int[tree.segmentCount];
+            if (folderScores != null) {
+                Arrays.fill(folderScores, Integer.MIN_VALUE);
+            }
+        }
+
+        int score(int node) {
+            int segment = tree.name[node];
+            int score = nameScores[segment];
+            if (score == Integer.MIN_VALUE) {
+                int start = tree.offsets[segment];
+                int end = tree.offsets[segment + 1];
+                score = segmentScore(q, nameFrom, q.length, tree.chars, start, end, tree.wordStarts[segment]) * 16
+                    - (end - start);
+                nameScores[segment] = score;
+            }
+            if (folderScores != null && folderTo > folderFrom) {
+                int best = 0;
+                for (int n = tree.parent[node]; n >= 0; n = tree.parent[n]) {
+                    int folder = tree.name[n];
+                    if (folderScores[folder] == Integer.MIN_VALUE) {
+                        folderScores[folder] = segmentScore(q, folderFrom, folderTo, tree.chars,
+                            tree.offsets[folder], tree.offsets[folder + 1], tree.wordStarts[folder]);
+                    }
+                    best = Math.max(best, folderScores[folder]);
+                }
+                score += best * 8;
+            }
+            return score - tree.depth[node] * 4;
+        }
+
+        private static int lastIndexOf(char[] chars, char c, int from) {
+            for (int i = from; i >= 0; i--) {
+                if (chars[i] == c) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Matches q[from, to) backwards into a segment as far as it goes: points
+     * per character, more at word starts and in runs, and more again if all of it fits, the segment starts with
+     * it or equals it.
+     */
+    private static int segmentScore(char[] q, int from, int to, char[] chars, int start, int end, long wordStarts) {
+        int score = 0;
+        int k = to - 1;
+        int previous = -2;
+        for (int i = end - 1; i >= start && k >= from; i--) {
+            if (chars[i] == q[k]) {
+                score += 10;
+                if (i - start < 64 && (wordStarts & 1L << (i - start)) != 0) {
+                    score += 10;
+                }
+                if (previous == i + 1) {
+                    score += 6;
+                }
+                previous = i;
+                k--;
+            }
+        }
+        if (k < from) {
+            score += 20;
+            if (startsWith(chars, start, end, q, from, to)) {
+                score += to - from == end - start ? 50 : 15;
+            }
+        }
+        return score;
+    }
+
+    private static boolean startsWith(char[] chars, int start, int end, char[] q, int from, int to) {
+        if (to - from > end - start) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            if (chars[start + i - from] != q[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static char[] fold(String query) {
+        StringBuilder folded = new StringBuilder(query.length());
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (c == '\\') {
+                folded.append('/');
+            } else if (!Character.isWhitespace(c)) {
+                folded.append(Character.toLowerCase(c));
+            }
+        }
+        return folded.toString().toCharArray();
+    }
+
+    /** Letters and digits get a bit each, other characters share the rest; '/' needs none. */
+    private static long bit(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return 1L << (c - 'a');
+        }
+        if (c >= '0' && c <= '9') {
+            return 1L << (26 + c - '0');
+        }
+        if (c == '/') {
+            return 0;
+        }
+        return 1L << (36 + c % 28);
+    }
+
+    /** Adds the files and folders below directory under node, in depth-first order. */
+    private static void scan(Path directory, Tree target, int node, Consumer<Path> directoryAdded) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        Deque<Integer> parents = new ArrayDeque<>();
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (dir.equals(directory)) {
+                    parents.push(node);
+                    return FileVisitResult.CONTINUE;
+                }
+                String name = dir.getFileName().toString();
+                if (name.startsWith(".")) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                parents.push(target.add(parents.peek(), name, true));
+                if (directoryAdded != null) {
+                    directoryAdded.accept(dir);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    target.add(parents.peek(), file.getFileName().toString(), false);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                parents.pop();
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /** Lays the tree out depth first again once appended or dead nodes pile up. Caller holds the write lock. */
+    private void compactIfNeeded() {
+        int appended = tree.count - tree.ordered;
+        if (appended <= Math.max(1024, tree.ordered / 8) && tree.deadCount <= Math.max(1024, tree.ordered / 8)) {
+            return;
+        }
+        tree = compact(tree);
+    }
+
+    private static Tree compact(Tree old) {
+        // appended children, linked per parent
+        int[] firstAppended = new int[old.count];
+        int[] nextAppended = new int[old.count];
+        Arrays.fill(firstAppended, -1);
+        for (int node = old.count - 1; node >= old.ordered; node--) {
+            int p = old.parent[node];
+            if (p >= 0) {
+                nextAppended[node] = firstAppended[p];
+                firstAppended[p] = node;
+            }
+        }
+
+        Tree fresh = new Tree();
+        fresh.roots.addAll(old.roots);
+        Deque<int[]> stack = new ArrayDeque<>();
+        for (int r = old.rootNodes.length - 1; r >= 0; r--) {
+            stack.push(new int[] {old.rootNodes[r], -1});
+        }
+        while (!stack.isEmpty()) {
+            int[] entry = stack.pop();
+            int node = entry[0];
+            if (old.dead.get(node) && entry[1] >= 0) {
+                continue;
+            }
+            int copy = fresh.add(entry[1], old.names[old.name[node]], old.directory.get(node));
+            if (old.dead.get(node)) {
+                // a root that was deleted; kept so roots and root nodes stay paired
+                continue;
+            }
+
+            // pushed in reverse so they come out in their current order
+            List<Integer> children = new ArrayList<>();
+            if (node < old.ordered) {
+                for (int child = node + 1; child < old.end[node]; child = old.end[child]) {
+                    children.add(child);
+                }
+            }
+            for (int child = firstAppended[node]; child >= 0; child = nextAppended[child]) {
+                children.add(child);
+            }
+            for (int i = children.size() - 1; i >= 0; i--) {
+                stack.push(new int[] {children.get(i), copy});
+            }
+        }
+        fresh.finish();
+        return fresh;
+    }
+
+    /** Writes the index to its storage file, replacing the old one only once complete. */
+    public void save() throws IOException {
+        Path target = storage.toPath().toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), "." + target.getFileName(), ".tmp");
+
+        try {
+            lock.writeLock().lock();
+            try {
+                if (tree.count > tree.ordered || tree.deadCount > 0) {
+                    tree = compact(tree);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            lock.readLock().lock();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(temp), 1 << 16))) {
+                write(out, tree);
+            } finally {
+                lock.readLock().unlock();
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /*
+     * Format: magic, version, root count and root paths, segment count and
+     * segments, node count, then per node in depth-first order the distance
+     * back to its parent (0 for a root) and its segment id shifted left once
+     * with the low bit set for folders.
+     */
+    private static void write(DataOutputStream out, Tree tree) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(tree.roots.size());
+        for (File root : tree.roots) {
+            out.writeUTF(root.getPath());
+        }
+        out.writeInt(tree.segmentCount);
+        for (int segment = 0; segment < tree.segmentCount; segment++) {
+            out.writeUTF(tree.names[segment]);
+        }
+        out.writeInt(tree.count);
+        for (int node = 0; node < tree.count; node++) {
+            writeVarint(out, tree.parent[node] < 0 ? 0 : node - tree.parent[node]);
+            writeVarint(out, tree.name[node] << 1 | (tree.directory.get(node) ? 1 : 0));
+        }
+    }
+
+    private static Tree read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Not a path index");
+        }
+        Tree tree = new Tree();
+        int roots = in.readInt();
+        for (int r = 0; r < roots; r++) {
+            tree.roots.add(new File(in.readUTF()));
+        }
+        int segments = in.readInt();
+        for (int segment = 0; segment < segments; segment++) {
+            tree.intern(in.readUTF());
+        }
+        if (tree.segmentCount != segments) {
+            throw new IOException("Duplicate segments in path index");
+        }
+
+        int nodes = in.readInt();
+        for (int node = 0; node < nodes; node++) {
+            int back = readVarint(in);
+            int value = readVarint(in);
+            if (back > node || value >>> 1 >= segments) {
+                throw new IOException("Malformed path index");
+            }
+            int p = back == 0 ? -1 : node - back;
+            tree.add(p, tree.names[value >>> 1], (value & 1) != 0);
+        }
+        tree.finish();
+        if (tree.rootNodes.length != roots) {
+            throw new IOException("Malformed path index");
+        }
+        return tree;
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
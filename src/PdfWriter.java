@@ -0,0 +1,470 @@
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+import javax.swing.text.Segment;
+import javax.swing.table.TableModel;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * Minimal streaming PDF 1.4 writer for monospaced text. Lines are laid out
+ * in Courier; each page's content stream is deflated and written as soon as
+ * the page is full, and object offsets are recorded as objects are written,
+ * so memory use does not depend on document length. The page tree is
+ * written last, once the page count is known.
+ */
+public class PdfWriter implements Closeable {
+    private static final int CATALOG = 1;
+    private static final int PAGES = 2;
+    private static final int FONT = 3;
+
+    private static final float FONT_SIZE = 9f;
+    private static final float LEADING = 11f;
+    private static final float MARGIN = 40f;
+    private static final float CHAR_WIDTH = FONT_SIZE * 0.6f;
+    private static final float A4_SHORT = 595f;
+    private static final float A4_LONG = 842f;
+
+    private static final int TABLE_SAMPLE_ROWS = 200;
+    private static final int MAX_COLUMN_WIDTH = 40;
+
+    private final CountingOutputStream out;
+    private final String title;
+    private final float pageWidth;
+    private final float pageHeight;
+    private final int columns;
+    private final int linesPerPage;
+    private final CharsetEncoder encoder = Charset.forName("windows-1252").newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private long[] offsets = new long[64];
+    private int nextObject = FONT + 1;
+    private int pageCount;
+
+    private ByteArrayOutputStream content;
+    private int pageLines;
+    private String[] repeatedHeader;
+
+    public PdfWriter(File file, String title, boolean landscape) throws IOException {
+        this.out = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        this.title = title;
+        this.pageWidth = landscape ? A4_LONG : A4_SHORT;
+        this.pageHeight = landscape ? A4_SHORT : A4_LONG;
+        this.columns = (int) ((pageWidth - 2 * MARGIN) / CHAR_WIDTH);
+        // two lines are kept free for the page footer
+        this.linesPerPage = (int) ((pageHeight - 2 * MARGIN) / LEADING) - 2;
+
+        // the binary comment marks the file as binary for transfer tools
+        writeAscii("%PDF-1.4\n%\u00e2\u00e3\u00cf\u00d3\n");
+        beginObject(FONT);
+        writeAscii("<< /Type /Font /Subtype /Type1 /BaseFont /Courier /Encoding /WinAnsiEncoding >>\nendobj\n");
+    }
+
+    /** Number of characters that fit on one line. */
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getPageCount() {
+        return pageCount + (content != null ? 1 : 0);
+    }
+
+    /** Adds one line of text, wrapping it at the page width. */
+    public void println(String line) throws IOException {
+        String text = line.replace("\t", "    ");
+        int start = 0;
+        do {
+            int end = Math.min(text.length(), start + columns);
+            writeLine(text.substring(start, end));
+            start = end;
+        } while (start < text.length());
+    }
+
+    /** Lines that are repeated at the top of every following page, e.g. a table header. */
+    public void setRepeatedHeader(String... lines) throws IOException {
+        repeatedHeader = lines;
+        if (content != null && pageLines == 0) {
+            for (String header : lines) {
+                writeLine(header);
+            }
+        }
+    }
+
+    private void writeLine(String line) throws IOException {
+        if (content == null) {
+            startPage();
+        } else if (pageLines >= linesPerPage) {
+            finishPage();
+            startPage();
+        }
+
+        content.write('(');
+        byte[] encoded = encode(line);
+        for (byte b : encoded) {
+            if (b == '(' || b == ')' || b == '\\') {
+                content.write('\\');
+            }
+            content.write(b);
+        }
+        content.write(") Tj T*\n".getBytes(StandardCharsets.US_ASCII));
+        pageLines++;
+    }
+
+    private void startPage() throws IOException {
+        content = new ByteArrayOutputStream(8192);
+        pageLines = 0;
+        String begin = String.format(Locale.ROOT, "BT /F1 %.1f Tf %.1f TL %.1f %.1f Td\n",
+            FONT_SIZE, LEADING, MARGIN, pageHeight - MARGIN - FONT_SIZE);
+        content.write(begin.getBytes(StandardCharsets.US_ASCII));
+
+        if (repeatedHeader != null) {
+            for (String header : repeatedHeader) {
+                writeLine(header);
+            }
+        }
+    }
+
+    private void finishPage() throws IOException {
+        content.write("ET\n".getBytes(StandardCharsets.US_ASCII));
+
+        String footer = (title != null ? title + " - " : "") + "Page " + (pageCount + 1);
+        if (footer.length() > columns) {
+            footer = footer.substring(footer.length() - columns);
+        }
+        ByteArrayOutputStream footerStream = new ByteArrayOutputStream();
+        footerStream.write(String.format(Locale.ROOT, "BT /F1 %.1f Tf %.1f %.1f Td (", FONT_SIZE, MARGIN, MARGIN / 2)
+            .getBytes(StandardCharsets.US_ASCII));
+        for (byte b : encode(footer)) {
+            if (b == '(' || b == ')' || b == '\\') {
+                footerStream.write('\\');
+            }
+            footerStream.write(b);
+        }
+        footerStream.write(") Tj ET\n".getBytes(StandardCharsets.US_ASCII));
+        footerStream.writeTo(content);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.size() / 3 + 64);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DeflaterOutputStream deflate = new DeflaterOutputStream(compressed, deflater)) {
+            content.writeTo(deflate);
+        } finally {
+            deflater.end();
+        }
+
+        int contentObject = nextObject++;
+        beginObject(contentObject);
+        writeAscii("<< /Length " + compressed.size() + " /Filter /FlateDecode >>\nstream\n");
+        compressed.writeTo(out);
+        writeAscii("\nendstream\nendobj\n");
+
+        int pageObject = nextObject++;
+        assert pageObject == pageObject(pageCount);
+        beginObject(pageObject);
+        writeAscii(String.format(Locale.ROOT, "<< /Type /Page /Parent %d 0 R /MediaBox [0 0 %.0f %.0f] "
+                + "/Resources << /Font << /F1 %d 0 R >> >> /Contents %d 0 R >>\nendobj\n",
+            PAGES, pageWidth, pageHeight, FONT, contentObject));
+        pageCount++;
+
+        content = null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (content == null && pageCount == 0) {
+                startPage();
+            }
+            if (content != null) {
+                finishPage();
+            }
+
+            // content and page objects alternate after the font, so the kids need no list
+            beginObject(PAGES);
+            writeAscii("<< /Type /Pages /Kids [");
+            for (int i = 0; i < pageCount; i++) {
+                writeAscii(pageObject(i) + " 0 R ");
+            }
+            writeAscii("] /Count " + pageCount + " >>\nendobj\n");
+
+            beginObject(CATALOG);
+            writeAscii("<< /Type /Catalog /Pages " + PAGES + " 0 R >>\nendobj\n");
+
+            long xref = out.count;
+            writeAscii("xref\n0 " + nextObject + "\n0000000000 65535 f \n");
+            for (int i = 1; i < nextObject; i++) {
+                writeAscii(String.format(Locale.ROOT, "%010d 00000 n \n", offsets[i]));
+            }
+            writeAscii("trailer\n<< /Size " + nextObject + " /Root " + CATALOG + " 0 R >>\n"
+                + "startxref\n" + xref + "\n%%EOF\n");
+        } finally {
+            out.close();
+        }
+    }
+
+    private static int pageObject(int page) {
+        return FONT + 2 + 2 * page;
+    }
+
+    private void beginObject(int number) throws IOException {
+        if (number >= offsets.length) {
+            offsets = Arrays.copyOf(offsets, Math.max(offsets.length * 2, number + 1));
+        }
+        offsets[number] = out.count;
+        writeAscii(number + " 0 obj\n");
+    }
+
+    private void writeAscii(String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private byte[] encode(String text) throws IOException {
+        ByteBuffer bytes = encoder.reset().encode(CharBuffer.wrap(text));
+        byte[] result = new byte[bytes.remaining()];
+        bytes.get(result);
+        return result;
+    }
+
+    /** Writes a text Document line by line, without copying it into one String. */
+    public static int writeDocument(Document document, File file, String title) throws IOException {
+        int[] lines = {0};
+        IOException[] failure = new IOException[1];
+
+        try (PdfWriter writer = new PdfWriter(file, title, false)) {
+            Runnable walk = () -> {
+                try {
+                    Element root = document.getDefaultRootElement();
+                    Segment segment = new Segment();
+                    for (int i = 0; i < root.getElementCount(); i++) {
+                        Element line = root.getElement(i);
+                        int end = Math.min(line.getEndOffset(), document.getLength());
+                        document.getText(line.getStartOffset(), end - line.getStartOffset(), segment);
+                        int count = segment.count;
+                        if (count > 0 && segment.array[segment.offset + count - 1] == '\n') {
+                            count--;
+                        }
+                        writer.println(new String(segment.array, segment.offset, count));
+                        lines[0]++;
+                    }
+                } catch (IOException e) {
+                    failure[0] = e;
+                } catch (BadLocationException e) {
+                    failure[0] = new IOException(e);
+                }
+            };
+
+            if (document instanceof AbstractDocument) {
+                document.render(walk);
+            } else {
+                walk.run();
+            }
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+        return lines[0];
+    }
+
+    /**
+     * Writes rows as a fixed-width table. Column widths come from the header
+     * and the first rows; wider values are cut off. The header is repeated
+     * on every page, and wide tables switch to landscape.
+     */
+    public static long writeTable(String[] columnNames, Iterator<Object[]> rows, File file, String title)
+            throws IOException {
+        List<Object[]> sample = new ArrayList<>();
+        while (sample.size() < TABLE_SAMPLE_ROWS && rows.hasNext()) {
+            sample.add(rows.next().clone());
+        }
+
+        int[] widths = new int[columnNames.length];
+        for (int c = 0; c < columnNames.length; c++) {
+            widths[c] = Math.min(MAX_COLUMN_WIDTH, Math.max(1, columnNames[c].length()));
+            for (Object[] row : sample) {
+                widths[c] = Math.min(MAX_COLUMN_WIDTH, Math.max(widths[c], format(row[c]).length()));
+            }
+        }
+
+        int totalWidth = columnNames.length - 1;
+        for (int width : widths) {
+            totalWidth += width;
+        }
+        boolean landscape = totalWidth > (int) ((A4_SHORT - 2 * MARGIN) / CHAR_WIDTH);
+
+        long count = 0;
+        try (PdfWriter writer = new PdfWriter(file, title, landscape)) {
+            String header = formatRow(columnNames, widths);
+            char[] rule = new char[Math.min(header.length(), writer.getColumns())];
+            Arrays.fill(rule, '-');
+            writer.setRepeatedHeader(header, new String(rule));
+
+            for (Object[] row : sample) {
+                writer.writeTableRow(formatRow(row, widths));
+                count++;
+            }
+            while (rows.hasNext()) {
+                writer.writeTableRow(formatRow(rows.next(), widths));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public static long writeTable(TableModel model, File file, String title) throws IOException {
+        String[] names = new String[model.getColumnCount()];
+        for (int c = 0; c < names.length; c++) {
+            names[c] = model.getColumnName(c);
+        }
+
+        Iterator<Object[]> rows = new Iterator<Object[]>() {
+            private final Object[] row = new Object[names.length];
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < model.getRowCount();
+            }
+
+            @Override
+            public Object[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                for (int c = 0; c < row.length; c++) {
+                    row[c] = model.getValueAt(next, c);
+                }
+                next++;
+                return row;
+            }
+        };
+        return writeTable(names, rows, file, title);
+    }
+
+    /** Streams a result set into a table; only the sampled rows are held in memory. */
+    public static long writeTable(ResultSet rs, File file, String title) throws IOException, SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        String[] names = new String[meta.getColumnCount()];
+        for (int c = 0; c < names.length; c++) {
+            names[c] = meta.getColumnName(c + 1);
+        }
+
+        Iterator<Object[]> rows = new Iterator<Object[]>() {
+            private final Object[] row = new Object[names.length];
+            private Boolean hasNext;
+
+            @Override
+            public boolean hasNext() {
+                if (hasNext == null) {
+                    try {
+                        hasNext = rs.next();
+                    } catch (SQLException e) {
+                        throw new ResultSetFailure(e);
+                    }
+                }
+                return hasNext;
+            }
+
+            @Override
+            public Object[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                hasNext = null;
+                try {
+                    for (int c = 0; c < row.length; c++) {
+                        row[c] = rs.getObject(c + 1);
+                    }
+                } catch (SQLException e) {
+                    throw new ResultSetFailure(e);
+                }
+                return row;
+            }
+        };
+
+        try {
+            return writeTable(names, rows, file, title);
+        } catch (ResultSetFailure e) {
+            throw e.cause;
+        }
+    }
+
+    /** Carries an SQLException out of the row iterator. */
+    private static class ResultSetFailure extends RuntimeException {
+        final SQLException cause;
+
+        ResultSetFailure(SQLException cause) {
+            super(cause);
+            this.cause = cause;
+        }
+    }
+
+    /** Table rows are clipped rather than wrapped so columns stay aligned. */
+    private void writeTableRow(String row) throws IOException {
+        writeLine(row.length() > columns ? row.substring(0, columns) : row);
+    }
+
+    private static String formatRow(Object[] values, int[] widths) {
+        StringBuilder sb = new StringBuilder();
+        for (int c = 0; c < widths.length; c++) {
+            if (c > 0) {
+                sb.append(' ');
+            }
+            String value = format(c < values.length ? values[c] : null);
+            if (value.length() > widths[c]) {
+                value = value.substring(0, widths[c] - 1) + "~";
+            }
+            sb.append(value);
+            for (int pad = value.length(); pad < widths[c]; pad++) {
+                sb.append(' ');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String format(Object value) {
+        if (value == null) {
+            return "NULL";
+        }
+        if (value instanceof byte[]) {
+            return "<" + ((byte[]) value).length + " bytes>";
+        }
+        return value.toString().replace('\n', ' ').replace('\r', ' ').replace('\t', ' ');
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
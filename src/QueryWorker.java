@@ -0,0 +1,206 @@
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.lang.reflect.InvocationTargetException;
+import java.sql.*;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Runs one SQL statement off the event dispatch thread. Result rows are
+ * streamed into a DefaultTableModel in chunks while the query is still
+ * running; cancelQuery() interrupts the statement inside SQLite.
+ */
+public class QueryWorker extends SwingWorker<Integer, Vector<Object>> {
+    private static final ScheduledExecutorService TIMEOUTS = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "query-timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Pattern RETURNING = Pattern.compile("\\bRETURNING\\b", Pattern.CASE_INSENSITIVE);
+
+    private final DatabaseManager dbManager;
+    private final String sql;
+    private final DefaultTableModel model;
+    private final int timeoutSeconds;
+    private final int maxRows;
+
+    private volatile Statement statement;
+    private volatile boolean returnedRows;
+    private volatile boolean truncated;
+    private volatile boolean timedOut;
+    private volatile int rowCount;
+
+    public QueryWorker(DatabaseManager dbManager, String sql, DefaultTableModel model,
+                       int timeoutSeconds, int maxRows) {
+        this.dbManager = dbManager;
+        this.sql = sql;
+        this.model = model;
+        this.timeoutSeconds = timeoutSeconds;
+        this.maxRows = maxRows;
+    }
+
+    public boolean isReadOnlyQuery() {
+        String head = sql.trim().toUpperCase();
+        return head.startsWith("SELECT") || head.startsWith("EXPLAIN") || head.startsWith("VALUES");
+    }
+
+    private boolean isCommonTableExpression() {
+        return sql.trim().toUpperCase().startsWith("WITH");
+    }
+
+    /**
+     * WITH ... INSERT/UPDATE/DELETE is valid SQLite, so a WITH statement only
+     * counts as a query when preparing it yields result columns. RETURNING
+     * also yields columns but writes, so it goes to the writer as well.
+     */
+    private boolean producesRowsOnly(Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int columns;
+            try {
+                columns = stmt.getMetaData().getColumnCount();
+            } catch (SQLException e) {
+                // sqlite-jdbc reports a statement without result columns as "column 1 out of bounds".
+                columns = 0;
+            }
+            return columns > 0 && !RETURNING.matcher(sql).find();
+        }
+    }
+
+    public boolean returnedRows() {
+        return returnedRows;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    protected Integer doInBackground() throws Exception {
+        if (isReadOnlyQuery() || isCommonTableExpression()) {
+            Connection reader = dbManager.borrowReadConnection();
+            try {
+                if (isReadOnlyQuery() || producesRowsOnly(reader)) {
+                    return run(reader);
+                }
+            } finally {
+                dbManager.releaseReadConnection(reader);
+            }
+        }
+
+        Connection writer = dbManager.getConnection();
+        synchronized (writer) {
+            return run(writer);
+        }
+    }
+
+    private Integer run(Connection connection) throws SQLException, InterruptedException {
+        ScheduledFuture<?> timeout = null;
+
+        try (Statement stmt = connection.createStatement()) {
+            statement = stmt;
+            stmt.setFetchSize(500);
+
+            // The driver's own query timeout only covers lock waits, so long
+            // running statements are interrupted from a timer instead.
+            if (timeoutSeconds > 0) {
+                timeout = TIMEOUTS.schedule(() -> {
+                    timedOut = true;
+                    cancelStatement();
+                }, timeoutSeconds, TimeUnit.SECONDS);
+            }
+
+            if (isCancelled()) {
+                return 0;
+            }
+
+            if (!stmt.execute(sql)) {
+                return stmt.getUpdateCount();
+            }
+
+            returnedRows = true;
+            try (ResultSet rs = stmt.getResultSet()) {
+                ResultSetMetaData metaData = rs.getMetaData();
+                int columnCount = metaData.getColumnCount();
+                Vector<Object> columns = new Vector<>(columnCount);
+                for (int i = 1; i <= columnCount; i++) {
+                    columns.add(metaData.getColumnName(i));
+                }
+
+                try {
+                    SwingUtilities.invokeAndWait(() -> model.setDataVector(new Vector<>(), columns));
+                } catch (InvocationTargetException e) {
+                    throw new SQLException(e.getCause());
+                }
+
+                while (!isCancelled() && rs.next()) {
+                    if (rowCount >= maxRows) {
+                        truncated = true;
+                        break;
+                    }
+
+                    Vector<Object> row = new Vector<>(columnCount);
+                    for (int i = 1; i <= columnCount; i++) {
+                        row.add(rs.getObject(i));
+                    }
+                    publish(row);
+                    rowCount++;
+                }
+            }
+            return rowCount;
+        } catch (SQLException e) {
+            if (timedOut) {
+                throw new SQLException("Query timed out after " + timeoutSeconds + "s", e);
+            }
+            throw e;
+        } finally {
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            statement = null;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void process(List<Vector<Object>> rows) {
+        if (rows.isEmpty() || isCancelled()) {
+            return;
+        }
+
+        Vector<Vector<Object>> data = (Vector<Vector<Object>>) (Vector<?>) model.getDataVector();
+        int first = data.size();
+        data.addAll(rows);
+        model.fireTableRowsInserted(first, data.size() - 1);
+    }
+
+    /** Cancels the worker and interrupts the running statement, if any. */
+    public void cancelQuery() {
+        cancelStatement();
+        cancel(false);
+    }
+
+    private void cancelStatement() {
+        Statement stmt = statement;
+        if (stmt != null) {
+            try {
+                stmt.cancel();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,339 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Ctrl+P style quick open over a PathIndex of the workspace folders. The
+ * saved index is loaded at startup so it answers right away, then rescanned
+ * in the background; afterwards its own FileMonitor keeps it current.
+ */
+public class QuickOpenDialog extends JDialog {
+    private static final int MAX_RESULTS = 50;
+    /** Folders watched for the index, shallowest first; deeper ones are picked up by the next scan. */
+    private static final int MAX_WATCHED_FOLDERS = 4096;
+
+    private final Consumer<File> opener;
+    private final Consumer<String> logger;
+
+    private final JTextField queryField = new JTextField(40);
+    private final DefaultListModel<PathIndex.Result> resultModel = new DefaultListModel<>();
+    private final JList<PathIndex.Result> resultList = new JList<>(resultModel);
+    private final JLabel statusLabel = new JLabel("Loading index...");
+    private final Timer saveTimer;
+
+    private volatile PathIndex index;
+    private List<File> roots = new ArrayList<>();
+    private FileMonitor monitor;
+    private SwingWorker<?, ?> updating;
+    private boolean updateAgain;
+    private boolean unsaved;
+    private SwingWorker<List<PathIndex.Result>, Void> searching;
+
+    public QuickOpenDialog(Frame owner, Consumer<File> opener, Consumer<String> logger) {
+        super(owner, "Quick Open", false);
+        this.opener = opener;
+        this.logger = logger;
+
+        JPanel queryPanel = new JPanel(new BorderLayout());
+        queryPanel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+        queryPanel.add(queryField, BorderLayout.CENTER);
+
+        resultList.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        resultList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        resultList.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+                PathIndex.Result result = (PathIndex.Result) value;
+                setToolTipText(result.file.getAbsolutePath());
+                return this;
+            }
+        });
+        resultList.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    openSelected();
+                }
+            }
+        });
+
+        statusLabel.setBorder(BorderFactory.createEmptyBorder(2, 6, 2, 6));
+
+        setLayout(new BorderLayout());
+        add(queryPanel, BorderLayout.NORTH);
+        add(new JScrollPane(resultList), BorderLayout.CENTER);
+        add(statusLabel, BorderLayout.SOUTH);
+
+        queryField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            public void insertUpdate(javax.swing.event.DocumentEvent e) {
+                search();
+            }
+
+            public void removeUpdate(javax.swing.event.DocumentEvent e) {
+                search();
+            }
+
+            public void changedUpdate(javax.swing.event.DocumentEvent e) {
+                search();
+            }
+        });
+        queryField.addActionListener(e -> openSelected());
+        queryField.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_DOWN, 0), "next");
+        queryField.getActionMap().put("next", new AbstractAction() {
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent e) {
+                moveSelection(1);
+            }
+        });
+        queryField.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_UP, 0), "previous");
+        queryField.getActionMap().put("previous", new AbstractAction() {
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent e) {
+                moveSelection(-1);
+            }
+        });
+        getRootPane().registerKeyboardAction(e -> setVisible(false), KeyStroke.getKeyStroke("ESCAPE"),
+            JComponent.WHEN_IN_FOCUSED_WINDOW);
+
+        saveTimer = new Timer(30_000, e -> saveIndex());
+        saveTimer.setRepeats(false);
+
+        setSize(600, 400);
+        setLocationRelativeTo(owner);
+        loadIndex();
+    }
+
+    /** Shows the dialog with the query selected so typing replaces it. */
+    public void open() {
+        setVisible(true);
+        queryField.selectAll();
+        queryField.requestFocusInWindow();
+    }
+
+    /** Sets the folders to index and rescans them in the background. */
+    public void setRoots(List<File> roots) {
+        this.roots = new ArrayList<>(roots);
+        updateIndex();
+    }
+
+    /** Stops watching and saves changes not yet written. */
+    public void close() {
+        saveTimer.stop();
+        if (monitor != null) {
+            monitor.close();
+        }
+        PathIndex target = index;
+        if (target != null && unsaved) {
+            try {
+                target.save();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void loadIndex() {
+        new SwingWorker<PathIndex, Void>() {
+            @Override
+            protected PathIndex doInBackground() throws IOException {
+                return PathIndex.load(AppPaths.resolve(PathIndex.FILE_NAME));
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    index = get();
+                    statusLabel.setText(String.format("%,d files", index.getFileCount()));
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    statusLabel.setText("ERROR: Cannot open the quick open index - " + cause.getMessage());
+                    return;
+                }
+                search();
+                if (!roots.isEmpty()) {
+                    updateIndex();
+                }
+            }
+        }.execute();
+    }
+
+    private void updateIndex() {
+        if (index == null) {
+            return;
+        }
+        if (updating != null) {
+            updateAgain = true;
+            return;
+        }
+
+        PathIndex target = index;
+        List<File> folders = roots;
+        long started = System.currentTimeMillis();
+        updating = new SwingWorker<FileMonitor, Void>() {
+            @Override
+            protected FileMonitor doInBackground() throws IOException {
+                target.update(folders);
+                target.save();
+                FileMonitor fresh = new FileMonitor(QuickOpenDialog.this::pathsChanged);
+                for (Path folder : target.getDirectories(MAX_WATCHED_FOLDERS)) {
+                    fresh.register(folder);
+                }
+                return fresh;
+            }
+
+            @Override
+            protected void done() {
+                updating = null;
+                unsaved = false;
+                try {
+                    FileMonitor fresh = get();
+                    if (monitor != null) {
+                        monitor.close();
+                    }
+                    monitor = fresh;
+                    statusLabel.setText(String.format("%,d files", target.getFileCount()));
+                    logger.accept(String.format("Quick open index updated: %,d files in %d ms",
+                        target.getFileCount(), System.currentTimeMillis() - started));
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    statusLabel.setText("ERROR: Indexing failed - " + cause.getMessage());
+                }
+                if (updateAgain) {
+                    updateAgain = false;
+                    updateIndex();
+                } else {
+                    search();
+                }
+            }
+        };
+        updating.execute();
+    }
+
+    /** Applies a batch of events from the index's own monitor; new folders are watched too. */
+    private void pathsChanged(Set<Path> changed, Set<Path> overflowed) {
+        PathIndex target = index;
+        FileMonitor watcher = monitor;
+        if (target == null || watcher == null) {
+            return;
+        }
+        if (updating != null) {
+            updateAgain = true;
+            return;
+        }
+
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() {
+                for (Path folder : overflowed) {
+                    target.refresh(folder, watcher::register);
+                }
+                for (Path path : changed) {
+                    target.updatePath(path, watcher::register);
+                }
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                unsaved = true;
+                saveTimer.restart();
+                statusLabel.setText(String.format("%,d files", target.getFileCount()));
+                if (isVisible()) {
+                    search();
+                }
+            }
+        }.execute();
+    }
+
+    private void saveIndex() {
+        PathIndex target = index;
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws IOException {
+                target.save();
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    get();
+                    unsaved = false;
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    logger.accept("ERROR: Failed to save the quick open index - " + cause.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    /** Runs the query off the EDT; results of a query that was typed over are dropped. */
+    private void search() {
+        String query = queryField.getText();
+        PathIndex target = index;
+        if (query.trim().isEmpty() || target == null) {
+            searching = null;
+            resultModel.clear();
+            return;
+        }
+
+        long started = System.nanoTime();
+        SwingWorker<List<PathIndex.Result>, Void> worker = new SwingWorker<List<PathIndex.Result>, Void>() {
+            @Override
+            protected List<PathIndex.Result> doInBackground() {
+                return target.search(query, MAX_RESULTS);
+            }
+
+            @Override
+            protected void done() {
+                if (searching != this) {
+                    return;
+                }
+                searching = null;
+                try {
+                    List<PathIndex.Result> results = get();
+                    resultModel.clear();
+                    resultModel.addAll(results);
+                    if (!results.isEmpty()) {
+                        resultList.setSelectedIndex(0);
+                    }
+                    statusLabel.setText(String.format("%d of %,d files (%.1f ms)", results.size(),
+                        target.getFileCount(), (System.nanoTime() - started) / 1e6));
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    statusLabel.setText("ERROR: Search failed - " + cause.getMessage());
+                }
+            }
+        };
+        searching = worker;
+        worker.execute();
+    }
+
+    private void moveSelection(int step) {
+        if (resultModel.isEmpty()) {
+            return;
+        }
+        int index = Math.max(0, Math.min(resultModel.size() - 1, resultList.getSelectedIndex() + step));
+        resultList.setSelectedIndex(index);
+        resultList.ensureIndexIsVisible(index);
+    }
+
+    private void openSelected() {
+        PathIndex.Result result = resultList.getSelectedValue();
+        if (result != null) {
+            setVisible(false);
+            opener.accept(result.file);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+import java.sql.*;
+import java.util.*;
+
+/**
+ * In-memory copy of a database's schema: tables and their columns. The
+ * catalog is rebuilt only when SQLite's PRAGMA schema_version changes or a
+ * DDL statement is run through DatabaseManager.executeUpdate; table
+ * details are loaded on first use. A valid cache is checked against
+ * schema_version only when a read connection is free, so lookups still
+ * answer while every reader is busy.
+ */
+public class SchemaCatalog {
+    private final DatabaseManager dbManager;
+
+    private List<String> tableNames;
+    private final Map<String, TableInfo> tables = new HashMap<>();
+    private final Map<String, String> tableSql = new HashMap<>();
+    private int schemaVersion = -1;
+    private boolean invalid = true;
+
+    public SchemaCatalog(DatabaseManager dbManager) {
+        this.dbManager = dbManager;
+    }
+
+    public static class ColumnInfo {
+        private final String name;
+        private final String type;
+        private final boolean notNull;
+        private final boolean primaryKey;
+
+        ColumnInfo(String name, String type, boolean notNull, boolean primaryKey) {
+            this.name = name;
+            this.type = type;
+            this.notNull = notNull;
+            this.primaryKey = primaryKey;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public boolean isNotNull() {
+            return notNull;
+        }
+
+        public boolean isPrimaryKey() {
+            return primaryKey;
+        }
+    }
+
+    public static class TableInfo {
+        private final String name;
+        private final List<ColumnInfo> columns;
+        private final boolean withoutRowId;
+
+        TableInfo(String name, List<ColumnInfo> columns, boolean withoutRowId) {
+            this.name = name;
+            this.columns = Collections.unmodifiableList(columns);
+            this.withoutRowId = withoutRowId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<ColumnInfo> getColumns() {
+            return columns;
+        }
+
+        public List<String> getColumnNames() {
+            List<String> names = new ArrayList<>(columns.size());
+            for (ColumnInfo column : columns) {
+                names.add(column.getName());
+            }
+            return names;
+        }
+
+        public boolean isWithoutRowId() {
+            return withoutRowId;
+        }
+    }
+
+    public synchronized void invalidate() {
+        invalid = true;
+    }
+
+    // The connection is borrowed before taking the lock, so a thread waiting
+    // for one never holds up the EDT on the catalog's monitor.
+    public List<String> getTableNames() throws SQLException {
+        Connection reader = borrowForRefresh();
+        try {
+            synchronized (this) {
+                refresh(reader);
+                return tableNames;
+            }
+        } finally {
+            dbManager.releaseReadConnection(reader);
+        }
+    }
+
+    public TableInfo getTable(String name) throws SQLException {
+        Connection reader = borrowForRefresh();
+        try {
+            synchronized (this) {
+                refresh(reader);
+                if (!tableSql.containsKey(name)) {
+                    return null;
+                }
+                if (tables.containsKey(name) || reader != null) {
+                    return loadedTable(reader, name);
+                }
+            }
+
+            // cached names, but this table's details have not been read yet
+            reader = dbManager.borrowReadConnection();
+            synchronized (this) {
+                refresh(reader);
+                return tableSql.containsKey(name) ? loadedTable(reader, name) : null;
+            }
+        } finally {
+            dbManager.releaseReadConnection(reader);
+        }
+    }
+
+    private TableInfo loadedTable(Connection reader, String name) throws SQLException {
+        TableInfo info = tables.get(name);
+        if (info == null) {
+            info = loadTable(reader, name);
+            tables.put(name, info);
+        }
+        return info;
+    }
+
+    /**
+     * A connection to refresh with: waits for one if the cache is invalid,
+     * otherwise takes one only if it is free, and returns null if not.
+     */
+    private Connection borrowForRefresh() throws SQLException {
+        boolean cached;
+        synchronized (this) {
+            cached = !invalid && tableNames != null;
+        }
+        return cached ? dbManager.tryBorrowReadConnection() : dbManager.borrowReadConnection();
+    }
+
+    private void refresh(Connection reader) throws SQLException {
+        if (reader == null) {
+            // no free reader to check schema_version with; the cache was valid a moment ago
+            return;
+        }
+        int version;
+        try (Statement stmt = reader.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA schema_version")) {
+            version = rs.next() ? rs.getInt(1) : -1;
+        }
+
+        if (!invalid && version == schemaVersion) {
+            return;
+        }
+
+        List<String> names = new ArrayList<>();
+        tableSql.clear();
+        tables.clear();
+
+        try (Statement stmt = reader.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT name, sql FROM sqlite_master "
+                 + "WHERE type = 'table' AND name NOT LIKE 'sqlite\\_%' ESCAPE '\\' ORDER BY name")) {
+            while (rs.next()) {
+                names.add(rs.getString(1));
+                tableSql.put(rs.getString(1), rs.getString(2));
+            }
+        }
+
+        tableNames = Collections.unmodifiableList(names);
+        schemaVersion = version;
+        invalid = false;
+    }
+
+    private TableInfo loadTable(Connection reader, String name) throws SQLException {
+        String quoted = DatabaseManager.quoteIdentifier(name);
+        List<ColumnInfo> columns = new ArrayList<>();
+
+        // table_xinfo also lists generated columns, which SELECT * returns;
+        // hidden = 1 marks virtual-table columns that SELECT * skips.
+        try (Statement stmt = reader.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA table_xinfo(" + quoted + ")")) {
+            while (rs.next()) {
+                if (rs.getInt("hidden") == 1) {
+                    continue;
+                }
+                columns.add(new ColumnInfo(rs.getString("name"), rs.getString("type"),
+                    rs.getInt("notnull") != 0, rs.getInt("pk") != 0));
+            }
+        }
+
+        String sql = tableSql.get(name);
+        boolean withoutRowId = sql != null && sql.toUpperCase().replaceAll("\\s+", " ").contains("WITHOUT ROWID");
+        return new TableInfo(name, columns, withoutRowId);
+    }
+
+    public static boolean isDdl(String sql) {
+        String head = sql.trim().toUpperCase();
+        return head.startsWith("CREATE") || head.startsWith("DROP") || head.startsWith("ALTER");
+    }
+}
@@ -0,0 +1,205 @@
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams a database dump to disk. Rows are written straight from the
+ * ResultSet into a large output buffer and grouped into multi-row INSERTs,
+ * so heap use does not depend on table size.
+ */
+public class SqlExporter {
+    public static final int DEFAULT_ROWS_PER_INSERT = 500;
+    private static final int MAX_INSERT_CHARS = 1 << 20;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final Connection connection;
+    private final int rowsPerInsert;
+    private long rowsWritten;
+
+    public SqlExporter(Connection connection, int rowsPerInsert) {
+        this.connection = connection;
+        this.rowsPerInsert = Math.max(1, rowsPerInsert);
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    public void exportTo(File file, boolean gzip) throws IOException, SQLException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+        if (gzip) {
+            out = new GZIPOutputStream(out, 1 << 16);
+        }
+
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16)) {
+            export(writer);
+        }
+    }
+
+    /**
+     * Writes the dump inside one read transaction, so the schema, the rows and
+     * the AUTOINCREMENT counters all come from the same snapshot even while
+     * other connections keep writing.
+     */
+    public void export(Writer writer) throws IOException, SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            writeDump(writer);
+            connection.commit();
+        } catch (IOException | SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void writeDump(Writer writer) throws IOException, SQLException {
+        rowsWritten = 0;
+        List<String[]> tables = new ArrayList<>();
+        List<String> others = new ArrayList<>();
+        boolean hasSequence;
+
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                 "SELECT type, name, sql FROM sqlite_master " +
+                 "WHERE sql IS NOT NULL AND name NOT LIKE 'sqlite\\_%' ESCAPE '\\' ORDER BY rowid")) {
+            while (rs.next()) {
+                if ("table".equals(rs.getString(1))) {
+                    tables.add(new String[]{rs.getString(2), rs.getString(3)});
+                } else {
+                    others.add(rs.getString(3));
+                }
+            }
+        }
+
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                 "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'sqlite_sequence'")) {
+            hasSequence = rs.next();
+        }
+
+        writer.write("BEGIN TRANSACTION;\n");
+
+        for (String[] table : tables) {
+            writer.write(table[1]);
+            writer.write(";\n\n");
+            exportRows(writer, table[0]);
+            writer.write('\n');
+        }
+
+        // Restoring the rows bumps the AUTOINCREMENT counters only to the
+        // largest rowid, so the saved counters replace them.
+        if (hasSequence) {
+            writer.write("DELETE FROM sqlite_sequence;\n");
+            exportRows(writer, "sqlite_sequence");
+            writer.write('\n');
+        }
+
+        for (String sql : others) {
+            writer.write(sql);
+            writer.write(";\n");
+        }
+
+        writer.write("COMMIT;\n");
+    }
+
+    private void exportRows(Writer writer, String table) throws IOException, SQLException {
+        String quoted = DatabaseManager.quoteIdentifier(table);
+
+        try (Statement stmt = connection.createStatement()) {
+            stmt.setFetchSize(rowsPerInsert);
+
+            try (ResultSet data = stmt.executeQuery("SELECT * FROM " + quoted)) {
+                int columnCount = data.getMetaData().getColumnCount();
+                int rowsInInsert = 0;
+                long charsInInsert = 0;
+
+                while (data.next()) {
+                    if (rowsInInsert == 0) {
+                        writer.write("INSERT INTO ");
+                        writer.write(quoted);
+                        writer.write(" VALUES\n(");
+                    } else {
+                        writer.write(",\n(");
+                    }
+
+                    for (int i = 1; i <= columnCount; i++) {
+                        if (i > 1) writer.write(',');
+                        charsInInsert += writeValue(writer, data.getObject(i));
+                    }
+
+                    writer.write(')');
+                    rowsInInsert++;
+                    rowsWritten++;
+
+                    if (rowsInInsert >= rowsPerInsert || charsInInsert >= MAX_INSERT_CHARS) {
+                        writer.write(";\n");
+                        rowsInInsert = 0;
+                        charsInInsert = 0;
+                    }
+                }
+
+                if (rowsInInsert > 0) {
+                    writer.write(";\n");
+                }
+            }
+        }
+    }
+
+    private static int writeValue(Writer writer, Object value) throws IOException {
+        if (value == null) {
+            writer.write("NULL");
+            return 4;
+        }
+
+        if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            writer.write("X'");
+            for (byte b : bytes) {
+                writer.write(HEX[(b >> 4) & 0xF]);
+                writer.write(HEX[b & 0xF]);
+            }
+            writer.write('\'');
+            return bytes.length * 2 + 3;
+        }
+
+        if (value instanceof Integer || value instanceof Long) {
+            String text = value.toString();
+            writer.write(text);
+            return text.length();
+        }
+
+        if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            String text = Double.isNaN(d) ? "NULL"
+                : Double.isInfinite(d) ? (d > 0 ? "1e999" : "-1e999") : Double.toString(d);
+            writer.write(text);
+            return text.length();
+        }
+
+        String text = value.toString();
+        writer.write('\'');
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\'') {
+                writer.write(text, start, i - start + 1);
+                writer.write('\'');
+                start = i + 1;
+            }
+        }
+        writer.write(text, start, text.length() - start);
+        writer.write('\'');
+        return text.length() + 2;
+    }
+}
@@ -0,0 +1,189 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Runs a SQL script against a connection in chunked transactions.
+ * Consecutive INSERTs with the same shape are bound to one cached
+ * PreparedStatement and sent as a JDBC batch. A failure rolls back the
+ * current chunk only; the error then says how many statements were
+ * already committed. The script's own BEGIN/COMMIT/SAVEPOINT/RELEASE are
+ * skipped and ROLLBACK is refused, since they would break the chunking.
+ */
+public class SqlImporter {
+    public static final int DEFAULT_CHUNK_SIZE = 10000;
+    private static final int BATCH_SIZE = 1000;
+    private static final int MAX_PREPARED = 32;
+    private static final int MAX_BIND_PARAMS = 32766;
+    private static final long PROGRESS_INTERVAL_MS = 2000;
+
+    private final Connection connection;
+    private final int chunkSize;
+    private final StatementCache prepared;
+
+    private PreparedStatement batchStatement;
+    private String batchTemplate;
+    private int batchCount;
+
+    public SqlImporter(Connection connection, int chunkSize) {
+        this.connection = connection;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.prepared = new StatementCache(connection, MAX_PREPARED);
+    }
+
+    public static class ImportStats {
+        private final long statements;
+        private final long batched;
+        private final long elapsedMillis;
+        private final String unit;
+
+        ImportStats(long statements, long batched, long elapsedMillis) {
+            this(statements, batched, elapsedMillis, "statements");
+        }
+
+        ImportStats(long statements, long batched, long elapsedMillis, String unit) {
+            this.statements = statements;
+            this.batched = batched;
+            this.elapsedMillis = elapsedMillis;
+            this.unit = unit;
+        }
+
+        public long getStatements() {
+            return statements;
+        }
+
+        public long getBatchedStatements() {
+            return batched;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public double getStatementsPerSecond() {
+            return elapsedMillis == 0 ? statements : statements * 1000.0 / elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d %s in %.1fs (%.0f %s/sec, %d batched)",
+                statements, unit, elapsedMillis / 1000.0, getStatementsPerSecond(), unit, batched);
+        }
+    }
+
+    public ImportStats importFile(File file, Consumer<String> progress) throws IOException, SQLException {
+        boolean gzip = file.getName().toLowerCase().endsWith(".gz");
+        // raw is closed even when a bad gzip header fails the wrapping
+        try (InputStream raw = new FileInputStream(file);
+             InputStream in = gzip ? new GZIPInputStream(raw, 1 << 16) : raw;
+             SqlScriptReader reader = new SqlScriptReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return importScript(reader, progress);
+        }
+    }
+
+    public ImportStats importScript(SqlScriptReader reader, Consumer<String> progress) throws IOException, SQLException {
+        long start = System.currentTimeMillis();
+        long lastReport = start;
+        long statements = 0;
+        long batched = 0;
+        long inChunk = 0;
+        long committed = 0;
+
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+
+        try (Statement plain = connection.createStatement()) {
+            SqlScriptReader.ParsedStatement statement;
+
+            while ((statement = reader.next()) != null) {
+                if (statement.getKeyword().equals("ROLLBACK")) {
+                    throw new SQLException("The script rolls back after " + statements
+                        + " statements; ROLLBACK is not supported in imported scripts");
+                }
+                if (isTransactionControl(statement.getKeyword())) {
+                    continue;
+                }
+
+                if (statement.getTemplate() != null && statement.getParams().size() <= MAX_BIND_PARAMS) {
+                    addToBatch(statement.getTemplate(), statement.getParams());
+                    batched++;
+                } else {
+                    flushBatch();
+                    plain.execute(statement.getSql());
+                }
+
+                statements++;
+                if (++inChunk >= chunkSize) {
+                    flushBatch();
+                    connection.commit();
+                    committed = statements;
+                    inChunk = 0;
+
+                    long now = System.currentTimeMillis();
+                    if (progress != null && now - lastReport >= PROGRESS_INTERVAL_MS) {
+                        progress.accept(new ImportStats(statements, batched, now - start).toString());
+                        lastReport = now;
+                    }
+                }
+            }
+
+            flushBatch();
+            connection.commit();
+        } catch (SQLException | IOException | RuntimeException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackError) {
+                e.addSuppressed(rollbackError);
+            }
+            if (committed == 0) {
+                throw e;
+            }
+            String message = String.format("%s (after %d statements; the first %d were committed"
+                + " and remain in the database)", e.getMessage(), statements, committed);
+            if (e instanceof IOException) {
+                throw new IOException(message, e);
+            }
+            throw new SQLException(message, e);
+        } finally {
+            prepared.close();
+            batchStatement = null;
+            batchTemplate = null;
+            connection.setAutoCommit(autoCommit);
+        }
+
+        return new ImportStats(statements, batched, System.currentTimeMillis() - start);
+    }
+
+    private void addToBatch(String template, List<Object> params) throws SQLException {
+        if (!template.equals(batchTemplate)) {
+            flushBatch();
+            batchStatement = prepared.prepare(template);
+            batchTemplate = template;
+        }
+
+        for (int i = 0; i < params.size(); i++) {
+            batchStatement.setObject(i + 1, params.get(i));
+        }
+        batchStatement.addBatch();
+
+        if (++batchCount >= BATCH_SIZE) {
+            flushBatch();
+        }
+    }
+
+    private void flushBatch() throws SQLException {
+        if (batchStatement != null && batchCount > 0) {
+            batchStatement.executeBatch();
+        }
+        batchCount = 0;
+    }
+
+    /** Statements the chunked transactions replace; ROLLBACK is refused instead. */
+    private static boolean isTransactionControl(String keyword) {
+        return keyword.equals("BEGIN") || keyword.equals("COMMIT") || keyword.equals("END")
+            || keyword.equals("SAVEPOINT") || keyword.equals("RELEASE");
+    }
+}
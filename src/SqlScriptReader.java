@@ -0,0 +1,396 @@
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a SQL script into statements without loading the whole file.
+ * Semicolons inside string literals, quoted identifiers, comments and
+ * trigger bodies (BEGIN ... END) do not end a statement.
+ *
+ * For plain INSERT/REPLACE ... VALUES statements the reader also produces a
+ * template with every literal replaced by '?', plus the literal values, so
+ * rows with the same shape can be run through one prepared statement.
+ */
+public class SqlScriptReader implements Closeable {
+    private final Reader reader;
+    private final char[] buffer = new char[1 << 16];
+    private int position;
+    private int limit;
+
+    private final StringBuilder sql = new StringBuilder();
+    private final StringBuilder template = new StringBuilder();
+    private final StringBuilder word = new StringBuilder();
+    private List<Object> params = new ArrayList<>();
+
+    private String firstWord;
+    private boolean trigger;
+    private boolean parameterizable;
+    private int blockDepth;
+    private int wordCount;
+    private boolean pendingSpace;
+
+    public SqlScriptReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    public static class ParsedStatement {
+        private final String sql;
+        private final String template;
+        private final List<Object> params;
+        private final String keyword;
+
+        ParsedStatement(String sql, String template, List<Object> params, String keyword) {
+            this.sql = sql;
+            this.template = template;
+            this.params = params;
+            this.keyword = keyword;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        /** Statement text with literals replaced by '?', or null when it must run as-is. */
+        public String getTemplate() {
+            return template;
+        }
+
+        public List<Object> getParams() {
+            return params;
+        }
+
+        /** Upper-cased first keyword of the statement. */
+        public String getKeyword() {
+            return keyword;
+        }
+    }
+
+    public ParsedStatement next() throws IOException {
+        resetStatement();
+
+        int c;
+        while ((c = read()) != -1) {
+            char ch = (char) c;
+
+            if (Character.isWhitespace(ch)) {
+                endWord();
+                sql.append(ch);
+                pendingSpace = template.length() > 0;
+                continue;
+            }
+
+            if (ch == '-' && peek() == '-') {
+                endWord();
+                skipLineComment();
+                continue;
+            }
+
+            if (ch == '/' && peek() == '*') {
+                endWord();
+                skipBlockComment();
+                continue;
+            }
+
+            if (ch == '\'') {
+                boolean blob = word.length() == 1 && (word.charAt(0) == 'x' || word.charAt(0) == 'X');
+                if (blob) {
+                    word.setLength(0);
+                    sql.setLength(sql.length() - 1);
+                    template.setLength(template.length() - 1);
+                } else {
+                    endWord();
+                }
+                readStringLiteral(blob);
+                continue;
+            }
+
+            if (ch == '"' || ch == '`' || ch == '[') {
+                endWord();
+                readQuotedIdentifier(ch == '[' ? ']' : ch);
+                continue;
+            }
+
+            if (word.length() == 0 && (isDigit(ch) || (ch == '.' && isDigit(peek())))) {
+                readNumber(ch);
+                continue;
+            }
+
+            if (isWordChar(ch)) {
+                word.append(ch);
+                appendTemplate(ch);
+                sql.append(ch);
+                continue;
+            }
+
+            endWord();
+
+            if (ch == ';' && (!trigger || blockDepth == 0)) {
+                ParsedStatement statement = buildStatement();
+                if (statement != null) {
+                    return statement;
+                }
+                resetStatement();
+                continue;
+            }
+
+            sql.append(ch);
+            appendTemplate(ch);
+        }
+
+        endWord();
+        return buildStatement();
+    }
+
+    private ParsedStatement buildStatement() {
+        String text = sql.toString().trim();
+        if (text.isEmpty()) {
+            return null;
+        }
+
+        boolean usable = parameterizable && !params.isEmpty();
+        String keyword = firstWord == null ? "" : firstWord;
+        return new ParsedStatement(text, usable ? template.toString() : null,
+            usable ? params : null, keyword);
+    }
+
+    private void resetStatement() {
+        sql.setLength(0);
+        template.setLength(0);
+        word.setLength(0);
+        params = new ArrayList<>();
+        firstWord = null;
+        trigger = false;
+        parameterizable = false;
+        blockDepth = 0;
+        wordCount = 0;
+        pendingSpace = false;
+    }
+
+    private void endWord() {
+        if (word.length() == 0) {
+            return;
+        }
+
+        String upper = word.toString().toUpperCase();
+        word.setLength(0);
+        wordCount++;
+
+        if (wordCount == 1) {
+            firstWord = upper;
+            parameterizable = upper.equals("INSERT") || upper.equals("REPLACE");
+        }
+
+        if (firstWord.equals("CREATE") && upper.equals("TRIGGER") && wordCount <= 4) {
+            trigger = true;
+        }
+
+        if (parameterizable && (upper.equals("SELECT") || upper.equals("DEFAULT") || upper.equals("WITH"))) {
+            parameterizable = false;
+        }
+
+        if (trigger) {
+            if (upper.equals("BEGIN") || upper.equals("CASE")) {
+                blockDepth++;
+            } else if (upper.equals("END") && blockDepth > 0) {
+                blockDepth--;
+            }
+        }
+    }
+
+    private void appendTemplate(char ch) {
+        if (pendingSpace) {
+            template.append(' ');
+            pendingSpace = false;
+        }
+        template.append(ch);
+    }
+
+    private void appendTemplate(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            appendTemplate(text.charAt(i));
+        }
+    }
+
+    private void skipLineComment() throws IOException {
+        int c;
+        while ((c = read()) != -1 && c != '\n') {
+            // comments are dropped from the statement text
+        }
+        sql.append('\n');
+        pendingSpace = template.length() > 0;
+    }
+
+    private void skipBlockComment() throws IOException {
+        read();
+        int previous = 0;
+        int c;
+        while ((c = read()) != -1) {
+            if (previous == '*' && c == '/') {
+                break;
+            }
+            previous = c;
+        }
+        sql.append(' ');
+        pendingSpace = template.length() > 0;
+    }
+
+    private void readStringLiteral(boolean blob) throws IOException {
+        StringBuilder value = new StringBuilder();
+        sql.append(blob ? "X'" : "'");
+
+        int c;
+        while ((c = read()) != -1) {
+            char ch = (char) c;
+            sql.append(ch);
+
+            if (ch == '\'') {
+                if (peek() == '\'') {
+                    sql.append((char) read());
+                    value.append('\'');
+                    continue;
+                }
+                break;
+            }
+
+            value.append(ch);
+        }
+
+        if (blob) {
+            byte[] bytes = decodeHex(value);
+            if (bytes != null) {
+                addParam(bytes);
+            } else {
+                appendTemplate("X'" + value.toString().replace("'", "''") + "'");
+            }
+        } else {
+            addParam(value.toString());
+        }
+    }
+
+    private void readQuotedIdentifier(char close) throws IOException {
+        char open = close == ']' ? '[' : close;
+        sql.append(open);
+        appendTemplate(open);
+
+        int c;
+        while ((c = read()) != -1) {
+            char ch = (char) c;
+            sql.append(ch);
+            appendTemplate(ch);
+
+            if (ch == close) {
+                if (close != ']' && peek() == close) {
+                    char escaped = (char) read();
+                    sql.append(escaped);
+                    appendTemplate(escaped);
+                    continue;
+                }
+                break;
+            }
+        }
+    }
+
+    private void readNumber(char first) throws IOException {
+        StringBuilder number = new StringBuilder();
+        number.append(first);
+
+        boolean hex = false;
+        if (first == '0' && (peek() == 'x' || peek() == 'X')) {
+            number.append((char) read());
+            hex = true;
+        }
+
+        int c;
+        while ((c = peek()) != -1) {
+            char ch = (char) c;
+            boolean exponentSign = (ch == '+' || ch == '-') && !hex
+                && (number.charAt(number.length() - 1) == 'e' || number.charAt(number.length() - 1) == 'E');
+
+            if (Character.isLetterOrDigit(ch) || ch == '.' || ch == '_' || exponentSign) {
+                number.append((char) read());
+            } else {
+                break;
+            }
+        }
+
+        String text = number.toString();
+        sql.append(text);
+
+        Object value = hex ? null : parseNumber(text);
+        if (value != null) {
+            addParam(value);
+        } else {
+            appendTemplate(text);
+        }
+    }
+
+    private void addParam(Object value) {
+        appendTemplate('?');
+        params.add(value);
+    }
+
+    private static Object parseNumber(String text) {
+        try {
+            if (text.indexOf('.') >= 0 || text.indexOf('e') >= 0 || text.indexOf('E') >= 0) {
+                return Double.parseDouble(text);
+            }
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static byte[] decodeHex(CharSequence hex) {
+        if (hex.length() % 2 != 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(i * 2), 16);
+            int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+
+    private static boolean isDigit(int ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+    private static boolean isWordChar(char ch) {
+        return Character.isLetterOrDigit(ch) || ch == '_' || ch == '$';
+    }
+
+    private int read() throws IOException {
+        if (position >= limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position >= limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        int n = reader.read(buffer, 0, buffer.length);
+        if (n <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = n;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,406 @@
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.Document;
+import javax.swing.text.PlainDocument;
+import java.awt.Component;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the text held by editor tabs under a memory budget. When the
+ * estimated total goes over it, the least recently selected tabs other
+ * than the current one give up their Document: unmodified tabs whose file
+ * still has the size and modification time it had when the text was read
+ * are simply emptied and read from their file again when selected; all
+ * others (modified, or the file changed or was deleted on disk) are first
+ * written to an owner-only swap file under AppPaths and read back from
+ * there. A tab whose text cannot be read back is marked broken: it
+ * keeps its swap file, stays read-only and cannot be saved. The budget is
+ * a quarter of the maximum heap unless -Dfile-manager.tab-memory-mb says
+ * otherwise.
+ */
+public class TabMemoryManager {
+    private static final String BUDGET_PROPERTY = "file-manager.tab-memory-mb";
+    /** Rough per-line cost of a PlainDocument: the line Element and its two Positions. */
+    private static final int BYTES_PER_LINE = 120;
+    private static final String SWAP_DIRECTORY = "swap";
+
+    private enum State { RESIDENT, EVICTED, SPILLING, SWAPPED, RELOADING, BROKEN }
+
+    private class Tab implements DocumentListener {
+        final JScrollPane scrollPane;
+        final JTextArea textArea;
+        File file;
+        /** Size and modification time of file when the text was read or saved. */
+        long fileLength;
+        long fileModified;
+        State state = State.RESIDENT;
+        boolean modified;
+        long lastSelected;
+        /** Estimate taken when the text was dropped, for the usage report. */
+        long droppedBytes;
+        int caret;
+        File swapFile;
+        /** The document being written to the swap file; put back if the tab is selected meanwhile. */
+        Document spilling;
+
+        Tab(JScrollPane scrollPane, JTextArea textArea, File file) {
+            this.scrollPane = scrollPane;
+            this.textArea = textArea;
+            this.file = file;
+            this.lastSelected = System.nanoTime();
+            stamp();
+            textArea.getDocument().addDocumentListener(this);
+        }
+
+        long estimate() {
+            if (state != State.RESIDENT && state != State.RELOADING && state != State.BROKEN) {
+                return 0;
+            }
+            Document document = textArea.getDocument();
+            return (long) document.getLength() * 2
+                + (long) document.getDefaultRootElement().getElementCount() * BYTES_PER_LINE;
+        }
+
+        void stamp() {
+            fileLength = file.length();
+            fileModified = file.lastModified();
+        }
+
+        /** True if the tab's text can be read from its file again as it was. */
+        boolean fileUnchanged() {
+            return file.isFile() && file.length() == fileLength && file.lastModified() == fileModified;
+        }
+
+        String name() {
+            return file.getName();
+        }
+
+        public void insertUpdate(DocumentEvent e) {
+            edited();
+        }
+
+        public void removeUpdate(DocumentEvent e) {
+            edited();
+        }
+
+        public void changedUpdate(DocumentEvent e) {
+        }
+
+        private void edited() {
+            // text appended by a load is not an edit
+            if (!FileLoadWorker.isLoading(scrollPane) && state == State.RESIDENT) {
+                modified = true;
+            }
+            checkTimer.restart();
+        }
+    }
+
+    private final JTabbedPane contentPane;
+    private final Consumer<String> logger;
+    private final Consumer<Component> reloaded;
+    private final long budget;
+    private final Map<Component, Tab> tabs = new LinkedHashMap<>();
+    private final Timer checkTimer;
+
+    /** reloaded is called after a tab was read from its file again, which may have changed on disk. */
+    public TabMemoryManager(JTabbedPane contentPane, Consumer<String> logger, Consumer<Component> reloaded) {
+        this.contentPane = contentPane;
+        this.logger = logger;
+        this.reloaded = reloaded;
+        this.budget = Long.getLong(BUDGET_PROPERTY, Runtime.getRuntime().maxMemory() / 4 / (1024 * 1024)) * 1024 * 1024;
+
+        checkTimer = new Timer(500, e -> enforceBudget());
+        checkTimer.setRepeats(false);
+        contentPane.addChangeListener(e -> selected(contentPane.getSelectedComponent()));
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    /** Starts managing a text tab backed by file; other components are ignored. */
+    public void manage(Component component, File file) {
+        JTextArea textArea = textAreaOf(component);
+        if (textArea == null || tabs.containsKey(component)) {
+            return;
+        }
+        tabs.put(component, new Tab((JScrollPane) component, textArea, file));
+        checkTimer.restart();
+    }
+
+    /** Marks a tab's text as written to file. */
+    public void saved(Component component, File file) {
+        Tab tab = tabs.get(component);
+        if (tab != null) {
+            tab.file = file;
+            tab.modified = false;
+            tab.stamp();
+        }
+    }
+
+    /** False while a tab shows only part of its text because reading it back failed. */
+    public boolean canSave(Component component) {
+        Tab tab = tabs.get(component);
+        return tab == null || tab.state != State.BROKEN;
+    }
+
+    /** Deletes the swap files of tabs that can still be restored; broken tabs keep theirs. */
+    public void close() {
+        for (Tab tab : tabs.values()) {
+            tab.spilling = null;
+            if (tab.state != State.BROKEN) {
+                deleteSwapFile(tab);
+            }
+        }
+    }
+
+    /** Forgets a closed tab and deletes its swap file, unless the tab is broken. */
+    public void release(Component component) {
+        Tab tab = tabs.remove(component);
+        if (tab == null) {
+            return;
+        }
+        tab.spilling = null;
+        if (tab.state == State.BROKEN && tab.swapFile != null) {
+            logger.accept("Unsaved text of " + tab.name() + " is kept in " + tab.swapFile.getAbsolutePath());
+        } else {
+            deleteSwapFile(tab);
+        }
+    }
+
+    /** Writes each tab's estimated memory use to the monitor. */
+    public void logUsage() {
+        long total = 0;
+        logger.accept(String.format("Tab memory (budget %s):", LargeFileViewer.formatSize(budget)));
+        for (Tab tab : tabs.values()) {
+            long bytes = tab.estimate();
+            total += bytes;
+            String state;
+            switch (tab.state) {
+                case RESIDENT:
+                    state = tab.modified ? "in memory, modified" : "in memory";
+                    break;
+                case EVICTED:
+                    state = "dropped (" + LargeFileViewer.formatSize(tab.droppedBytes) + "), reloads from file";
+                    break;
+                case SPILLING:
+                case SWAPPED:
+                    state = "swapped out (" + LargeFileViewer.formatSize(tab.droppedBytes) + "), "
+                        + (tab.modified ? "modified" : "file changed on disk");
+                    break;
+                case BROKEN:
+                    state = "could not be read back" + (tab.swapFile != null
+                        ? ", unsaved text kept in " + tab.swapFile.getAbsolutePath() : "");
+                    break;
+                default:
+                    state = "reloading";
+            }
+            logger.accept(String.format("  %-30s %10s  %s", tab.name(), LargeFileViewer.formatSize(bytes), state));
+        }
+        logger.accept(String.format("  %d text tabs, %s in memory", tabs.size(), LargeFileViewer.formatSize(total)));
+    }
+
+    private void selected(Component component) {
+        Tab tab = tabs.get(component);
+        if (tab == null) {
+            return;
+        }
+        tab.lastSelected = System.nanoTime();
+        switch (tab.state) {
+            case EVICTED:
+                reload(tab, tab.file, false);
+                break;
+            case BROKEN:
+                // try again, from wherever the text was to come from
+                reload(tab, tab.swapFile != null ? tab.swapFile : tab.file, tab.swapFile != null);
+                break;
+            case SPILLING:
+                // the swap file is still being written; take the text back as it is
+                putBack(tab);
+                restoreCaret(tab);
+                break;
+            case SWAPPED:
+                reload(tab, tab.swapFile, true);
+                break;
+            default:
+                break;
+        }
+        checkTimer.restart();
+    }
+
+    /** Drops the least recently selected tabs until the estimate fits the budget. */
+    private void enforceBudget() {
+        long total = 0;
+        for (Tab tab : tabs.values()) {
+            total += tab.estimate();
+        }
+        if (total <= budget) {
+            return;
+        }
+
+        List<Tab> candidates = new ArrayList<>();
+        Component selected = contentPane.getSelectedComponent();
+        for (Tab tab : tabs.values()) {
+            if (tab.state == State.RESIDENT && tab.scrollPane != selected
+                    && !FileLoadWorker.isLoading(tab.scrollPane)
+                    && LogFollower.getFollowedFile(tab.scrollPane) == null) {
+                candidates.add(tab);
+            }
+        }
+        candidates.sort((a, b) -> Long.compare(a.lastSelected, b.lastSelected));
+
+        for (Tab tab : candidates) {
+            if (total <= budget) {
+                break;
+            }
+            long bytes = tab.estimate();
+            total -= bytes;
+            drop(tab, bytes);
+        }
+    }
+
+    private void drop(Tab tab, long bytes) {
+        Document document = tab.textArea.getDocument();
+        tab.caret = tab.textArea.getCaretPosition();
+        tab.droppedBytes = bytes;
+        replaceDocument(tab, new PlainDocument());
+
+        if (!tab.modified && tab.fileUnchanged()) {
+            tab.state = State.EVICTED;
+            logger.accept("Dropped " + tab.name() + " from memory (" + LargeFileViewer.formatSize(bytes)
+                + "); it reloads when selected");
+            return;
+        }
+
+        tab.state = State.SPILLING;
+        tab.spilling = document;
+        new SwingWorker<File, Void>() {
+            @Override
+            protected File doInBackground() throws IOException {
+                File swap = createSwapFile();
+                try {
+                    DocumentWriter.write(document, swap, false);
+                } catch (IOException e) {
+                    swap.delete();
+                    throw e;
+                }
+                return swap;
+            }
+
+            @Override
+            protected void done() {
+                File swap;
+                try {
+                    swap = get();
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    logger.accept("ERROR: Cannot swap out " + tab.name() + " - " + cause.getMessage());
+                    if (tab.spilling == document) {
+                        putBack(tab);
+                    }
+                    return;
+                }
+                if (tab.spilling != document) {
+                    // selected or closed while writing
+                    swap.delete();
+                    return;
+                }
+                tab.spilling = null;
+                tab.swapFile = swap;
+                tab.state = State.SWAPPED;
+                logger.accept("Swapped out " + (tab.modified ? "unsaved " : "") + tab.name() + " (" + LargeFileViewer.formatSize(bytes) + ")");
+            }
+        }.execute();
+    }
+
+    /**
+     * A new owner-only file in the swap folder. Files.createTempFile makes it
+     * rw------- on POSIX, and DocumentWriter keeps the target's permissions.
+     */
+    private static File createSwapFile() throws IOException {
+        Path directory = AppPaths.resolve(SWAP_DIRECTORY).toPath();
+        Files.createDirectories(directory);
+        if (Files.getFileAttributeView(directory, PosixFileAttributeView.class) != null) {
+            Files.setPosixFilePermissions(directory, PosixFilePermissions.fromString("rwx------"));
+        }
+        return Files.createTempFile(directory, "tab-", ".swap").toFile();
+    }
+
+    private static void replaceDocument(Tab tab, Document document) {
+        tab.textArea.getDocument().removeDocumentListener(tab);
+        document.addDocumentListener(tab);
+        tab.textArea.setDocument(document);
+    }
+
+    private void putBack(Tab tab) {
+        replaceDocument(tab, tab.spilling);
+        tab.spilling = null;
+        tab.state = State.RESIDENT;
+    }
+
+    /** Reads the tab's text back, from its file or, with unsaved edits, from its swap file. */
+    private void reload(Tab tab, File source, boolean fromSwap) {
+        tab.state = State.RELOADING;
+        // a failed earlier attempt may have left part of the text behind
+        replaceDocument(tab, new PlainDocument());
+        String description = fromSwap ? "swapped-out text of " + tab.name() : "text file";
+        FileLoadWorker worker = new FileLoadWorker(source, tab.scrollPane, tab.textArea, description, logger);
+        worker.addPropertyChangeListener(e -> {
+            if (!"state".equals(e.getPropertyName()) || e.getNewValue() != SwingWorker.StateValue.DONE
+                    || tabs.get(tab.scrollPane) != tab) {
+                return;
+            }
+            try {
+                worker.get();
+            } catch (Exception failure) {
+                // keep the swap file: it may be the only copy of the edits
+                tab.state = State.BROKEN;
+                tab.textArea.setEditable(false);
+                logger.accept("ERROR: Cannot restore " + tab.name() + "; the tab is read-only and cannot be saved."
+                    + (fromSwap ? " Unsaved text is kept in " + source.getAbsolutePath() + "." : "")
+                    + " Select it again to retry.");
+                return;
+            }
+            tab.state = State.RESIDENT;
+            restoreCaret(tab);
+            if (fromSwap) {
+                deleteSwapFile(tab);
+            } else {
+                tab.stamp();
+                reloaded.accept(tab.scrollPane);
+            }
+            checkTimer.restart();
+        });
+        worker.execute();
+    }
+
+    private static void restoreCaret(Tab tab) {
+        tab.textArea.setCaretPosition(Math.min(tab.caret, tab.textArea.getDocument().getLength()));
+    }
+
+    private static void deleteSwapFile(Tab tab) {
+        if (tab.swapFile != null) {
+            tab.swapFile.delete();
+            tab.swapFile = null;
+        }
+    }
+
+    private static JTextArea textAreaOf(Component component) {
+        if (component instanceof JScrollPane
+                && ((JScrollPane) component).getViewport().getView() instanceof JTextArea) {
+            return (JTextArea) ((JScrollPane) component).getViewport().getView();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,168 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Pending edits to one table, keyed by rowid: per-cell updates, deleted
+ * rows and newly inserted rows. apply() writes only this delta, as batched
+ * prepared statements inside a single transaction.
+ */
+public class TableChangeSet {
+    private final Map<Long, Map<Integer, Object>> updates = new LinkedHashMap<>();
+    private final Set<Long> deletes = new LinkedHashSet<>();
+    private final List<Object[]> inserts = new ArrayList<>();
+    private final int columnCount;
+
+    public TableChangeSet(int columnCount) {
+        this.columnCount = columnCount;
+    }
+
+    public void update(long rowId, int column, Object value) {
+        if (!deletes.contains(rowId)) {
+            updates.computeIfAbsent(rowId, id -> new HashMap<>()).put(column, value);
+        }
+    }
+
+    /** Returns the pending value for a cell, or the argument itself if the cell is unchanged. */
+    public Object valueOr(long rowId, int column, Object original) {
+        Map<Integer, Object> row = updates.get(rowId);
+        return row != null && row.containsKey(column) ? row.get(column) : original;
+    }
+
+    public boolean isUpdated(long rowId, int column) {
+        Map<Integer, Object> row = updates.get(rowId);
+        return row != null && row.containsKey(column);
+    }
+
+    public void delete(long rowId) {
+        updates.remove(rowId);
+        deletes.add(rowId);
+    }
+
+    public boolean isDeleted(long rowId) {
+        return deletes.contains(rowId);
+    }
+
+    public int addInsert() {
+        inserts.add(new Object[columnCount]);
+        return inserts.size() - 1;
+    }
+
+    public List<Object[]> getInserts() {
+        return inserts;
+    }
+
+    public boolean isEmpty() {
+        return updates.isEmpty() && deletes.isEmpty() && inserts.isEmpty();
+    }
+
+    public int getUpdatedCellCount() {
+        int cells = 0;
+        for (Map<Integer, Object> row : updates.values()) {
+            cells += row.size();
+        }
+        return cells;
+    }
+
+    @Override
+    public String toString() {
+        return inserts.size() + " inserted, " + getUpdatedCellCount() + " cells updated, "
+            + deletes.size() + " deleted";
+    }
+
+    public void apply(DatabaseManager dbManager, String tableName, String[] columnNames) throws SQLException {
+        String table = DatabaseManager.quoteIdentifier(tableName);
+        Connection connection = dbManager.getConnection();
+
+        synchronized (connection) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+
+            try {
+                if (!deletes.isEmpty()) {
+                    PreparedStatement delete = dbManager.prepare("DELETE FROM " + table + " WHERE rowid = ?");
+                    for (long rowId : deletes) {
+                        delete.setLong(1, rowId);
+                        delete.addBatch();
+                    }
+                    delete.executeBatch();
+                }
+
+                Map<Integer, List<Map.Entry<Long, Object>>> byColumn = new TreeMap<>();
+                for (Map.Entry<Long, Map<Integer, Object>> row : updates.entrySet()) {
+                    for (Map.Entry<Integer, Object> cell : row.getValue().entrySet()) {
+                        byColumn.computeIfAbsent(cell.getKey(), c -> new ArrayList<>())
+                            .add(new AbstractMap.SimpleEntry<>(row.getKey(), cell.getValue()));
+                    }
+                }
+
+                for (Map.Entry<Integer, List<Map.Entry<Long, Object>>> column : byColumn.entrySet()) {
+                    PreparedStatement update = dbManager.prepare("UPDATE " + table + " SET "
+                        + DatabaseManager.quoteIdentifier(columnNames[column.getKey()]) + " = ? WHERE rowid = ?");
+                    for (Map.Entry<Long, Object> cell : column.getValue()) {
+                        update.setObject(1, cell.getValue());
+                        update.setLong(2, cell.getKey());
+                        update.addBatch();
+                    }
+                    update.executeBatch();
+                }
+
+                applyInserts(dbManager, table, columnNames);
+
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private void applyInserts(DatabaseManager dbManager, String table, String[] columnNames) throws SQLException {
+        // Rows are grouped by which columns were filled in, so untouched
+        // columns keep their defaults and each shape is prepared once.
+        Map<BitSet, List<Object[]>> byShape = new LinkedHashMap<>();
+        for (Object[] row : inserts) {
+            BitSet shape = new BitSet(columnCount);
+            for (int i = 0; i < columnCount; i++) {
+                if (row[i] != null && !"".equals(row[i])) {
+                    shape.set(i);
+                }
+            }
+            byShape.computeIfAbsent(shape, s -> new ArrayList<>()).add(row);
+        }
+
+        for (Map.Entry<BitSet, List<Object[]>> group : byShape.entrySet()) {
+            BitSet shape = group.getKey();
+            String sql;
+
+            if (shape.isEmpty()) {
+                sql = "INSERT INTO " + table + " DEFAULT VALUES";
+            } else {
+                StringBuilder columns = new StringBuilder();
+                StringBuilder values = new StringBuilder();
+                for (int i = shape.nextSetBit(0); i >= 0; i = shape.nextSetBit(i + 1)) {
+                    if (columns.length() > 0) {
+                        columns.append(", ");
+                        values.append(", ");
+                    }
+                    columns.append(DatabaseManager.quoteIdentifier(columnNames[i]));
+                    values.append("?");
+                }
+                sql = "INSERT INTO " + table + " (" + columns + ") VALUES (" + values + ")";
+            }
+
+            PreparedStatement insert = dbManager.prepare(sql);
+            for (Object[] row : group.getValue()) {
+                int index = 1;
+                for (int i = shape.nextSetBit(0); i >= 0; i = shape.nextSetBit(i + 1)) {
+                    insert.setObject(index++, row[i]);
+                }
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+}
@@ -0,0 +1,737 @@
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableModel;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Versioned binary snapshot of table data, used for .odb files in place of
+ * Java serialization.
+ *
+ * Layout: "FMSN", version, flags, then the schema (column names and
+ * declared types) and the block size. Rows follow in blocks of up to
+ * BLOCK_ROWS; each block stores its columns one after another, every column
+ * with its own encoding: zigzag varints for integers, raw doubles, a
+ * dictionary for repetitive strings, length-prefixed strings/blobs, or a
+ * tagged form for mixed columns. Nulls are a bitmap. With FLAG_DEFLATE each
+ * block is deflated. A zero row count ends the file.
+ */
+public class TableSnapshot {
+    public static final int VERSION = 1;
+    public static final int BLOCK_ROWS = 65536;
+    static final byte[] MAGIC = {'F', 'M', 'S', 'N'};
+    private static final int FLAG_DEFLATE = 1;
+
+    private static final int ENC_NULL = 0;
+    private static final int ENC_LONG = 1;
+    private static final int ENC_DOUBLE = 2;
+    private static final int ENC_DICT = 3;
+    private static final int ENC_STRING = 4;
+    private static final int ENC_BYTES = 5;
+    private static final int ENC_MIXED = 6;
+
+    private static final int TAG_LONG = 1;
+    private static final int TAG_DOUBLE = 2;
+    private static final int TAG_STRING = 3;
+    private static final int TAG_BYTES = 4;
+
+    /** Returns true if the file starts with the snapshot magic bytes. */
+    public static boolean isSnapshot(File file) {
+        try (InputStream in = new FileInputStream(file)) {
+            return Arrays.equals(in.readNBytes(MAGIC.length), MAGIC);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public static long write(TableModel model, File file, boolean compress) throws IOException {
+        int columnCount = model.getColumnCount();
+        String[] names = new String[columnCount];
+        for (int c = 0; c < columnCount; c++) {
+            names[c] = model.getColumnName(c);
+        }
+
+        try (Writer writer = new Writer(file, names, new String[columnCount], compress)) {
+            Object[] row = new Object[columnCount];
+            for (int r = 0; r < model.getRowCount(); r++) {
+                for (int c = 0; c < columnCount; c++) {
+                    row[c] = model.getValueAt(r, c);
+                }
+                writer.writeRow(row);
+            }
+            writer.finish();
+            return writer.getRowCount();
+        }
+    }
+
+    public static long write(ResultSet rs, File file, boolean compress) throws IOException, SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        String[] names = new String[columnCount];
+        String[] types = new String[columnCount];
+        for (int c = 0; c < columnCount; c++) {
+            names[c] = metaData.getColumnName(c + 1);
+            types[c] = metaData.getColumnTypeName(c + 1);
+        }
+
+        try (Writer writer = new Writer(file, names, types, compress)) {
+            Object[] row = new Object[columnCount];
+            while (rs.next()) {
+                for (int c = 0; c < columnCount; c++) {
+                    row[c] = rs.getObject(c + 1);
+                }
+                writer.writeRow(row);
+            }
+            writer.finish();
+            return writer.getRowCount();
+        }
+    }
+
+    /**
+     * Streams rows into a snapshot file, one encoded block at a time. The
+     * rows go to a temporary file next to the target, which finish() moves
+     * over the target like DocumentWriter does; closing without finish()
+     * discards it and leaves the target untouched.
+     */
+    public static class Writer implements Closeable {
+        private final Path target;
+        private final Path temp;
+        private final OutputStream out;
+        private final int columnCount;
+        private final boolean compress;
+        private final Object[][] block;
+        private final Deflater deflater;
+        private final Buffer buffer = new Buffer(1 << 16);
+        private byte[] deflated = new byte[1 << 16];
+        private int blockRows;
+        private long rowCount;
+        private boolean finished;
+
+        public Writer(File file, String[] columnNames, String[] declaredTypes, boolean compress) throws IOException {
+            this.target = file.toPath().toAbsolutePath();
+            this.temp = DocumentWriter.createTempFor(target);
+            this.out = new BufferedOutputStream(Files.newOutputStream(temp), 1 << 20);
+            this.columnCount = columnNames.length;
+            this.compress = compress;
+            this.block = new Object[columnCount][BLOCK_ROWS];
+            this.deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+
+            Buffer header = new Buffer(256);
+            header.put(MAGIC, 0, MAGIC.length);
+            header.put(VERSION);
+            header.put(compress ? FLAG_DEFLATE : 0);
+            header.putVarint(columnCount);
+            for (int c = 0; c < columnCount; c++) {
+                header.putString(columnNames[c] != null ? columnNames[c] : "");
+                header.putString(declaredTypes[c] != null ? declaredTypes[c] : "");
+            }
+            header.putVarint(BLOCK_ROWS);
+            try {
+                out.write(header.bytes, 0, header.size);
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        public long getRowCount() {
+            return rowCount;
+        }
+
+        public void writeRow(Object[] row) throws IOException {
+            for (int c = 0; c < columnCount; c++) {
+                block[c][blockRows] = row[c];
+            }
+            blockRows++;
+            rowCount++;
+            if (blockRows == BLOCK_ROWS) {
+                flushBlock();
+            }
+        }
+
+        private void flushBlock() throws IOException {
+            if (blockRows == 0) {
+                return;
+            }
+
+            buffer.size = 0;
+            for (int c = 0; c < columnCount; c++) {
+                encodeColumn(buffer, block[c], blockRows);
+                Arrays.fill(block[c], 0, blockRows, null);
+            }
+
+            Buffer frame = new Buffer(16);
+            frame.putVarint(blockRows);
+            if (compress) {
+                deflater.reset();
+                deflater.setInput(buffer.bytes, 0, buffer.size);
+                deflater.finish();
+                int length = 0;
+                while (!deflater.finished()) {
+                    if (length == deflated.length) {
+                        deflated = Arrays.copyOf(deflated, deflated.length * 2);
+                    }
+                    length += deflater.deflate(deflated, length, deflated.length - length);
+                }
+                frame.putVarint(length);
+                frame.putVarint(buffer.size);
+                out.write(frame.bytes, 0, frame.size);
+                out.write(deflated, 0, length);
+            } else {
+                frame.putVarint(buffer.size);
+                frame.putVarint(buffer.size);
+                out.write(frame.bytes, 0, frame.size);
+                out.write(buffer.bytes, 0, buffer.size);
+            }
+            blockRows = 0;
+        }
+
+        /** Writes the last block and the end marker, then replaces the target with the new file. */
+        public void finish() throws IOException {
+            flushBlock();
+            out.write(0);
+            out.close();
+            DocumentWriter.replace(temp, target);
+            finished = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                out.close();
+            } finally {
+                if (deflater != null) {
+                    deflater.end();
+                }
+                if (!finished) {
+                    Files.deleteIfExists(temp);
+                }
+            }
+        }
+    }
+
+    private static void encodeColumn(Buffer out, Object[] values, int rows) {
+        boolean hasNull = false;
+        boolean allNull = true;
+        int longs = 0, doubles = 0, strings = 0, bytes = 0;
+
+        for (int i = 0; i < rows; i++) {
+            Object value = normalize(values[i]);
+            values[i] = value;
+            if (value == null) {
+                hasNull = true;
+                continue;
+            }
+            allNull = false;
+            if (value instanceof Long) {
+                longs++;
+            } else if (value instanceof Double) {
+                doubles++;
+            } else if (value instanceof String) {
+                strings++;
+            } else {
+                bytes++;
+            }
+        }
+
+        if (allNull) {
+            out.put(ENC_NULL);
+            return;
+        }
+
+        int present = longs + doubles + strings + bytes;
+        int encoding;
+        if (longs == present) {
+            encoding = ENC_LONG;
+        } else if (doubles == present) {
+            encoding = ENC_DOUBLE;
+        } else if (strings == present) {
+            encoding = ENC_STRING;
+        } else if (bytes == present) {
+            encoding = ENC_BYTES;
+        } else {
+            encoding = ENC_MIXED;
+        }
+
+        Map<String, Integer> dictionary = null;
+        if (encoding == ENC_STRING) {
+            dictionary = new LinkedHashMap<>();
+            for (int i = 0; i < rows && dictionary.size() <= present / 2; i++) {
+                if (values[i] != null) {
+                    dictionary.putIfAbsent((String) values[i], dictionary.size());
+                }
+            }
+            if (dictionary.size() <= present / 2) {
+                encoding = ENC_DICT;
+            }
+        }
+
+        out.put(encoding);
+        out.put(hasNull ? 1 : 0);
+        if (hasNull) {
+            byte[] bitmap = new byte[(rows + 7) / 8];
+            for (int i = 0; i < rows; i++) {
+                if (values[i] == null) {
+                    bitmap[i >>> 3] |= 1 << (i & 7);
+                }
+            }
+            out.put(bitmap, 0, bitmap.length);
+        }
+
+        if (encoding == ENC_DICT) {
+            out.putVarint(dictionary.size());
+            for (String entry : dictionary.keySet()) {
+                out.putString(entry);
+            }
+        }
+
+        for (int i = 0; i < rows; i++) {
+            Object value = values[i];
+            if (value == null) {
+                continue;
+            }
+            switch (encoding) {
+                case ENC_LONG:
+                    out.putVarint(zigzag((Long) value));
+                    break;
+                case ENC_DOUBLE:
+                    out.putLong(Double.doubleToRawLongBits((Double) value));
+                    break;
+                case ENC_DICT:
+                    out.putVarint(dictionary.get(value));
+                    break;
+                case ENC_STRING:
+                    out.putString((String) value);
+                    break;
+                case ENC_BYTES:
+                    out.putBytes((byte[]) value);
+                    break;
+                default:
+                    putTagged(out, value);
+                    break;
+            }
+        }
+    }
+
+    private static void putTagged(Buffer out, Object value) {
+        if (value instanceof Long) {
+            out.put(TAG_LONG);
+            out.putVarint(zigzag((Long) value));
+        } else if (value instanceof Double) {
+            out.put(TAG_DOUBLE);
+            out.putLong(Double.doubleToRawLongBits((Double) value));
+        } else if (value instanceof String) {
+            out.put(TAG_STRING);
+            out.putString((String) value);
+        } else {
+            out.put(TAG_BYTES);
+            out.putBytes((byte[]) value);
+        }
+    }
+
+    /** Maps every value onto Long, Double, String or byte[]. */
+    private static Object normalize(Object value) {
+        if (value == null || value instanceof Long || value instanceof Double
+                || value instanceof String || value instanceof byte[]) {
+            return value;
+        }
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof Float) {
+            return ((Float) value).doubleValue();
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? 1L : 0L;
+        }
+        return value.toString();
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /** Growable byte array with the primitive writers the format needs. */
+    private static class Buffer {
+        byte[] bytes;
+        int size;
+
+        Buffer(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+
+        void put(int b) {
+            ensure(1);
+            bytes[size++] = (byte) b;
+        }
+
+        void put(byte[] src, int offset, int length) {
+            ensure(length);
+            System.arraycopy(src, offset, bytes, size, length);
+            size += length;
+        }
+
+        void putVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void putLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void putString(String value) {
+            putBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void putBytes(byte[] value) {
+            putVarint(value.length);
+            put(value, 0, value.length);
+        }
+    }
+
+    /** Reads a whole snapshot through a memory mapping into a columnar table model. */
+    public static Model load(File file) throws IOException {
+        try (MappedFile mapped = new MappedFile(file)) {
+            long[] position = {0};
+
+            byte[] magic = new byte[MAGIC.length];
+            mapped.read(0, magic, 0, magic.length);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a table snapshot: " + file.getName());
+            }
+            position[0] = MAGIC.length;
+
+            int version = mapped.byteAt(position[0]++) & 0xFF;
+            if (version > VERSION) {
+                throw new IOException("Snapshot version " + version + " is newer than supported (" + VERSION + ")");
+            }
+            int flags = mapped.byteAt(position[0]++) & 0xFF;
+
+            int columnCount = (int) readVarint(mapped, position);
+            String[] names = new String[columnCount];
+            String[] types = new String[columnCount];
+            for (int c = 0; c < columnCount; c++) {
+                names[c] = new String(readBytes(mapped, position), StandardCharsets.UTF_8);
+                types[c] = new String(readBytes(mapped, position), StandardCharsets.UTF_8);
+            }
+            int blockRows = (int) readVarint(mapped, position);
+
+            List<Column[]> blocks = new ArrayList<>();
+            Inflater inflater = (flags & FLAG_DEFLATE) != 0 ? new Inflater() : null;
+            long rowCount = 0;
+
+            try {
+                int rows;
+                while ((rows = (int) readVarint(mapped, position)) > 0) {
+                    int storedLength = (int) readVarint(mapped, position);
+                    int rawLength = (int) readVarint(mapped, position);
+
+                    byte[] stored = new byte[storedLength];
+                    mapped.read(position[0], stored, 0, storedLength);
+                    position[0] += storedLength;
+
+                    byte[] raw = stored;
+                    if (inflater != null) {
+                        raw = new byte[rawLength];
+                        inflater.reset();
+                        inflater.setInput(stored);
+                        try {
+                            if (inflater.inflate(raw) != rawLength) {
+                                throw new IOException("Corrupt snapshot block");
+                            }
+                        } catch (DataFormatException e) {
+                            throw new IOException("Corrupt snapshot block", e);
+                        }
+                    }
+
+                    ByteBuffer in = ByteBuffer.wrap(raw);
+                    Column[] columns = new Column[columnCount];
+                    for (int c = 0; c < columnCount; c++) {
+                        columns[c] = decodeColumn(in, rows);
+                    }
+                    blocks.add(columns);
+                    rowCount += rows;
+                }
+            } finally {
+                if (inflater != null) {
+                    inflater.end();
+                }
+            }
+
+            if (rowCount > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot has too many rows to display: " + rowCount);
+            }
+            return new Model(names, types, blocks, blockRows, (int) rowCount);
+        }
+    }
+
+    private static long readVarint(MappedFile mapped, long[] position) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position[0] >= mapped.size()) {
+                throw new EOFException("Truncated snapshot");
+            }
+            byte b = mapped.byteAt(position[0]++);
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt varint in snapshot");
+    }
+
+    private static byte[] readBytes(MappedFile mapped, long[] position) throws IOException {
+        int length = (int) readVarint(mapped, position);
+        byte[] bytes = new byte[length];
+        mapped.read(position[0], bytes, 0, length);
+        position[0] += length;
+        return bytes;
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = (int) readVarint(in);
+        String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static byte[] readBytes(ByteBuffer in) {
+        byte[] value = new byte[(int) readVarint(in)];
+        in.get(value);
+        return value;
+    }
+
+    private static Column decodeColumn(ByteBuffer in, int rows) throws IOException {
+        int encoding = in.get();
+        if (encoding == ENC_NULL) {
+            return new ObjectColumn(new Object[rows]);
+        }
+
+        BitSet nulls = null;
+        if (in.get() != 0) {
+            byte[] bitmap = new byte[(rows + 7) / 8];
+            in.get(bitmap);
+            nulls = BitSet.valueOf(bitmap);
+        }
+
+        switch (encoding) {
+            case ENC_LONG: {
+                long[] values = new long[rows];
+                for (int i = 0; i < rows; i++) {
+                    if (nulls == null || !nulls.get(i)) {
+                        values[i] = unzigzag(readVarint(in));
+                    }
+                }
+                return new LongColumn(values, nulls);
+            }
+            case ENC_DOUBLE: {
+                double[] values = new double[rows];
+                for (int i = 0; i < rows; i++) {
+                    if (nulls == null || !nulls.get(i)) {
+                        values[i] = Double.longBitsToDouble(in.getLong());
+                    }
+                }
+                return new DoubleColumn(values, nulls);
+            }
+            case ENC_DICT: {
+                String[] dictionary = new String[(int) readVarint(in)];
+                for (int d = 0; d < dictionary.length; d++) {
+                    dictionary[d] = readString(in);
+                }
+                Object[] values = new Object[rows];
+                for (int i = 0; i < rows; i++) {
+                    if (nulls == null || !nulls.get(i)) {
+                        values[i] = dictionary[(int) readVarint(in)];
+                    }
+                }
+                return new ObjectColumn(values);
+            }
+            case ENC_STRING:
+            case ENC_BYTES:
+            case ENC_MIXED: {
+                Object[] values = new Object[rows];
+                for (int i = 0; i < rows; i++) {
+                    if (nulls != null && nulls.get(i)) {
+                        continue;
+                    }
+                    if (encoding == ENC_STRING) {
+                        values[i] = readString(in);
+                    } else if (encoding == ENC_BYTES) {
+                        values[i] = readBytes(in);
+                    } else {
+                        values[i] = readTagged(in);
+                    }
+                }
+                return new ObjectColumn(values);
+            }
+            default:
+                throw new IOException("Unknown column encoding " + encoding);
+        }
+    }
+
+    private static Object readTagged(ByteBuffer in) throws IOException {
+        int tag = in.get();
+        switch (tag) {
+            case TAG_LONG:
+                return unzigzag(readVarint(in));
+            case TAG_DOUBLE:
+                return Double.longBitsToDouble(in.getLong());
+            case TAG_STRING:
+                return readString(in);
+            case TAG_BYTES:
+                return readBytes(in);
+            default:
+                throw new IOException("Unknown value tag " + tag);
+        }
+    }
+
+    private interface Column {
+        Object get(int row);
+
+        Class<?> type();
+    }
+
+    private static class LongColumn implements Column {
+        private final long[] values;
+        private final BitSet nulls;
+
+        LongColumn(long[] values, BitSet nulls) {
+            this.values = values;
+            this.nulls = nulls;
+        }
+
+        public Object get(int row) {
+            return nulls != null && nulls.get(row) ? null : values[row];
+        }
+
+        public Class<?> type() {
+            return Long.class;
+        }
+    }
+
+    private static class DoubleColumn implements Column {
+        private final double[] values;
+        private final BitSet nulls;
+
+        DoubleColumn(double[] values, BitSet nulls) {
+            this.values = values;
+            this.nulls = nulls;
+        }
+
+        public Object get(int row) {
+            return nulls != null && nulls.get(row) ? null : values[row];
+        }
+
+        public Class<?> type() {
+            return Double.class;
+        }
+    }
+
+    private static class ObjectColumn implements Column {
+        private final Object[] values;
+
+        ObjectColumn(Object[] values) {
+            this.values = values;
+        }
+
+        public Object get(int row) {
+            return values[row];
+        }
+
+        public Class<?> type() {
+            return Object.class;
+        }
+    }
+
+    /** Read-only table model over the decoded column blocks of a snapshot. */
+    public static class Model extends AbstractTableModel {
+        private final String[] columnNames;
+        private final String[] declaredTypes;
+        private final List<Column[]> blocks;
+        private final int blockRows;
+        private final int rowCount;
+
+        Model(String[] columnNames, String[] declaredTypes, List<Column[]> blocks, int blockRows, int rowCount) {
+            this.columnNames = columnNames;
+            this.declaredTypes = declaredTypes;
+            this.blocks = blocks;
+            this.blockRows = blockRows;
+            this.rowCount = rowCount;
+        }
+
+        @Override
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columnNames.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columnNames[column];
+        }
+
+        public String getDeclaredType(int column) {
+            return declaredTypes[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            Class<?> type = null;
+            for (Column[] block : blocks) {
+                Class<?> blockType = block[column].type();
+                if (type != null && type != blockType) {
+                    return Object.class;
+                }
+                type = blockType;
+            }
+            return type != null ? type : Object.class;
+        }
+
+        @Override
+        public Object getValueAt(int rowIndex, int columnIndex) {
+            return blocks.get(rowIndex / blockRows)[columnIndex].get(rowIndex % blockRows);
+        }
+    }
+}
@@ -1,11 +1,20 @@
 import javax.swing.*;
+import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableModel;
 import java.awt.*;
 import java.io.File;
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
 
 public class TableViewer extends JPanel {
     private DatabaseManager dbManager;
@@ -14,7 +23,19 @@ public class TableViewer extends JPanel {
     private DefaultListModel<String> tableListModel;
     private JTable dataTable;
     private DefaultTableModel tableModel;
+    private PagedTableModel pagedModel;
     private JLabel statusLabel;
+    private JProgressBar queryProgress;
+    private JButton cancelQueryBtn;
+    private JButton addRowBtn;
+    private JButton deleteRowBtn;
+    private JButton saveBtn;
+    private JLabel elapsedLabel;
+    private Timer elapsedTimer;
+    private QueryWorker runningQuery;
+    private TableLoader loadingTable;
+    private SwingWorker<List<String>, Void> loadingTables;
+    private SwingWorker<Void, Void> savingChanges;
 
     public TableViewer(DatabaseManager dbManager, File databaseFile) {
         this.dbManager = dbManager;
@@ -38,8 +59,13 @@ public class TableViewer extends JPanel {
         tableList.addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
                 String selectedTable = tableList.getSelectedValue();
-                if (selectedTable != null) {
-                    loadTableData(selectedTable);
+                if (selectedTable != null && (pagedModel == null
+                        || !selectedTable.equals(pagedModel.getTableName()))) {
+                    if (confirmDiscardChanges()) {
+                        loadTableData(selectedTable);
+                    } else {
+                        tableList.setSelectedValue(pagedModel.getTableName(), true);
+                    }
                 }
             }
         });
@@ -67,24 +93,43 @@ public class TableViewer extends JPanel {
         tableModel = new DefaultTableModel();
         dataTable = new JTable(tableModel);
         dataTable.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+        dataTable.setDefaultRenderer(Object.class, new ChangeHighlightRenderer());
 
         JScrollPane tableScroll = new JScrollPane(dataTable);
         rightPanel.add(tableScroll, BorderLayout.CENTER);
 
         JPanel dataButtonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
-        JButton addRowBtn = new JButton("Add Row");
+        addRowBtn = new JButton("Add Row");
         addRowBtn.addActionListener(e -> addRow());
-        JButton deleteRowBtn = new JButton("Delete Row");
+        deleteRowBtn = new JButton("Delete Row");
         deleteRowBtn.addActionListener(e -> deleteRow());
-        JButton saveBtn = new JButton("Save Changes");
+        saveBtn = new JButton("Save Changes");
         saveBtn.addActionListener(e -> saveChanges());
         JButton runQueryBtn = new JButton("Run Query");
         runQueryBtn.addActionListener(e -> showQueryDialog());
+        JButton snapshotBtn = new JButton("Save Snapshot");
+        snapshotBtn.addActionListener(e -> saveSnapshot());
+        JButton pdfBtn = new JButton("Export PDF");
+        pdfBtn.addActionListener(e -> exportPdf());
 
         dataButtonPanel.add(addRowBtn);
         dataButtonPanel.add(deleteRowBtn);
         dataButtonPanel.add(saveBtn);
         dataButtonPanel.add(runQueryBtn);
+        dataButtonPanel.add(snapshotBtn);
+        dataButtonPanel.add(pdfBtn);
+
+        queryProgress = new JProgressBar();
+        queryProgress.setIndeterminate(true);
+        queryProgress.setVisible(false);
+        cancelQueryBtn = new JButton("Cancel");
+        cancelQueryBtn.setEnabled(false);
+        cancelQueryBtn.addActionListener(e -> cancelRunningQuery());
+        elapsedLabel = new JLabel();
+
+        dataButtonPanel.add(queryProgress);
+        dataButtonPanel.add(cancelQueryBtn);
+        dataButtonPanel.add(elapsedLabel);
 
         rightPanel.add(dataButtonPanel, BorderLayout.NORTH);
 
@@ -96,49 +141,136 @@ public class TableViewer extends JPanel {
         add(splitPane, BorderLayout.CENTER);
     }
 
-    private void loadTables() {
-        tableListModel.clear();
-        List<String> tables = dbManager.getTables();
+    public DatabaseManager getDatabaseManager() {
+        return dbManager;
+    }
+
+    public File getDatabaseFile() {
+        return databaseFile;
+    }
 
-        for (String table : tables) {
-            tableListModel.addElement(table);
+    public void dispose() {
+        cancelRunningQuery();
+        if (pagedModel != null) {
+            pagedModel.close();
         }
+    }
+
+    /** Lists the tables off the EDT, which must never wait for a read connection. */
+    public void loadTables() {
+        statusLabel.setText("Loading tables from " + databaseFile.getName() + "...");
+        SwingWorker<List<String>, Void> worker = new SwingWorker<List<String>, Void>() {
+            @Override
+            protected List<String> doInBackground() throws Exception {
+                return dbManager.getSchemaCatalog().getTableNames();
+            }
 
-        statusLabel.setText("Loaded " + tables.size() + " tables from " + databaseFile.getName());
+            @Override
+            protected void done() {
+                if (loadingTables != this) {
+                    return;
+                }
+                loadingTables = null;
+                try {
+                    List<String> tables = get();
+                    String selected = tableList.getSelectedValue();
+                    tableListModel.clear();
+                    for (String table : tables) {
+                        tableListModel.addElement(table);
+                    }
+                    if (selected != null && tables.contains(selected)) {
+                        tableList.setSelectedValue(selected, false);
+                    }
+                    statusLabel.setText("Loaded " + tables.size() + " tables from " + databaseFile.getName());
+                } catch (Exception e) {
+                    statusLabel.setText("ERROR: Cannot list tables - " + rootMessage(e));
+                }
+            }
+        };
+        loadingTables = worker;
+        worker.execute();
     }
 
     private void loadTableData(String tableName) {
-        try {
-            tableModel.setRowCount(0);
-            tableModel.setColumnCount(0);
+        cancelRunningQuery();
 
-            ResultSet rs = dbManager.executeQuery("SELECT * FROM " + tableName);
+        loadingTable = new TableLoader(tableName) {
+            @Override
+            protected void done() {
+                if (loadingTable != this) {
+                    return;
+                }
+                loadingTable = null;
+                stopProgress();
 
-            if (rs != null) {
-                ResultSetMetaData metaData = rs.getMetaData();
-                int columnCount = metaData.getColumnCount();
+                if (isCancelled()) {
+                    return;
+                }
 
-                for (int i = 1; i <= columnCount; i++) {
-                    tableModel.addColumn(metaData.getColumnName(i));
+                try {
+                    PagedTableModel model = get();
+                    showModel(model);
+                    statusLabel.setText("Loaded table: " + tableName + " (" + model.getRowCount() + " rows)");
+                } catch (Exception e) {
+                    statusLabel.setText("ERROR: " + rootMessage(e));
+                    e.printStackTrace();
                 }
+            }
+        };
+        statusLabel.setText("Loading table: " + tableName + "...");
+        startProgress();
+        loadingTable.execute();
+    }
 
-                while (rs.next()) {
-                    Object[] row = new Object[columnCount];
-                    for (int i = 1; i <= columnCount; i++) {
-                        row[i - 1] = rs.getObject(i);
-                    }
-                    tableModel.addRow(row);
+    /**
+     * Builds a PagedTableModel off the EDT. The model counts the table's rows
+     * up front, which can take a while on a huge table, so the running COUNT
+     * statement is kept here for cancelLoad() to interrupt.
+     */
+    private class TableLoader extends SwingWorker<PagedTableModel, Void> {
+        private final String tableName;
+        private volatile Statement counting;
+
+        TableLoader(String tableName) {
+            this.tableName = tableName;
+        }
+
+        @Override
+        protected PagedTableModel doInBackground() throws Exception {
+            return new PagedTableModel(dbManager, tableName, stmt -> {
+                counting = stmt;
+                if (stmt != null && isCancelled()) {
+                    // Interrupting SQLite before the count starts is a no-op.
+                    throw new CancellationException();
                 }
+            });
+        }
 
-                rs.close();
-                statusLabel.setText("Loaded table: " + tableName + " (" + tableModel.getRowCount() + " rows)");
+        void cancelLoad() {
+            cancel(false);
+            Statement stmt = counting;
+            if (stmt != null) {
+                cancelCount(stmt);
+            }
+        }
+
+        private void cancelCount(Statement stmt) {
+            try {
+                stmt.cancel();
+            } catch (SQLException e) {
+                e.printStackTrace();
             }
-        } catch (Exception e) {
-            statusLabel.setText("ERROR: " + e.getMessage());
-            e.printStackTrace();
         }
     }
 
+    private void showModel(TableModel model) {
+        if (pagedModel != null && pagedModel != model) {
+            pagedModel.close();
+        }
+        pagedModel = model instanceof PagedTableModel ? (PagedTableModel) model : null;
+        dataTable.setModel(model);
+    }
+
     public void showCreateTableDialog() {
         JDialog dialog = new JDialog((Frame) SwingUtilities.getWindowAncestor(this), "Create Table", true);
         dialog.setLayout(new BorderLayout());
@@ -196,6 +328,16 @@ public class TableViewer extends JPanel {
                 return;
             }
 
+            try {
+                if (dbManager.getSchemaCatalog().getTableNames().contains(tableName)) {
+                    JOptionPane.showMessageDialog(dialog, "Table '" + tableName + "' already exists");
+                    return;
+                }
+            } catch (java.sql.SQLException ex) {
+                JOptionPane.showMessageDialog(dialog, ex.getMessage());
+                return;
+            }
+
             if (columnListModel.isEmpty()) {
                 JOptionPane.showMessageDialog(dialog, "Please add at least one column");
                 return;
@@ -237,9 +379,10 @@ public class TableViewer extends JPanel {
             "Confirm Delete", JOptionPane.YES_NO_OPTION);
 
         if (confirm == JOptionPane.YES_OPTION) {
-            if (dbManager.executeUpdate("DROP TABLE " + selectedTable)) {
+            if (dbManager.executeUpdate("DROP TABLE " + DatabaseManager.quoteIdentifier(selectedTable))) {
                 statusLabel.setText("Deleted table: " + selectedTable);
                 loadTables();
+                showModel(tableModel);
                 tableModel.setRowCount(0);
                 tableModel.setColumnCount(0);
             } else {
@@ -249,12 +392,26 @@ public class TableViewer extends JPanel {
     }
 
     private void addRow() {
+        if (isSaving()) {
+            return;
+        }
         String selectedTable = tableList.getSelectedValue();
         if (selectedTable == null) {
             JOptionPane.showMessageDialog(this, "Please select a table first");
             return;
         }
 
+        if (pagedModel != null) {
+            if (!pagedModel.isEditable()) {
+                JOptionPane.showMessageDialog(this, "Tables without a rowid cannot be edited here");
+                return;
+            }
+            int row = pagedModel.addRow();
+            dataTable.scrollRectToVisible(dataTable.getCellRect(row, 0, true));
+            statusLabel.setText("Added new row (remember to save changes)");
+            return;
+        }
+
         int columnCount = tableModel.getColumnCount();
         if (columnCount <= 1) {
             JOptionPane.showMessageDialog(this, "Table has no editable columns");
@@ -273,24 +430,257 @@ public class TableViewer extends JPanel {
     }
 
     private void deleteRow() {
+        if (isSaving()) {
+            return;
+        }
         int selectedRow = dataTable.getSelectedRow();
-        if (selectedRow >= 0) {
-            tableModel.removeRow(selectedRow);
-            statusLabel.setText("Deleted row (remember to save changes)");
-        } else {
+        if (selectedRow < 0) {
             JOptionPane.showMessageDialog(this, "Please select a row to delete");
+            return;
         }
+
+        if (pagedModel != null) {
+            if (pagedModel.deleteRow(selectedRow)) {
+                statusLabel.setText("Deleted row (remember to save changes)");
+            } else {
+                statusLabel.setText("Row is still loading, try again");
+            }
+            return;
+        }
+
+        tableModel.removeRow(selectedRow);
+        statusLabel.setText("Deleted row (remember to save changes)");
     }
 
     public void saveChanges() {
-        String selectedTable = tableList.getSelectedValue();
-        if (selectedTable != null) {
-            statusLabel.setText("Saved changes to " + selectedTable);
-            JOptionPane.showMessageDialog(this, "Changes saved successfully!");
+        if (isSaving()) {
+            return;
+        }
+        if (dataTable.isEditing()) {
+            dataTable.getCellEditor().stopCellEditing();
+        }
+
+        if (pagedModel == null) {
+            statusLabel.setText("Query results are not written back; edit a table to save changes");
+            return;
+        }
+
+        if (!pagedModel.hasChanges()) {
+            statusLabel.setText("No changes to save in " + pagedModel.getTableName());
+            return;
+        }
+
+        // The change set is written on the worker and discarded by the reload
+        // afterwards, so nothing may edit it until the save is done.
+        PagedTableModel model = pagedModel;
+        String summary = model.getChanges().toString();
+        setEditingEnabled(false);
+        statusLabel.setText("Saving changes to " + model.getTableName() + "...");
+
+        savingChanges = new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                model.saveChanges();
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                savingChanges = null;
+                setEditingEnabled(true);
+                try {
+                    get();
+                    if (pagedModel == model) {
+                        loadTableData(model.getTableName());
+                    }
+                    statusLabel.setText("Saved changes to " + model.getTableName() + " (" + summary + ")");
+                } catch (Exception e) {
+                    statusLabel.setText("ERROR: Failed to save changes - " + rootMessage(e));
+                    JOptionPane.showMessageDialog(TableViewer.this,
+                        "Failed to save changes:\n" + rootMessage(e), "Save Failed", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+        savingChanges.execute();
+    }
+
+    private boolean isSaving() {
+        if (savingChanges != null) {
+            statusLabel.setText("Wait for the changes to finish saving");
+            return true;
+        }
+        return false;
+    }
+
+    private void setEditingEnabled(boolean enabled) {
+        dataTable.setEnabled(enabled);
+        addRowBtn.setEnabled(enabled);
+        deleteRowBtn.setEnabled(enabled);
+        saveBtn.setEnabled(enabled);
+    }
+
+    /**
+     * Writes the current table (streamed straight from the database) or the
+     * current query results to an .odb snapshot file.
+     */
+    private void saveSnapshot() {
+        if (runningQuery != null) {
+            JOptionPane.showMessageDialog(this, "Wait for the running query to finish first");
+            return;
+        }
+
+        String tableName = pagedModel != null ? pagedModel.getTableName() : null;
+        if (tableName == null && tableModel.getColumnCount() == 0) {
+            JOptionPane.showMessageDialog(this, "Select a table or run a query first");
+            return;
+        }
+
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File((tableName != null ? tableName : "query") + ".odb"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = chooser.getSelectedFile();
+        statusLabel.setText("Saving snapshot to " + file.getName() + "...");
+        startProgress();
+
+        new SwingWorker<Long, Void>() {
+            @Override
+            protected Long doInBackground() throws Exception {
+                if (tableName == null) {
+                    return TableSnapshot.write(tableModel, file, true);
+                }
+
+                Connection reader = dbManager.borrowReadConnection();
+                try (Statement stmt = reader.createStatement()) {
+                    stmt.setFetchSize(1000);
+                    try (ResultSet rs = stmt.executeQuery("SELECT * FROM " + DatabaseManager.quoteIdentifier(tableName))) {
+                        return TableSnapshot.write(rs, file, true);
+                    }
+                } finally {
+                    dbManager.releaseReadConnection(reader);
+                }
+            }
+
+            @Override
+            protected void done() {
+                stopProgress();
+                try {
+                    statusLabel.setText("Saved snapshot " + file.getName() + " (" + get() + " rows, "
+                        + LargeFileViewer.formatSize(file.length()) + ")");
+                } catch (Exception e) {
+                    statusLabel.setText("ERROR: Failed to save snapshot - " + rootMessage(e));
+                }
+            }
+        }.execute();
+    }
+
+    private void exportPdf() {
+        String tableName = pagedModel != null ? pagedModel.getTableName() : null;
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File((tableName != null ? tableName : "query") + ".pdf"));
+        if (chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+            exportPdf(chooser.getSelectedFile(), statusLabel::setText);
+        }
+    }
+
+    /**
+     * Writes the current table (streamed from the database, like a snapshot)
+     * or the current query results to a paginated PDF table.
+     */
+    public void exportPdf(File file, Consumer<String> logger) {
+        if (runningQuery != null) {
+            logger.accept("ERROR: Wait for the running query to finish first");
+            return;
+        }
+
+        String tableName = pagedModel != null ? pagedModel.getTableName() : null;
+        if (tableName == null && tableModel.getColumnCount() == 0) {
+            logger.accept("ERROR: Select a table or run a query first");
+            return;
+        }
+
+        String title = databaseFile.getName() + ": " + (tableName != null ? tableName : "query results");
+        statusLabel.setText("Exporting " + file.getName() + "...");
+        startProgress();
+
+        new SwingWorker<Long, Void>() {
+            @Override
+            protected Long doInBackground() throws Exception {
+                if (tableName == null) {
+                    return PdfWriter.writeTable(tableModel, file, title);
+                }
+
+                Connection reader = dbManager.borrowReadConnection();
+                try (Statement stmt = reader.createStatement()) {
+                    stmt.setFetchSize(1000);
+                    try (ResultSet rs = stmt.executeQuery("SELECT * FROM " + DatabaseManager.quoteIdentifier(tableName))) {
+                        return PdfWriter.writeTable(rs, file, title);
+                    }
+                } finally {
+                    dbManager.releaseReadConnection(reader);
+                }
+            }
+
+            @Override
+            protected void done() {
+                stopProgress();
+                String message;
+                try {
+                    message = "Saved to PDF: " + file.getName() + " (" + get() + " rows)";
+                } catch (Exception e) {
+                    message = "ERROR: Failed to save PDF - " + rootMessage(e);
+                }
+                statusLabel.setText(message);
+                logger.accept(message);
+            }
+        }.execute();
+    }
+
+    public boolean hasUnsavedChanges() {
+        return pagedModel != null && pagedModel.hasChanges();
+    }
+
+    public boolean confirmDiscardChanges() {
+        if (!hasUnsavedChanges()) {
+            return true;
+        }
+
+        int choice = JOptionPane.showConfirmDialog(this,
+            "Discard unsaved changes to '" + pagedModel.getTableName() + "'?",
+            "Unsaved Changes", JOptionPane.YES_NO_OPTION);
+        return choice == JOptionPane.YES_OPTION;
+    }
+
+    private class ChangeHighlightRenderer extends DefaultTableCellRenderer {
+        private final Color modified = new Color(255, 244, 200);
+        private final Color deleted = new Color(255, 215, 215);
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+            if (!isSelected) {
+                c.setBackground(table.getBackground());
+                if (table.getModel() == pagedModel && pagedModel != null) {
+                    int modelRow = table.convertRowIndexToModel(row);
+                    int modelColumn = table.convertColumnIndexToModel(column);
+                    if (pagedModel.isRowDeleted(modelRow)) {
+                        c.setBackground(deleted);
+                    } else if (pagedModel.isCellModified(modelRow, modelColumn)) {
+                        c.setBackground(modified);
+                    }
+                }
+            }
+            return c;
         }
     }
 
     private void showQueryDialog() {
+        if (!confirmDiscardChanges()) {
+            return;
+        }
+
         JDialog dialog = new JDialog((Frame) SwingUtilities.getWindowAncestor(this), "Run SQL Query", true);
         dialog.setLayout(new BorderLayout());
         dialog.setSize(600, 400);
@@ -300,14 +690,29 @@ public class TableViewer extends JPanel {
         queryArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
         queryArea.setText("SELECT * FROM ");
 
+        queryArea.getInputMap().put(KeyStroke.getKeyStroke("ctrl SPACE"), "complete");
+        queryArea.getActionMap().put("complete", new AbstractAction() {
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent e) {
+                completeIdentifier(queryArea);
+            }
+        });
+
         JScrollPane queryScroll = new JScrollPane(queryArea);
         dialog.add(queryScroll, BorderLayout.CENTER);
+        dialog.add(new JLabel(" Ctrl+Space completes table and column names"), BorderLayout.NORTH);
 
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JSpinner timeoutSpinner = new JSpinner(
+            new SpinnerNumberModel(dbManager.getQueryTimeoutSeconds(), 0, 86400, 10));
+        buttonPanel.add(new JLabel("Timeout (s, 0 = none):"));
+        buttonPanel.add(timeoutSpinner);
+
         JButton executeBtn = new JButton("Execute");
         executeBtn.addActionListener(e -> {
             String query = queryArea.getText().trim();
             if (!query.isEmpty()) {
+                dbManager.setQueryTimeoutSeconds((Integer) timeoutSpinner.getValue());
                 executeCustomQuery(query);
                 dialog.dispose();
             }
@@ -323,44 +728,148 @@ public class TableViewer extends JPanel {
         dialog.setVisible(true);
     }
 
-    private void executeCustomQuery(String query) {
+    private void completeIdentifier(JTextArea queryArea) {
+        String text = queryArea.getText();
+        int caret = queryArea.getCaretPosition();
+        int start = caret;
+        while (start > 0 && (Character.isLetterOrDigit(text.charAt(start - 1)) || text.charAt(start - 1) == '_')) {
+            start--;
+        }
+        String prefix = text.substring(start, caret).toLowerCase();
+
+        Set<String> candidates = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
         try {
-            if (query.trim().toUpperCase().startsWith("SELECT")) {
-                tableModel.setRowCount(0);
-                tableModel.setColumnCount(0);
+            SchemaCatalog catalog = dbManager.getSchemaCatalog();
+            for (String table : catalog.getTableNames()) {
+                if (table.toLowerCase().startsWith(prefix)) {
+                    candidates.add(table);
+                }
+                if (text.toLowerCase().contains(table.toLowerCase()) || table.equals(tableList.getSelectedValue())) {
+                    SchemaCatalog.TableInfo info = catalog.getTable(table);
+                    if (info != null) {
+                        for (String column : info.getColumnNames()) {
+                            if (column.toLowerCase().startsWith(prefix)) {
+                                candidates.add(column);
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            statusLabel.setText("ERROR: " + rootMessage(e));
+            return;
+        }
 
-                ResultSet rs = dbManager.executeQuery(query);
+        int wordStart = start;
+        if (candidates.size() == 1) {
+            queryArea.replaceRange(candidates.iterator().next(), wordStart, caret);
+        } else if (!candidates.isEmpty()) {
+            JPopupMenu menu = new JPopupMenu();
+            for (String candidate : candidates) {
+                JMenuItem item = new JMenuItem(candidate);
+                item.addActionListener(e -> queryArea.replaceRange(candidate, wordStart, caret));
+                menu.add(item);
+            }
+            try {
+                Rectangle at = queryArea.modelToView2D(caret).getBounds();
+                menu.show(queryArea, at.x, at.y + at.height);
+            } catch (javax.swing.text.BadLocationException e) {
+                menu.show(queryArea, 0, 0);
+            }
+        }
+    }
 
-                if (rs != null) {
-                    ResultSetMetaData metaData = rs.getMetaData();
-                    int columnCount = metaData.getColumnCount();
+    private void executeCustomQuery(String query) {
+        cancelRunningQuery();
+        showModel(tableModel);
+
+        QueryWorker worker = new QueryWorker(dbManager, query, tableModel,
+            dbManager.getQueryTimeoutSeconds(), dbManager.getMaxQueryRows()) {
+            @Override
+            protected void done() {
+                if (runningQuery != this) {
+                    return;
+                }
+                runningQuery = null;
+                stopProgress();
 
-                    for (int i = 1; i <= columnCount; i++) {
-                        tableModel.addColumn(metaData.getColumnName(i));
-                    }
+                if (isCancelled()) {
+                    statusLabel.setText("Query cancelled after " + getRowCount() + " rows");
+                    return;
+                }
 
-                    while (rs.next()) {
-                        Object[] row = new Object[columnCount];
-                        for (int i = 1; i <= columnCount; i++) {
-                            row[i - 1] = rs.getObject(i);
-                        }
-                        tableModel.addRow(row);
+                try {
+                    int result = get();
+                    if (returnedRows()) {
+                        statusLabel.setText("Query executed: " + result + " rows returned"
+                            + (isTruncated() ? " (stopped at " + dbManager.getMaxQueryRows() + " rows)" : ""));
+                    } else {
+                        statusLabel.setText("Query executed successfully (" + Math.max(result, 0) + " rows affected)");
+                        loadTables();
                     }
-
-                    rs.close();
-                    statusLabel.setText("Query executed: " + tableModel.getRowCount() + " rows returned");
-                }
-            } else {
-                if (dbManager.executeUpdate(query)) {
-                    statusLabel.setText("Query executed successfully");
-                    loadTables();
-                } else {
-                    statusLabel.setText("ERROR: Failed to execute query");
+                } catch (Exception e) {
+                    statusLabel.setText("ERROR: " + rootMessage(e));
                 }
             }
-        } catch (Exception e) {
-            statusLabel.setText("ERROR: " + e.getMessage());
-            e.printStackTrace();
+        };
+
+        runningQuery = worker;
+        statusLabel.setText("Running query...");
+        startProgress();
+        worker.execute();
+    }
+
+    private void cancelRunningQuery() {
+        if (runningQuery != null) {
+            runningQuery.cancelQuery();
+        }
+        if (loadingTable != null) {
+            loadingTable.cancelLoad();
+            loadingTable = null;
+            statusLabel.setText("Table load cancelled");
+            stopProgress();
+        }
+    }
+
+    private void startProgress() {
+        long started = System.currentTimeMillis();
+        if (elapsedTimer != null) {
+            elapsedTimer.stop();
+        }
+
+        elapsedTimer = new Timer(100, e -> {
+            String text = String.format("%.1fs", (System.currentTimeMillis() - started) / 1000.0);
+            if (runningQuery != null && runningQuery.returnedRows()) {
+                text += " - " + runningQuery.getRowCount() + " rows";
+            }
+            elapsedLabel.setText(text);
+        });
+        elapsedTimer.start();
+
+        queryProgress.setVisible(true);
+        cancelQueryBtn.setEnabled(runningQuery != null || loadingTable != null);
+        elapsedLabel.setText("0.0s");
+        revalidate();
+    }
+
+    private void stopProgress() {
+        if (runningQuery != null || loadingTable != null) {
+            return;
+        }
+
+        if (elapsedTimer != null) {
+            elapsedTimer.stop();
+            elapsedTimer = null;
+        }
+        queryProgress.setVisible(false);
+        cancelQueryBtn.setEnabled(false);
+        elapsedLabel.setText("");
+    }
+
+    private static String rootMessage(Throwable e) {
+        while (e.getCause() != null) {
+            e = e.getCause();
         }
+        return e.getMessage();
     }
 }
@@ -0,0 +1,639 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Trigram index over the text files under the workspace roots. Every file
+ * gets an id, and every three-byte sequence (ASCII letters folded to lower
+ * case) maps to the sorted ids of the files containing it. A query looks
+ * up its own trigrams and intersects their lists, so only files that can
+ * contain the text are read and checked. Changed files get a new id and
+ * the old one is marked dead; dead ids are dropped when they outnumber the
+ * live ones. The index is saved under AppPaths and reloaded on start.
+ */
+public class TrigramIndex {
+    public static final long MAX_FILE_SIZE = 4L * 1024 * 1024;
+    public static final String FILE_NAME = "trigram.idx";
+
+    private static final int MAGIC = 0x464D5449; // "FMTI"
+    private static final int VERSION = 1;
+    private static final int BATCH_FILES = 512;
+    private static final int MAX_MATCHES_PER_FILE = 50;
+
+    public static class Match {
+        public final File file;
+        /** Zero-based line number. */
+        public final long line;
+        public final String preview;
+
+        Match(File file, long line, String preview) {
+            this.file = file;
+            this.line = line;
+            this.preview = preview;
+        }
+
+        @Override
+        public String toString() {
+            return file.getName() + ":" + (line + 1) + ": " + preview;
+        }
+    }
+
+    public static class UpdateStats {
+        public int indexed;
+        public int removed;
+        public int files;
+        public long millis;
+
+        @Override
+        public String toString() {
+            return String.format("%,d files in the index, %,d indexed, %,d removed in %d ms", files, indexed, removed, millis);
+        }
+    }
+
+    /** Growable list of file ids; ids are appended in increasing order. */
+    private static class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    private final File storage;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // guarded by lock
+    private final List<String> paths = new ArrayList<>();
+    private long[] sizes = new long[1024];
+    private long[] modified = new long[1024];
+    private final BitSet dead = new BitSet();
+    /** Binary files: tracked so they are not re-read on every update, but never candidates. */
+    private final BitSet binary = new BitSet();
+    private final Map<String, Integer> idByPath = new HashMap<>();
+    private final Map<Integer, Postings> postings = new HashMap<>();
+
+    public TrigramIndex(File storage) {
+        this.storage = storage;
+    }
+
+    /** Loads the saved index, or returns an empty one if there is none or it cannot be read. */
+    public static TrigramIndex load(File storage) {
+        TrigramIndex index = new TrigramIndex(storage);
+        if (storage.isFile()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(storage), 1 << 16))) {
+                index.read(in);
+            } catch (IOException e) {
+                // a stale or damaged index is rebuilt by the next update
+                return new TrigramIndex(storage);
+            }
+        }
+        return index;
+    }
+
+    public int getFileCount() {
+        lock.readLock().lock();
+        try {
+            return idByPath.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Brings the index in line with the files under roots: new and changed
+     * files (by size and modification time) are indexed in parallel, and
+     * files that are gone or outside the roots are dropped.
+     */
+    public UpdateStats update(List<File> roots, Consumer<String> progress) throws IOException {
+        return update(roots, progress, directory -> { });
+    }
+
+    /** Like update(roots, progress), also handing every folder walked to directories. */
+    public UpdateStats update(List<File> roots, Consumer<String> progress, Consumer<Path> directories)
+            throws IOException {
+        long started = System.currentTimeMillis();
+        UpdateStats stats = new UpdateStats();
+
+        Set<String> seen = new HashSet<>();
+        List<Path> changed = new ArrayList<>();
+        for (File root : roots) {
+            collect(root.toPath(), seen, changed, directories);
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (Iterator<Map.Entry<String, Integer>> it = idByPath.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, Integer> entry = it.next();
+                if (!seen.contains(entry.getKey())) {
+                    dead.set(entry.getValue());
+                    it.remove();
+                    stats.removed++;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        for (int start = 0; start < changed.size(); start += BATCH_FILES) {
+            List<Path> batch = changed.subList(start, Math.min(changed.size(), start + BATCH_FILES));
+            stats.indexed += indexBatch(batch);
+            progress.accept(String.format("Indexing... %,d of %,d changed files", start + batch.size(), changed.size()));
+        }
+
+        compactIfNeeded();
+        stats.files = getFileCount();
+        stats.millis = System.currentTimeMillis() - started;
+        return stats;
+    }
+
+    /**
+     * Applies one file system event. A file is re-indexed; a folder that
+     * appeared is walked, its files indexed and its folders handed to
+     * directoryAdded so they can be watched too; a path that is gone is
+     * dropped together with everything indexed below it.
+     */
+    public void updateFile(Path path, Consumer<Path> directoryAdded) {
+        if (Files.isRegularFile(path)) {
+            indexBatch(Collections.singletonList(path));
+        } else if (Files.isDirectory(path)) {
+            String name = path.getFileName() != null ? path.getFileName().toString() : "";
+            if (name.startsWith(".")) {
+                return;
+            }
+            Set<String> seen = new HashSet<>();
+            List<Path> changed = new ArrayList<>();
+            try {
+                collect(path, seen, changed, directoryAdded);
+            } catch (IOException e) {
+                // unreadable now; the next full update tries again
+            }
+            removeBelow(path, seen);
+            for (int start = 0; start < changed.size(); start += BATCH_FILES) {
+                indexBatch(changed.subList(start, Math.min(changed.size(), start + BATCH_FILES)));
+            }
+        } else {
+            removeFile(path);
+            removeBelow(path, Collections.emptySet());
+        }
+    }
+
+    public void removeFile(Path path) {
+        String key = path.toAbsolutePath().toString();
+        lock.writeLock().lock();
+        try {
+            Integer id = idByPath.remove(key);
+            if (id != null) {
+                dead.set(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Drops the files indexed under folder, except those in keep. */
+    private void removeBelow(Path folder, Set<String> keep) {
+        String prefix = folder.toAbsolutePath().toString() + File.separator;
+        lock.writeLock().lock();
+        try {
+            for (Iterator<Map.Entry<String, Integer>> it = idByPath.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, Integer> entry = it.next();
+                if (entry.getKey().startsWith(prefix) && !keep.contains(entry.getKey())) {
+                    dead.set(entry.getValue());
+                    it.remove();
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void collect(Path root, Set<String> seen, List<Path> changed, Consumer<Path> directories)
+            throws IOException {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                String name = dir.getFileName() != null ? dir.getFileName().toString() : "";
+                if (!dir.equals(root) && name.startsWith(".")) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                directories.accept(dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (!attrs.isRegularFile() || attrs.size() > MAX_FILE_SIZE) {
+                    return FileVisitResult.CONTINUE;
+                }
+                String key = file.toAbsolutePath().toString();
+                if (!seen.add(key)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                lock.readLock().lock();
+                try {
+                    Integer id = idByPath.get(key);
+                    if (id == null || sizes[id] != attrs.size() || modified[id] != attrs.lastModifiedTime().toMillis()) {
+                        changed.add(file);
+                    }
+                } finally {
+                    lock.readLock().unlock();
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /** Extracts trigrams for a batch on the fork/join pool, then merges them in order. */
+    private int indexBatch(List<Path> batch) {
+        int[][] trigrams = new int[batch.size()][];
+        long[][] attributes = new long[batch.size()][];
+        ForkJoinPool.commonPool().invoke(new ExtractTask(batch, trigrams, attributes, 0, batch.size()));
+
+        int indexed = 0;
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                String key = batch.get(i).toAbsolutePath().toString();
+                Integer old = idByPath.remove(key);
+                if (old != null) {
+                    dead.set(old);
+                }
+                if (attributes[i] == null) {
+                    continue;
+                }
+
+                int id = paths.size();
+                paths.add(key);
+                if (id == sizes.length) {
+                    sizes = Arrays.copyOf(sizes, id * 2);
+                    modified = Arrays.copyOf(modified, id * 2);
+                }
+                sizes[id] = attributes[i][0];
+                modified[id] = attributes[i][1];
+                idByPath.put(key, id);
+                binary.set(id, trigrams[i] == null);
+                if (trigrams[i] == null) {
+                    continue;
+                }
+                for (int trigram : trigrams[i]) {
+                    postings.computeIfAbsent(trigram, t -> new Postings()).add(id);
+                }
+                indexed++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return indexed;
+    }
+
+    private static class ExtractTask extends RecursiveAction {
+        private static final int LEAF = 8;
+
+        private final List<Path> files;
+        private final int[][] trigrams;
+        private final long[][] attributes;
+        private final int from;
+        private final int to;
+
+        ExtractTask(List<Path> files, int[][] trigrams, long[][] attributes, int from, int to) {
+            this.files = files;
+            this.trigrams = trigrams;
+            this.attributes = attributes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ExtractTask(files, trigrams, attributes, from, middle),
+                    new ExtractTask(files, trigrams, attributes, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                try {
+                    Path file = files.get(i);
+                    BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                    if (attrs.size() > MAX_FILE_SIZE) {
+                        continue;
+                    }
+                    byte[] bytes = Files.readAllBytes(file);
+                    attributes[i] = new long[] {attrs.size(), attrs.lastModifiedTime().toMillis()};
+                    if (!FileTypeRegistry.hasNul(ByteBuffer.wrap(bytes))) {
+                        trigrams[i] = trigramsOf(bytes, bytes.length);
+                    }
+                } catch (IOException e) {
+                    // unreadable files are left out of the index
+                }
+            }
+        }
+    }
+
+    /** Sorted distinct trigrams of the folded bytes, skipping those that span a line break. */
+    static int[] trigramsOf(byte[] bytes, int length) {
+        if (length < 3) {
+            return new int[0];
+        }
+        int[] all = new int[length - 2];
+        int count = 0;
+        int b0 = fold(bytes[0]);
+        int b1 = fold(bytes[1]);
+        for (int i = 2; i < length; i++) {
+            int b2 = fold(bytes[i]);
+            if (b0 != '\n' && b1 != '\n' && b2 != '\n') {
+                all[count++] = (b0 << 16) | (b1 << 8) | b2;
+            }
+            b0 = b1;
+            b1 = b2;
+        }
+
+        Arrays.sort(all, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || all[i] != all[i - 1]) {
+                all[distinct++] = all[i];
+            }
+        }
+        return Arrays.copyOf(all, distinct);
+    }
+
+    private static int fold(byte b) {
+        int c = b & 0xFF;
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    /**
+     * Finds files containing query (ignoring ASCII case). Candidates come from
+     * the index and are then checked in parallel; matches are passed to the
+     * consumer file by file as they are confirmed. Returns the number of
+     * matching files, at most maxFiles.
+     */
+    public int search(String query, int maxFiles, Consumer<List<Match>> matches, BooleanSupplier cancelled) {
+        List<String> candidates = candidates(query);
+        AtomicInteger found = new AtomicInteger();
+
+        candidates.parallelStream().forEach(path -> {
+            if (cancelled.getAsBoolean() || found.get() >= maxFiles) {
+                return;
+            }
+            try {
+                byte[] bytes = Files.readAllBytes(Paths.get(path));
+                List<FileSearcher.Hit> hits = new FileSearcher(FileSearcher.of(bytes), query, false, false)
+                    .searchHere(MAX_MATCHES_PER_FILE);
+                if (!hits.isEmpty() && found.incrementAndGet() <= maxFiles) {
+                    File file = new File(path);
+                    List<Match> result = new ArrayList<>(hits.size());
+                    for (FileSearcher.Hit hit : hits) {
+                        result.add(new Match(file, hit.line, hit.preview));
+                    }
+                    matches.accept(result);
+                }
+            } catch (IOException e) {
+                // deleted since it was indexed
+            }
+        });
+        return Math.min(found.get(), maxFiles);
+    }
+
+    /** Paths of the live files that contain every trigram of the query. */
+    private List<String> candidates(String query) {
+        byte[] bytes = query.getBytes(StandardCharsets.UTF_8);
+        int[] wanted = trigramsOf(bytes, bytes.length);
+
+        lock.readLock().lock();
+        try {
+            List<String> result = new ArrayList<>();
+            if (wanted.length == 0) {
+                // too short to narrow down; every file is a candidate
+                for (Map.Entry<String, Integer> entry : idByPath.entrySet()) {
+                    if (!binary.get(entry.getValue())) {
+                        result.add(entry.getKey());
+                    }
+                }
+                return result;
+            }
+
+            Postings[] lists = new Postings[wanted.length];
+            for (int i = 0; i < wanted.length; i++) {
+                lists[i] = postings.get(wanted[i]);
+                if (lists[i] == null) {
+                    return result;
+                }
+            }
+            Arrays.sort(lists, Comparator.comparingInt(p -> p.size));
+
+            int[] ids = Arrays.copyOf(lists[0].ids, lists[0].size);
+            int count = ids.length;
+            for (int l = 1; l < lists.length && count > 0; l++) {
+                count = intersect(ids, count, lists[l]);
+            }
+            for (int i = 0; i < count; i++) {
+                if (!dead.get(ids[i])) {
+                    result.add(paths.get(ids[i]));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Keeps the ids also in list, in place; both are sorted. Returns the new count. */
+    private static int intersect(int[] ids, int count, Postings list) {
+        int kept = 0;
+        int j = 0;
+        for (int i = 0; i < count && j < list.size; i++) {
+            int id = ids[i];
+            // galloping would help for very uneven lists; binary search per id is close enough
+            int found = Arrays.binarySearch(list.ids, j, list.size, id);
+            if (found >= 0) {
+                ids[kept++] = id;
+                j = found + 1;
+            } else {
+                j = -found - 1;
+            }
+        }
+        return kept;
+    }
+
+    /** Renumbers the live files once dead ids outnumber them. */
+    private void compactIfNeeded() {
+        lock.writeLock().lock();
+        try {
+            if (dead.cardinality() <= idByPath.size()) {
+                return;
+            }
+
+            int[] remap = new int[paths.size()];
+            List<String> livePaths = new ArrayList<>(idByPath.size());
+            for (int id = 0; id < paths.size(); id++) {
+                if (dead.get(id)) {
+                    remap[id] = -1;
+                } else {
+                    remap[id] = livePaths.size();
+                    binary.set(livePaths.size(), binary.get(id));
+                    sizes[livePaths.size()] = sizes[id];
+                    modified[livePaths.size()] = modified[id];
+                    livePaths.add(paths.get(id));
+                }
+            }
+
+            for (Iterator<Postings> it = postings.values().iterator(); it.hasNext(); ) {
+                Postings list = it.next();
+                int kept = 0;
+                for (int i = 0; i < list.size; i++) {
+                    int id = remap[list.ids[i]];
+                    if (id >= 0) {
+                        list.ids[kept++] = id;
+                    }
+                }
+                list.size = kept;
+                if (kept == 0) {
+                    it.remove();
+                }
+            }
+
+            paths.clear();
+            paths.addAll(livePaths);
+            binary.clear(paths.size(), Math.max(paths.size(), binary.length()));
+            dead.clear();
+            idByPath.clear();
+            for (int id = 0; id < paths.size(); id++) {
+                idByPath.put(paths.get(id), id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Writes the index to its storage file, replacing the old one only once complete. */
+    public void save() throws IOException {
+        compactIfNeeded();
+        Path target = storage.toPath().toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), "." + target.getFileName(), ".tmp");
+
+        try {
+            lock.readLock().lock();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(temp), 1 << 16))) {
+                write(out);
+            } finally {
+                lock.readLock().unlock();
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /*
+     * Format: magic, version, file count, then path/size/mtime/dead/binary per file;
+     * trigram count, then per trigram its key, id count and delta-encoded ids.
+     */
+    private void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(paths.size());
+        for (int id = 0; id < paths.size(); id++) {
+            out.writeUTF(paths.get(id));
+            out.writeLong(sizes[id]);
+            out.writeLong(modified[id]);
+            out.writeBoolean(dead.get(id));
+            out.writeBoolean(binary.get(id));
+        }
+
+        out.writeInt(postings.size());
+        for (Map.Entry<Integer, Postings> entry : postings.entrySet()) {
+            Postings list = entry.getValue();
+            out.writeInt(entry.getKey());
+            writeVarint(out, list.size);
+            int previous = 0;
+            for (int i = 0; i < list.size; i++) {
+                writeVarint(out, list.ids[i] - previous);
+                previous = list.ids[i];
+            }
+        }
+    }
+
+    private void read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Not a trigram index");
+        }
+        int files = in.readInt();
+        sizes = new long[Math.max(1024, files)];
+        modified = new long[sizes.length];
+        for (int id = 0; id < files; id++) {
+            String path = in.readUTF();
+            paths.add(path);
+            sizes[id] = in.readLong();
+            modified[id] = in.readLong();
+            if (in.readBoolean()) {
+                dead.set(id);
+            } else {
+                idByPath.put(path, id);
+            }
+            binary.set(id, in.readBoolean());
+        }
+
+        int trigrams = in.readInt();
+        for (int t = 0; t < trigrams; t++) {
+            int key = in.readInt();
+            Postings list = new Postings();
+            list.size = readVarint(in);
+            list.ids = new int[Math.max(4, list.size)];
+            int id = 0;
+            for (int i = 0; i < list.size; i++) {
+                id += readVarint(in);
+                list.ids[i] = id;
+            }
+            postings.put(key, list);
+        }
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,390 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Content search across the workspace folders, backed by a TrigramIndex.
+ * The saved index is loaded when the panel is created and brought up to
+ * date whenever the roots change; queries run as the user types. Like
+ * QuickOpenDialog, the panel keeps its own FileMonitor on the folders
+ * under the roots, so files change in the index whether or not their
+ * folder is expanded in the tree. Full updates, applying those changes
+ * and saving all go through the one updating worker, one at a time.
+ */
+public class WorkspaceSearchPanel extends JPanel {
+    private static final int MAX_FILES = 1000;
+    /** Folders watched for the index, shallowest first; deeper ones are picked up by the next update. */
+    private static final int MAX_WATCHED_FOLDERS = 4096;
+    /** Shorter queries contain no trigram, so every indexed file would have to be read. */
+    private static final int MIN_QUERY_BYTES = 3;
+
+    private final BiConsumer<File, Long> opener;
+    private final Consumer<String> logger;
+
+    private final JTextField queryField = new JTextField();
+    private final DefaultListModel<TrigramIndex.Match> resultModel = new DefaultListModel<>();
+    private final JList<TrigramIndex.Match> resultList = new JList<>(resultModel);
+    private final JLabel statusLabel = new JLabel("Loading index...");
+    private final Timer typingTimer;
+    private final Timer saveTimer;
+
+    private volatile TrigramIndex index;
+    private List<File> roots = new ArrayList<>();
+    private FileMonitor monitor;
+    private SwingWorker<?, ?> updating;
+    private boolean updateAgain;
+    /** Changed paths waiting for the updating worker to be free. */
+    private final Set<Path> pendingPaths = new LinkedHashSet<>();
+    private boolean unsaved;
+    private SwingWorker<Integer, TrigramIndex.Match> searching;
+
+    /** opener is called with a file and the zero-based line of the chosen match. */
+    public WorkspaceSearchPanel(BiConsumer<File, Long> opener, Consumer<String> logger) {
+        super(new BorderLayout());
+        this.opener = opener;
+        this.logger = logger;
+
+        JPanel queryPanel = new JPanel(new BorderLayout(5, 5));
+        queryPanel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+        queryPanel.add(queryField, BorderLayout.CENTER);
+        JButton reindexBtn = new JButton("Reindex");
+        reindexBtn.addActionListener(e -> updateIndex());
+        queryPanel.add(reindexBtn, BorderLayout.EAST);
+        add(queryPanel, BorderLayout.NORTH);
+
+        resultList.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        resultList.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+                TrigramIndex.Match match = (TrigramIndex.Match) value;
+                setToolTipText(match.file.getAbsolutePath());
+                return this;
+            }
+        });
+        resultList.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    openSelected();
+                }
+            }
+        });
+        resultList.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), "open");
+        resultList.getActionMap().put("open", new AbstractAction() {
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent e) {
+                openSelected();
+            }
+        });
+        add(new JScrollPane(resultList), BorderLayout.CENTER);
+
+        statusLabel.setBorder(BorderFactory.createEmptyBorder(2, 5, 2, 5));
+        add(statusLabel, BorderLayout.SOUTH);
+
+        typingTimer = new Timer(250, e -> search());
+        typingTimer.setRepeats(false);
+        queryField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            public void insertUpdate(javax.swing.event.DocumentEvent e) {
+                typingTimer.restart();
+            }
+
+            public void removeUpdate(javax.swing.event.DocumentEvent e) {
+                typingTimer.restart();
+            }
+
+            public void changedUpdate(javax.swing.event.DocumentEvent e) {
+                typingTimer.restart();
+            }
+        });
+        queryField.addActionListener(e -> search());
+
+        saveTimer = new Timer(30_000, e -> saveIndex());
+        saveTimer.setRepeats(false);
+
+        loadIndex();
+    }
+
+    /** Sets the folders to index and brings the index up to date in the background. */
+    public void setRoots(List<File> roots) {
+        this.roots = new ArrayList<>(roots);
+        updateIndex();
+    }
+
+    /** Stops watching and saves changes not yet written. */
+    public void close() {
+        saveTimer.stop();
+        if (monitor != null) {
+            monitor.close();
+        }
+        TrigramIndex target = index;
+        if (target != null && unsaved) {
+            try {
+                target.save();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Queues a batch of events from the panel's own monitor: files and
+     * folders under the roots are re-indexed, dropped or walked, and new
+     * folders are watched too. The index is saved once things settle.
+     */
+    private void pathsChanged(Set<Path> changed, Set<Path> overflowed) {
+        for (Path path : overflowed) {
+            if (isUnderRoots(path)) {
+                pendingPaths.add(path);
+            }
+        }
+        for (Path path : changed) {
+            if (isUnderRoots(path)) {
+                pendingPaths.add(path);
+            }
+        }
+        applyPending();
+    }
+
+    private void applyPending() {
+        TrigramIndex target = index;
+        FileMonitor watcher = monitor;
+        if (target == null || watcher == null || updating != null || pendingPaths.isEmpty()) {
+            return;
+        }
+
+        List<Path> paths = new ArrayList<>(pendingPaths);
+        pendingPaths.clear();
+        updating = new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() {
+                for (Path path : paths) {
+                    target.updateFile(path, watcher::register);
+                }
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                updating = null;
+                unsaved = true;
+                statusLabel.setText(String.format("%,d files indexed", target.getFileCount()));
+                saveTimer.restart();
+                updated();
+            }
+        };
+        updating.execute();
+    }
+
+    /** Starts whatever waited for the updating worker to finish. */
+    private void updated() {
+        if (updateAgain) {
+            updateAgain = false;
+            updateIndex();
+        } else {
+            applyPending();
+        }
+    }
+
+    private boolean isUnderRoots(Path path) {
+        for (File root : roots) {
+            if (path.startsWith(root.toPath().toAbsolutePath())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void saveIndex() {
+        TrigramIndex target = index;
+        if (updating != null) {
+            saveTimer.restart();
+            return;
+        }
+        updating = new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws IOException {
+                target.save();
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                updating = null;
+                try {
+                    get();
+                    unsaved = false;
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    logger.accept("ERROR: Failed to save the search index - " + cause.getMessage());
+                }
+                updated();
+            }
+        };
+        updating.execute();
+    }
+
+    private void loadIndex() {
+        new SwingWorker<TrigramIndex, Void>() {
+            @Override
+            protected TrigramIndex doInBackground() throws IOException {
+                return TrigramIndex.load(AppPaths.resolve(TrigramIndex.FILE_NAME));
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    index = get();
+                    statusLabel.setText(String.format("%,d files indexed", index.getFileCount()));
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    statusLabel.setText("ERROR: Cannot open the search index - " + cause.getMessage());
+                    return;
+                }
+                if (!roots.isEmpty()) {
+                    updateIndex();
+                }
+            }
+        }.execute();
+    }
+
+    private void updateIndex() {
+        if (index == null) {
+            return;
+        }
+        if (updating != null) {
+            updateAgain = true;
+            return;
+        }
+
+        TrigramIndex target = index;
+        List<File> folders = roots;
+        List<Path> directories = new ArrayList<>();
+        FileMonitor[] fresh = new FileMonitor[1];
+        updating = new SwingWorker<TrigramIndex.UpdateStats, String>() {
+            @Override
+            protected TrigramIndex.UpdateStats doInBackground() throws IOException {
+                TrigramIndex.UpdateStats stats = target.update(folders, this::publish, directories::add);
+                target.save();
+
+                directories.sort(Comparator.comparingInt(Path::getNameCount));
+                fresh[0] = new FileMonitor(WorkspaceSearchPanel.this::pathsChanged);
+                for (Path folder : directories.subList(0, Math.min(MAX_WATCHED_FOLDERS, directories.size()))) {
+                    fresh[0].register(folder);
+                }
+                return stats;
+            }
+
+            @Override
+            protected void process(List<String> messages) {
+                statusLabel.setText(messages.get(messages.size() - 1));
+            }
+
+            @Override
+            protected void done() {
+                updating = null;
+                try {
+                    TrigramIndex.UpdateStats stats = get();
+                    unsaved = false;
+                    if (monitor != null) {
+                        monitor.close();
+                    }
+                    monitor = fresh[0];
+                    statusLabel.setText(String.format("%,d files indexed", stats.files));
+                    logger.accept("Search index updated: " + stats);
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    statusLabel.setText("ERROR: Indexing failed - " + cause.getMessage());
+                }
+                boolean again = updateAgain;
+                updated();
+                if (!again && !queryField.getText().isEmpty()) {
+                    search();
+                }
+            }
+        };
+        updating.execute();
+    }
+
+    private void search() {
+        typingTimer.stop();
+        if (searching != null) {
+            searching.cancel(true);
+            searching = null;
+        }
+        resultModel.clear();
+
+        String query = queryField.getText();
+        TrigramIndex target = index;
+        if (query.isEmpty() || target == null) {
+            return;
+        }
+        if (query.indexOf('\n') >= 0) {
+            statusLabel.setText("Search text must be a single line");
+            return;
+        }
+        if (query.getBytes(StandardCharsets.UTF_8).length < MIN_QUERY_BYTES) {
+            statusLabel.setText("Type at least " + MIN_QUERY_BYTES + " characters to search");
+            return;
+        }
+
+        long started = System.currentTimeMillis();
+        SwingWorker<Integer, TrigramIndex.Match> worker = new SwingWorker<Integer, TrigramIndex.Match>() {
+            @Override
+            protected Integer doInBackground() {
+                return target.search(query, MAX_FILES,
+                    matches -> publish(matches.toArray(new TrigramIndex.Match[0])), this::isCancelled);
+            }
+
+            @Override
+            protected void process(List<TrigramIndex.Match> matches) {
+                if (searching == this) {
+                    resultModel.addAll(matches);
+                }
+            }
+
+            @Override
+            protected void done() {
+                if (searching != this) {
+                    return;
+                }
+                searching = null;
+                try {
+                    int files = get();
+                    statusLabel.setText(String.format("%,d matches in %,d files (%d ms)", resultModel.size(), files,
+                        System.currentTimeMillis() - started) + (files >= MAX_FILES ? ", stopped at the limit" : ""));
+                } catch (CancellationException e) {
+                    // replaced by a newer search
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    statusLabel.setText("ERROR: Search failed - " + cause.getMessage());
+                }
+            }
+        };
+        searching = worker;
+        statusLabel.setText("Searching...");
+        worker.execute();
+    }
+
+    private void openSelected() {
+        TrigramIndex.Match match = resultList.getSelectedValue();
+        if (match != null) {
+            opener.accept(match.file, match.line);
+        }
+    }
+}